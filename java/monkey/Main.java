@@ -4,15 +4,124 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.FileReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.ArrayList;
 
+import monkey.cache.ScriptCache;
+import monkey.evaluator.Profiler;
+import monkey.evaluator.Memo;
+import monkey.evaluator.Parallel;
 import monkey.repl.Repl;
 
 public class Main {
+  private static final String ENGINE_FLAG = "--engine=";
+  private static final String CACHE_DIR_FLAG = "--cache_dir=";
+  private static final String PROFILE_FLAG = "--profile";
+  private static final String PROFILE_STACKS_FLAG = "--profile_stacks=";
+  private static final String MEMO_FLAG = "--memo";
+  private static final String PARALLEL_FLAG = "--parallel";
+  private static final String USAGE = "usage: monkey [--engine=evaluator|vm] [--cache_dir=DIR]"
+      + " [--profile] [--profile_stacks=FILE] [--memo[=N]] [--parallel] [PATH]";
+
   public static void main(String[] args) throws IOException {
-    if (args.length == 1) {
-      Repl.run(args[0]);
+    Repl.Engine engine = Repl.Engine.EVALUATOR;
+    String engineFlag = null;
+    String path = null;
+    String cacheDir = null;
+    boolean profile = false;
+    String profileStacks = null;
+    Memo memo = null;
+    Parallel parallel = null;
+    for (String arg : args) {
+      if (arg.startsWith(ENGINE_FLAG)) {
+        engineFlag = arg;
+        try {
+          engine = Repl.Engine.valueOf(arg.substring(ENGINE_FLAG.length()).toUpperCase());
+        } catch (IllegalArgumentException e) {
+          usage("unknown engine: " + arg);
+        }
+      } else if (arg.startsWith(CACHE_DIR_FLAG)) {
+        cacheDir = arg.substring(CACHE_DIR_FLAG.length());
+      } else if (arg.equals(PROFILE_FLAG)) {
+        profile = true;
+      } else if (arg.startsWith(PROFILE_STACKS_FLAG)) {
+        profileStacks = arg.substring(PROFILE_STACKS_FLAG.length());
+      } else if (arg.equals(MEMO_FLAG)) {
+        memo = new Memo();
+      } else if (arg.startsWith(MEMO_FLAG + "=")) {
+        try {
+          memo = new Memo(Integer.parseInt(arg.substring(MEMO_FLAG.length() + 1)));
+        } catch (IllegalArgumentException e) {
+          usage("bad number of entries: " + arg);
+        }
+      } else if (arg.equals(PARALLEL_FLAG)) {
+        parallel = new Parallel();
+      } else if (arg.startsWith("--") || path != null) {
+        usage("unexpected argument: " + arg);
+      } else {
+        path = arg;
+      }
+    }
+
+    // Each of these runs the evaluator its own way, so they don't mix with each other or with
+    // flags for other ways of running
+    List<String> modes = new ArrayList<>();
+    if (profile || profileStacks != null) {
+      modes.add(profile ? PROFILE_FLAG : PROFILE_STACKS_FLAG + profileStacks);
+    }
+    if (memo != null) {
+      modes.add(MEMO_FLAG);
+    }
+    if (parallel != null) {
+      modes.add(PARALLEL_FLAG);
+    }
+    if (modes.size() > 1) {
+      usage(String.join(" and ", modes) + " can't be used together");
+    }
+    if (!modes.isEmpty()) {
+      String mode = modes.get(0);
+      if (path == null) {
+        usage(mode + " needs a script to run");
+      }
+      if (engine != Repl.Engine.EVALUATOR) {
+        usage(mode + " always uses the evaluator, it can't be used with " + engineFlag);
+      }
+      if (cacheDir != null) {
+        usage(mode + " can't be used with " + CACHE_DIR_FLAG + cacheDir);
+      }
+    }
+    if (path == null && cacheDir != null) {
+      usage(CACHE_DIR_FLAG + cacheDir + " needs a script to run");
+    }
+
+    if (path != null && (profile || profileStacks != null)) {
+      Profiler profiler = Repl.profile(path);
+      if (profile) {
+        System.err.print(profiler.table());
+      }
+      if (profileStacks != null) {
+        Files.write(Paths.get(profileStacks),
+            profiler.collapsedStacks().getBytes(StandardCharsets.UTF_8));
+      }
+    } else if (path != null && memo != null) {
+      Repl.run(path, memo);
+    } else if (path != null && parallel != null) {
+      Repl.run(path, parallel);
+    } else if (path != null && cacheDir != null) {
+      Repl.run(path, engine, new ScriptCache(Paths.get(cacheDir)));
+    } else if (path != null) {
+      Repl.run(path, engine);
     } else {
-      Repl.start(new InputStreamReader(System.in), new OutputStreamWriter(System.out));
+      Repl.start(new InputStreamReader(System.in), new OutputStreamWriter(System.out), engine);
     }
   }
+
+  private static void usage(String message) {
+    System.err.println(message);
+    System.err.println(USAGE);
+    System.exit(2);
+  }
 }
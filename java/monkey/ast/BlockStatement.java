@@ -7,6 +7,7 @@ import monkey.token.Token;
 public class BlockStatement implements Node {
   private Token token;
   private List<Statement> statements;
+  private int position = -1; // Offset of token in source, -1 if unknown
 
   public BlockStatement(Token token, List<Statement> statements) {
     this.token = token;
@@ -17,6 +18,18 @@ public class BlockStatement implements Node {
     return statements;
   }
 
+  public int getPosition() {
+    return position;
+  }
+
+  public void setPosition(int position) {
+    this.position = position;
+  }
+
+  public Token getToken() {
+    return token;
+  }
+
   @Override
   public String tokenLiteral() {
     return token.getLiteral();
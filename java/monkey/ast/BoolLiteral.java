@@ -5,6 +5,7 @@ import monkey.token.Token;
 public class BoolLiteral implements Expression {
   private Token token;
   private boolean value;
+  private int position = -1; // Offset of token in source, -1 if unknown
 
   public BoolLiteral(Token token, boolean value) {
     this.token = token;
@@ -15,6 +16,20 @@ public class BoolLiteral implements Expression {
     return value;
   }
 
+  @Override
+  public int getPosition() {
+    return position;
+  }
+
+  @Override
+  public void setPosition(int position) {
+    this.position = position;
+  }
+
+  public Token getToken() {
+    return token;
+  }
+
   @Override
   public String tokenLiteral() {
     return token.getLiteral();
@@ -10,6 +10,10 @@ public class CallExpression implements Expression {
   private Token token; // Token.Type.(
   private Expression function; // Identifier or FunctionalLiteral
   private List<Expression> arguments;
+  private boolean tail; // Its value becomes the result of the enclosing function
+  private Object target; // Inline cache of the evaluator
+  private int cost; // Estimated cost of the second dearest argument, set by the resolver
+  private int position = -1; // Offset of token in source, -1 if unknown
 
   public CallExpression(Token token, Expression function, List<Expression> arguments) {
     this.token = token;
@@ -25,6 +29,44 @@ public class CallExpression implements Expression {
     return arguments;
   }
 
+  public boolean isTail() {
+    return tail;
+  }
+
+  public void setTail(boolean tail) {
+    this.tail = tail;
+  }
+
+  public Object getTarget() {
+    return target;
+  }
+
+  public void setTarget(Object target) {
+    this.target = target;
+  }
+
+  public int getCost() {
+    return cost;
+  }
+
+  public void setCost(int cost) {
+    this.cost = cost;
+  }
+
+  @Override
+  public int getPosition() {
+    return position;
+  }
+
+  @Override
+  public void setPosition(int position) {
+    this.position = position;
+  }
+
+  public Token getToken() {
+    return token;
+  }
+
   @Override
   public String tokenLiteral() {
     return token.getLiteral();
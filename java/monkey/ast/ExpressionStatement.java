@@ -5,6 +5,7 @@ import monkey.token.Token;
 public class ExpressionStatement implements Statement {
   private Token token; // First token of the expression
   private Expression expression;
+  private int position = -1; // Offset of token in source, -1 if unknown
 
   public ExpressionStatement(Token token, Expression expression) {
     this.token = token;
@@ -15,6 +16,20 @@ public class ExpressionStatement implements Statement {
     return expression;
   }
 
+  @Override
+  public int getPosition() {
+    return position;
+  }
+
+  @Override
+  public void setPosition(int position) {
+    this.position = position;
+  }
+
+  public Token getToken() {
+    return token;
+  }
+
   @Override
   public String tokenLiteral() {
     return token.getLiteral();
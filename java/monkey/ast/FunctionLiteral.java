@@ -10,11 +10,27 @@ public class FunctionLiteral implements Expression {
   private Token token; // Token.Type.FUNCTION
   private List<Identifier> parameters;
   private BlockStatement body;
+  private BlockStatement sourceBody; // Body as it was written, if optimizer has rewritten it
+  private int position = -1; // Offset of token in source, -1 if unknown
+  private String name; // Name of the let binding it's the value of, set by the resolver
+  private int frameSize;
+  private int size; // Nodes in body, not counting bodies of nested function literals
+  private int functions; // Function literals in body, not counting nested ones
+  private boolean memoizable; // Remembering results of its calls may pay off, see Memo
+  private boolean splittable; // Has operands worth evaluating in parallel, see Parallel
+  private int calls; // Counted by the evaluator to find hot functions, racy updates are fine
+  private Object compiled; // Body compiled to JVM bytecode by the evaluator
 
   public FunctionLiteral(Token token, List<Identifier> parameters, BlockStatement body) {
+    this(token, parameters, body, null);
+  }
+
+  public FunctionLiteral(Token token, List<Identifier> parameters, BlockStatement body,
+      BlockStatement sourceBody) {
     this.token = token;
     this.parameters = parameters;
     this.body = body;
+    this.sourceBody = sourceBody;
   }
 
   public List<Identifier> getParameters() {
@@ -25,6 +41,84 @@ public class FunctionLiteral implements Expression {
     return body;
   }
 
+  public BlockStatement getSourceBody() {
+    return sourceBody != null ? sourceBody : body;
+  }
+
+  @Override
+  public int getPosition() {
+    return position;
+  }
+
+  @Override
+  public void setPosition(int position) {
+    this.position = position;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public int getFrameSize() {
+    return frameSize;
+  }
+
+  public void setFrameSize(int frameSize) {
+    this.frameSize = frameSize;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public void setSize(int size) {
+    this.size = size;
+  }
+
+  public int getFunctions() {
+    return functions;
+  }
+
+  public void setFunctions(int functions) {
+    this.functions = functions;
+  }
+
+  public boolean isMemoizable() {
+    return memoizable;
+  }
+
+  public void setMemoizable(boolean memoizable) {
+    this.memoizable = memoizable;
+  }
+
+  public boolean isSplittable() {
+    return splittable;
+  }
+
+  public void setSplittable(boolean splittable) {
+    this.splittable = splittable;
+  }
+
+  public int countCall() {
+    return ++calls;
+  }
+
+  public Object getCompiled() {
+    return compiled;
+  }
+
+  public void setCompiled(Object compiled) {
+    this.compiled = compiled;
+  }
+
+  public Token getToken() {
+    return token;
+  }
+
   @Override
   public String tokenLiteral() {
     return token.getLiteral();
@@ -5,6 +5,8 @@ import monkey.token.Token;
 public class Identifier implements Expression {
   private Token token; // Token.Type.IDENT
   private String value;
+  private int[] addresses; // (depth, slot) pairs, tried in order; set by the resolver
+  private int position = -1; // Offset of token in source, -1 if unknown
 
   public Identifier(Token token, String value) {
     this.token = token;
@@ -15,6 +17,28 @@ public class Identifier implements Expression {
     return value;
   }
 
+  public int[] getAddresses() {
+    return addresses;
+  }
+
+  public void setAddresses(int[] addresses) {
+    this.addresses = addresses;
+  }
+
+  @Override
+  public int getPosition() {
+    return position;
+  }
+
+  @Override
+  public void setPosition(int position) {
+    this.position = position;
+  }
+
+  public Token getToken() {
+    return token;
+  }
+
   @Override
   public String tokenLiteral() {
     return token.getLiteral();
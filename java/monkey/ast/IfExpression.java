@@ -7,6 +7,7 @@ public class IfExpression implements Expression {
   private Expression condition;
   private BlockStatement consequence;
   private BlockStatement alternative;
+  private int position = -1; // Offset of token in source, -1 if unknown
 
   public IfExpression(Token token, Expression condition, BlockStatement consequence,
       BlockStatement alternative) {
@@ -28,6 +29,20 @@ public class IfExpression implements Expression {
     return alternative;
   }
 
+  @Override
+  public int getPosition() {
+    return position;
+  }
+
+  @Override
+  public void setPosition(int position) {
+    this.position = position;
+  }
+
+  public Token getToken() {
+    return token;
+  }
+
   @Override
   public String tokenLiteral() {
     return token.getLiteral();
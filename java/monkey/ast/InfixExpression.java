@@ -5,10 +5,13 @@ import monkey.token.Token;
 public class InfixExpression implements Expression {
   private Token token;
   private Expression left;
-  private String operator;
+  private Operator operator;
   private Expression right;
+  private int specialization; // Chosen by the evaluator after the first run
+  private int cost; // Estimated cost of the cheaper operand, set by the resolver
+  private int position = -1; // Offset of token in source, -1 if unknown
 
-  public InfixExpression(Token token, Expression left, String operator, Expression right) {
+  public InfixExpression(Token token, Expression left, Operator operator, Expression right) {
     this.token = token;
     this.left = left;
     this.operator = operator;
@@ -19,7 +22,7 @@ public class InfixExpression implements Expression {
     return left;
   }
 
-  public String getOperator() {
+  public Operator getOperator() {
     return operator;
   }
 
@@ -27,6 +30,36 @@ public class InfixExpression implements Expression {
     return right;
   }
 
+  public int getSpecialization() {
+    return specialization;
+  }
+
+  public void setSpecialization(int specialization) {
+    this.specialization = specialization;
+  }
+
+  public int getCost() {
+    return cost;
+  }
+
+  public void setCost(int cost) {
+    this.cost = cost;
+  }
+
+  @Override
+  public int getPosition() {
+    return position;
+  }
+
+  @Override
+  public void setPosition(int position) {
+    this.position = position;
+  }
+
+  public Token getToken() {
+    return token;
+  }
+
   @Override
   public String tokenLiteral() {
     return token.getLiteral();
@@ -6,6 +6,8 @@ public class LetStatement implements Statement {
   private Token token; // Token.Type.LET
   private Identifier name;
   private Expression value;
+  private int slot;
+  private int position = -1; // Offset of token in source, -1 if unknown
 
   public LetStatement(Token token, Identifier name, Expression value) {
     this.token = token;
@@ -21,6 +23,28 @@ public class LetStatement implements Statement {
     return value;
   }
 
+  public int getSlot() {
+    return slot;
+  }
+
+  public void setSlot(int slot) {
+    this.slot = slot;
+  }
+
+  @Override
+  public int getPosition() {
+    return position;
+  }
+
+  @Override
+  public void setPosition(int position) {
+    this.position = position;
+  }
+
+  public Token getToken() {
+    return token;
+  }
+
   @Override
   public String tokenLiteral() {
     return token.getLiteral();
@@ -0,0 +1,51 @@
+package monkey.ast;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+import monkey.token.Token;
+
+public enum Operator {
+  PLUS("+"),
+  MINUS("-"),
+  BANG("!"),
+  ASTERISK("*"),
+  SLASH("/"),
+  LT("<"),
+  GT(">"),
+  EQ("=="),
+  NOT_EQ("!=");
+
+  private static final Map<Token.Type, Operator> tokens =
+      ImmutableMap.<Token.Type, Operator>builder()
+          .put(Token.Type.PLUS, PLUS)
+          .put(Token.Type.MINUS, MINUS)
+          .put(Token.Type.BANG, BANG)
+          .put(Token.Type.ASTERISK, ASTERISK)
+          .put(Token.Type.SLASH, SLASH)
+          .put(Token.Type.LT, LT)
+          .put(Token.Type.GT, GT)
+          .put(Token.Type.EQ, EQ)
+          .put(Token.Type.NOT_EQ, NOT_EQ)
+          .build();
+
+  private final String symbol;
+
+  Operator(String symbol) {
+    this.symbol = symbol;
+  }
+
+  public static Operator fromToken(Token.Type type) {
+    Operator operator = tokens.get(type);
+    if (operator == null) {
+      throw new IllegalArgumentException("not an operator: " + type);
+    }
+    return operator;
+  }
+
+  @Override
+  public String toString() {
+    return symbol;
+  }
+}
@@ -4,16 +4,17 @@ import monkey.token.Token;
 
 public class PrefixExpression implements Expression {
   private Token token;
-  private String operator;
+  private Operator operator;
   private Expression right;
+  private int position = -1; // Offset of token in source, -1 if unknown
 
-  public PrefixExpression(Token token, String operator, Expression right) {
+  public PrefixExpression(Token token, Operator operator, Expression right) {
     this.token = token;
     this.operator = operator;
     this.right = right;
   }
 
-  public String getOperator() {
+  public Operator getOperator() {
     return operator;
   }
 
@@ -21,6 +22,20 @@ public class PrefixExpression implements Expression {
     return right;
   }
 
+  @Override
+  public int getPosition() {
+    return position;
+  }
+
+  @Override
+  public void setPosition(int position) {
+    this.position = position;
+  }
+
+  public Token getToken() {
+    return token;
+  }
+
   @Override
   public String tokenLiteral() {
     return token.getLiteral();
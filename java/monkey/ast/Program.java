@@ -2,8 +2,14 @@ package monkey.ast;
 
 import java.util.List;
 
+import monkey.token.LineMap;
+
 public class Program implements Node {
   private List<Statement> statements;
+  // Number of global slots, or -1 until resolved. Volatile, so a thread that sees the program
+  // resolved also sees everything the resolver wrote into the tree.
+  private volatile int frameSize = -1;
+  private LineMap lines; // Of the source it was parsed from, null if unknown
 
   public Program(List<Statement> statements) {
     this.statements = statements;
@@ -13,6 +19,26 @@ public class Program implements Node {
     return statements;
   }
 
+  public LineMap getLines() {
+    return lines;
+  }
+
+  public void setLines(LineMap lines) {
+    this.lines = lines;
+  }
+
+  public boolean isResolved() {
+    return frameSize >= 0;
+  }
+
+  public int getFrameSize() {
+    return frameSize;
+  }
+
+  public void setFrameSize(int frameSize) {
+    this.frameSize = frameSize;
+  }
+
   @Override
   public String tokenLiteral() {
     if (!statements.isEmpty()) {
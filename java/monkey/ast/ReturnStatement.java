@@ -5,6 +5,8 @@ import monkey.token.Token;
 public class ReturnStatement implements Statement {
   private Token token; // Token.Type.RETURN
   private Expression value;
+  private boolean nested; // Inside an operand, so its value goes to the operand, see ReturnValue
+  private int position = -1; // Offset of token in source, -1 if unknown
 
   public ReturnStatement(Token token, Expression value) {
     this.token = token;
@@ -15,6 +17,28 @@ public class ReturnStatement implements Statement {
     return value;
   }
 
+  public boolean isNested() {
+    return nested;
+  }
+
+  public void setNested(boolean nested) {
+    this.nested = nested;
+  }
+
+  @Override
+  public int getPosition() {
+    return position;
+  }
+
+  @Override
+  public void setPosition(int position) {
+    this.position = position;
+  }
+
+  public Token getToken() {
+    return token;
+  }
+
   @Override
   public String tokenLiteral() {
     return token.getLiteral();
@@ -1,4 +1,9 @@
 package monkey.ast;
 
 public interface Statement extends Node {
+  // Offset of the token of the node in source, or -1 if unknown. LineMap turns it into a line
+  // and column.
+  int getPosition();
+
+  void setPosition(int position);
 }
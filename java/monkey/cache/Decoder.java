@@ -0,0 +1,286 @@
+package monkey.cache;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import monkey.ast.Program;
+import monkey.ast.Statement;
+import monkey.ast.BlockStatement;
+import monkey.ast.Expression;
+import monkey.ast.ExpressionStatement;
+import monkey.ast.LetStatement;
+import monkey.ast.ReturnStatement;
+import monkey.ast.Identifier;
+import monkey.ast.IntegerLiteral;
+import monkey.ast.BoolLiteral;
+import monkey.ast.Operator;
+import monkey.ast.PrefixExpression;
+import monkey.ast.InfixExpression;
+import monkey.ast.IfExpression;
+import monkey.ast.FunctionLiteral;
+import monkey.ast.CallExpression;
+import monkey.token.Token;
+import monkey.token.LineMap;
+import monkey.token.LineStarts;
+import monkey.compiler.Bytecode;
+import monkey.object.Obj;
+import monkey.object.Int;
+import monkey.object.Except;
+import monkey.object.CompiledFunction;
+
+// Reads back what Encoder wrote. Malformed input makes it throw IllegalArgumentException or one
+// of the ByteBuffer exceptions.
+class Decoder {
+  private static final Token.Type[] TYPES = Token.Type.values();
+  private static final Operator[] OPERATORS = Operator.values();
+
+  private ByteBuffer in;
+  private String[] strings;
+  private Token[] lastToken = new Token[TYPES.length];
+
+  Decoder(ByteBuffer in) {
+    this.in = in;
+  }
+
+  void readStringTable() {
+    strings = new String[readVarint()];
+    byte[] bytes = new byte[64];
+    for (int i = 0; i < strings.length; i++) {
+      int length = readVarint();
+      if (length > bytes.length) {
+        bytes = new byte[length];
+      }
+      in.get(bytes, 0, length);
+      strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+  }
+
+  Program readProgram() {
+    LineMap lines = readLines();
+    Program program = new Program(readStatements());
+    program.setLines(lines);
+    return program;
+  }
+
+  private LineMap readLines() {
+    int n = readVarint();
+    if (n == 0) {
+      return null;
+    }
+    LineStarts lines = new LineStarts();
+    int start = 0;
+    for (int i = 1; i < n; i++) {
+      start += readVarint();
+      lines.addLineStart(start);
+    }
+    return lines;
+  }
+
+  Bytecode readBytecode() {
+    int[] instructions = readInts();
+    List<Obj> constants = new ArrayList<>();
+    for (int n = readVarint(); n > 0; n--) {
+      constants.add(readConstant());
+    }
+    List<String> globalNames = new ArrayList<>();
+    for (int n = readVarint(); n > 0; n--) {
+      globalNames.add(readString());
+    }
+    return new Bytecode(instructions, constants, globalNames);
+  }
+
+  private List<Statement> readStatements() {
+    int n = readVarint() - 1;
+    if (n < 0) {
+      return null;
+    }
+    List<Statement> statements = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      statements.add(readStatement());
+    }
+    return statements;
+  }
+
+  private Statement readStatement() {
+    int tag = in.get();
+    Token token = readToken();
+    int position = readVarint() - 1;
+    Statement st;
+    switch (tag) {
+      case Tag.LET:
+        st = new LetStatement(token, (Identifier)readExpression(), readExpression());
+        break;
+      case Tag.RETURN:
+        st = new ReturnStatement(token, readExpression());
+        break;
+      case Tag.EXPRESSION:
+        st = new ExpressionStatement(token, readExpression());
+        break;
+      default:
+        throw new IllegalArgumentException("bad statement tag: " + tag);
+    }
+    st.setPosition(position);
+    return st;
+  }
+
+  private BlockStatement readBlock() {
+    int tag = in.get();
+    if (tag == Tag.NULL) {
+      return null;
+    } else if (tag != Tag.BLOCK) {
+      throw new IllegalArgumentException("bad block tag: " + tag);
+    }
+    Token token = readToken();
+    int position = readVarint() - 1;
+    BlockStatement bs = new BlockStatement(token, readStatements());
+    bs.setPosition(position);
+    return bs;
+  }
+
+  private Expression readExpression() {
+    int tag = in.get();
+    if (tag == Tag.NULL) {
+      return null;
+    }
+    Token token = readToken();
+    int position = readVarint() - 1;
+    Expression e;
+    switch (tag) {
+      case Tag.IDENTIFIER:
+        e = new Identifier(token, readString());
+        break;
+      case Tag.INTEGER:
+        e = new IntegerLiteral(token, readLong());
+        break;
+      case Tag.BOOL:
+        e = new BoolLiteral(token, in.get() != 0);
+        break;
+      case Tag.PREFIX:
+        e = new PrefixExpression(token, OPERATORS[in.get()], readExpression());
+        break;
+      case Tag.INFIX: {
+        Expression left = readExpression();
+        Operator operator = OPERATORS[in.get()];
+        e = new InfixExpression(token, left, operator, readExpression());
+        break;
+      }
+      case Tag.IF:
+        e = new IfExpression(token, readExpression(), readBlock(), readBlock());
+        break;
+      case Tag.FUNCTION: {
+        List<Identifier> parameters = readIdentifiers();
+        e = new FunctionLiteral(token, parameters, readBlock(), readBlock());
+        break;
+      }
+      case Tag.CALL: {
+        Expression function = readExpression();
+        e = new CallExpression(token, function, readExpressions());
+        break;
+      }
+      default:
+        throw new IllegalArgumentException("bad expression tag: " + tag);
+    }
+    e.setPosition(position);
+    return e;
+  }
+
+  private List<Expression> readExpressions() {
+    int n = readVarint() - 1;
+    if (n < 0) {
+      return null;
+    }
+    List<Expression> expressions = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      expressions.add(readExpression());
+    }
+    return expressions;
+  }
+
+  private List<Identifier> readIdentifiers() {
+    int n = readVarint() - 1;
+    if (n < 0) {
+      return null;
+    }
+    List<Identifier> identifiers = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      identifiers.add((Identifier)readExpression());
+    }
+    return identifiers;
+  }
+
+  private Token readToken() {
+    int v = readVarint();
+    if ((v & 1) == 0) {
+      return lastToken[v >>> 1];
+    }
+    Token token = new Token(TYPES[v >>> 1], readString());
+    lastToken[v >>> 1] = token;
+    return token;
+  }
+
+  private Obj readConstant() {
+    int tag = in.get();
+    switch (tag) {
+      case Tag.INTEGER:
+        return Int.valueOf(readLong());
+      case Tag.EXCEPT:
+        return new Except(readString());
+      case Tag.FUNCTION: {
+        int[] instructions = readInts();
+        int numLocals = readVarint();
+        int numParameters = readVarint();
+        String[] localNames = readStrings();
+        String[] freeNames = readStrings();
+        return new CompiledFunction(instructions, numLocals, numParameters, localNames, freeNames,
+            readString());
+      }
+      default:
+        throw new IllegalArgumentException("bad constant tag: " + tag);
+    }
+  }
+
+  private int[] readInts() {
+    int[] values = new int[readVarint()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = readVarint();
+    }
+    return values;
+  }
+
+  private String[] readStrings() {
+    String[] values = new String[readVarint()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = readString();
+    }
+    return values;
+  }
+
+  private String readString() {
+    return strings[readVarint()];
+  }
+
+  private long readLong() {
+    long v = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = in.get();
+      v |= (long)(b & 0x7F) << shift;
+      if (b >= 0) {
+        break;
+      }
+    }
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  private int readVarint() {
+    int v = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = in.get();
+      v |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return v;
+      }
+    }
+  }
+}
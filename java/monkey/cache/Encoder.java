@@ -0,0 +1,289 @@
+package monkey.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.ArrayList;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import monkey.ast.Program;
+import monkey.ast.Statement;
+import monkey.ast.BlockStatement;
+import monkey.ast.Expression;
+import monkey.ast.ExpressionStatement;
+import monkey.ast.LetStatement;
+import monkey.ast.ReturnStatement;
+import monkey.ast.Identifier;
+import monkey.ast.IntegerLiteral;
+import monkey.ast.BoolLiteral;
+import monkey.ast.PrefixExpression;
+import monkey.ast.InfixExpression;
+import monkey.ast.IfExpression;
+import monkey.ast.FunctionLiteral;
+import monkey.ast.CallExpression;
+import monkey.token.Token;
+import monkey.token.LineMap;
+import monkey.compiler.Bytecode;
+import monkey.object.Obj;
+import monkey.object.Int;
+import monkey.object.Except;
+import monkey.object.CompiledFunction;
+
+// Writes the sections of a cache file, see ScriptCache for the layout.
+class Encoder {
+  private ByteArrayOutputStream out = new ByteArrayOutputStream();
+  private Map<String, Integer> strings = new HashMap<>();
+  private List<String> table = new ArrayList<>();
+  private Map<Token.Type, String> lastLiteral = new EnumMap<>(Token.Type.class);
+
+  int size() {
+    return out.size();
+  }
+
+  void writeProgram(Program program) {
+    writeLines(program.getLines());
+    writeStatements(program.getStatements());
+  }
+
+  // Line starts as deltas from the previous one, or just 0 if unknown.
+  private void writeLines(LineMap lines) {
+    if (lines == null) {
+      writeVarint(0);
+      return;
+    }
+    writeVarint(lines.size());
+    for (int line = 2; line <= lines.size(); line++) {
+      writeVarint(lines.start(line) - lines.start(line - 1));
+    }
+  }
+
+  void writeBytecode(Bytecode bytecode) {
+    writeInts(bytecode.getInstructions());
+    writeVarint(bytecode.getConstants().size());
+    for (Obj o : bytecode.getConstants()) {
+      writeConstant(o);
+    }
+    writeVarint(bytecode.getGlobalNames().size());
+    for (String name : bytecode.getGlobalNames()) {
+      writeString(name);
+    }
+  }
+
+  // Strings referenced so far, each one once, in the order they were first written.
+  byte[] stringTable() {
+    Encoder e = new Encoder();
+    e.writeVarint(table.size());
+    for (String s : table) {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      e.writeVarint(bytes.length);
+      e.out.write(bytes, 0, bytes.length);
+    }
+    return e.toByteArray();
+  }
+
+  byte[] toByteArray() {
+    return out.toByteArray();
+  }
+
+  private void writeStatements(List<Statement> statements) {
+    if (statements == null) {
+      writeVarint(0);
+      return;
+    }
+    writeVarint(statements.size() + 1);
+    for (Statement st : statements) {
+      writeStatement(st);
+    }
+  }
+
+  private void writeStatement(Statement st) {
+    if (st instanceof LetStatement) {
+      LetStatement ls = (LetStatement)st;
+      out.write(Tag.LET);
+      writeToken(ls.getToken());
+      writePosition(ls.getPosition());
+      writeExpression(ls.getName());
+      writeExpression(ls.getValue());
+    } else if (st instanceof ReturnStatement) {
+      ReturnStatement rs = (ReturnStatement)st;
+      out.write(Tag.RETURN);
+      writeToken(rs.getToken());
+      writePosition(rs.getPosition());
+      writeExpression(rs.getValue());
+    } else if (st instanceof ExpressionStatement) {
+      ExpressionStatement es = (ExpressionStatement)st;
+      out.write(Tag.EXPRESSION);
+      writeToken(es.getToken());
+      writePosition(es.getPosition());
+      writeExpression(es.getExpression());
+    } else {
+      throw new IllegalArgumentException("can't serialize " + st.getClass().getSimpleName());
+    }
+  }
+
+  private void writeBlock(BlockStatement bs) {
+    if (bs == null) {
+      out.write(Tag.NULL);
+      return;
+    }
+    out.write(Tag.BLOCK);
+    writeToken(bs.getToken());
+    writePosition(bs.getPosition());
+    writeStatements(bs.getStatements());
+  }
+
+  private void writeExpression(Expression e) {
+    if (e == null) {
+      out.write(Tag.NULL);
+    } else if (e instanceof Identifier) {
+      Identifier id = (Identifier)e;
+      out.write(Tag.IDENTIFIER);
+      writeToken(id.getToken());
+      writePosition(id.getPosition());
+      writeString(id.getValue());
+    } else if (e instanceof IntegerLiteral) {
+      IntegerLiteral il = (IntegerLiteral)e;
+      out.write(Tag.INTEGER);
+      writeToken(il.getToken());
+      writePosition(il.getPosition());
+      writeLong(il.getValue());
+    } else if (e instanceof BoolLiteral) {
+      BoolLiteral bl = (BoolLiteral)e;
+      out.write(Tag.BOOL);
+      writeToken(bl.getToken());
+      writePosition(bl.getPosition());
+      out.write(bl.getValue() ? 1 : 0);
+    } else if (e instanceof PrefixExpression) {
+      PrefixExpression pe = (PrefixExpression)e;
+      out.write(Tag.PREFIX);
+      writeToken(pe.getToken());
+      writePosition(pe.getPosition());
+      out.write(pe.getOperator().ordinal());
+      writeExpression(pe.getRight());
+    } else if (e instanceof InfixExpression) {
+      InfixExpression ie = (InfixExpression)e;
+      out.write(Tag.INFIX);
+      writeToken(ie.getToken());
+      writePosition(ie.getPosition());
+      writeExpression(ie.getLeft());
+      out.write(ie.getOperator().ordinal());
+      writeExpression(ie.getRight());
+    } else if (e instanceof IfExpression) {
+      IfExpression ie = (IfExpression)e;
+      out.write(Tag.IF);
+      writeToken(ie.getToken());
+      writePosition(ie.getPosition());
+      writeExpression(ie.getCondition());
+      writeBlock(ie.getConsequence());
+      writeBlock(ie.getAlternative());
+    } else if (e instanceof FunctionLiteral) {
+      FunctionLiteral fl = (FunctionLiteral)e;
+      out.write(Tag.FUNCTION);
+      writeToken(fl.getToken());
+      writePosition(fl.getPosition());
+      writeExpressions(fl.getParameters());
+      writeBlock(fl.getBody());
+      writeBlock(fl.getSourceBody() != fl.getBody() ? fl.getSourceBody() : null);
+    } else if (e instanceof CallExpression) {
+      CallExpression ce = (CallExpression)e;
+      out.write(Tag.CALL);
+      writeToken(ce.getToken());
+      writePosition(ce.getPosition());
+      writeExpression(ce.getFunction());
+      writeExpressions(ce.getArguments());
+    } else {
+      throw new IllegalArgumentException("can't serialize " + e.getClass().getSimpleName());
+    }
+  }
+
+  private void writeExpressions(List<? extends Expression> expressions) {
+    if (expressions == null) {
+      writeVarint(0);
+      return;
+    }
+    writeVarint(expressions.size() + 1);
+    for (Expression e : expressions) {
+      writeExpression(e);
+    }
+  }
+
+  // Most tokens repeat the previous literal of their type, those are written without it.
+  private void writeToken(Token token) {
+    int type = token.getType().ordinal();
+    if (token.getLiteral().equals(lastLiteral.get(token.getType()))) {
+      writeVarint(type << 1);
+    } else {
+      writeVarint(type << 1 | 1);
+      writeString(token.getLiteral());
+      lastLiteral.put(token.getType(), token.getLiteral());
+    }
+  }
+
+  private void writePosition(int position) {
+    writeVarint(position + 1);
+  }
+
+  private void writeConstant(Obj o) {
+    if (o instanceof Int) {
+      out.write(Tag.INTEGER);
+      writeLong(((Int)o).getValue());
+    } else if (o instanceof Except) {
+      out.write(Tag.EXCEPT);
+      writeString(((Except)o).getMessage());
+    } else if (o instanceof CompiledFunction) {
+      CompiledFunction fn = (CompiledFunction)o;
+      out.write(Tag.FUNCTION);
+      writeInts(fn.getInstructions());
+      writeVarint(fn.getNumLocals());
+      writeVarint(fn.getNumParameters());
+      writeStrings(fn.getLocalNames());
+      writeStrings(fn.getFreeNames());
+      writeString(fn.getSource());
+    } else {
+      throw new IllegalArgumentException("can't serialize " + o.typeName());
+    }
+  }
+
+  private void writeInts(int[] values) {
+    writeVarint(values.length);
+    for (int v : values) {
+      writeVarint(v);
+    }
+  }
+
+  private void writeStrings(String[] values) {
+    writeVarint(values.length);
+    for (String s : values) {
+      writeString(s);
+    }
+  }
+
+  private void writeString(String s) {
+    Integer index = strings.get(s);
+    if (index == null) {
+      index = table.size();
+      strings.put(s, index);
+      table.add(s);
+    }
+    writeVarint(index);
+  }
+
+  private void writeLong(long v) {
+    v = (v << 1) ^ (v >> 63); // Zigzag, so small negative numbers stay short
+    while ((v & ~0x7FL) != 0) {
+      out.write((int)((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    out.write((int)v);
+  }
+
+  private void writeVarint(int v) {
+    while ((v & ~0x7F) != 0) {
+      out.write((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    out.write(v);
+  }
+}
@@ -0,0 +1,145 @@
+package monkey.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.hash.Hashing;
+
+import monkey.ast.Program;
+import monkey.compiler.Bytecode;
+
+/*
+ * Keeps parsed scripts in a directory, so a fresh JVM can run a script it has seen before
+ * without lexing or parsing it. There is one file per script path, holding the optimized program
+ * and its bytecode:
+ *
+ *   int MAGIC, int VERSION, int file size, byte[32] SHA-256 of the source,
+ *   int program offset, int bytecode offset, string table, program, bytecode
+ *
+ * Strings are written once and referred to by their index in the table. Counts, indices and
+ * instructions are varints, Int values are zigzag varints. See Encoder for the rest.
+ *
+ * Files are memory-mapped for reading. A file whose version or checksum doesn't match, or that
+ * can't be read, counts as a miss. Files are written to a temporary name and moved into place,
+ * so a reader never sees half a file.
+ */
+public class ScriptCache {
+  private static final int MAGIC = 0x4D4E4B43; // "MNKC"
+  static final int VERSION = 4;
+  private static final int CHECKSUM_SIZE = 32;
+  private static final int PROGRAM_OFFSET = 4 + 4 + 4 + CHECKSUM_SIZE;
+  private static final int BYTECODE_OFFSET = PROGRAM_OFFSET + 4;
+  private static final int HEADER_SIZE = BYTECODE_OFFSET + 4;
+  private static final String SUFFIX = ".mnkc";
+
+  private Path dir;
+
+  public ScriptCache(Path dir) {
+    this.dir = dir;
+  }
+
+  // Returns the cached program, or null if the script isn't cached or has changed.
+  public Program loadProgram(Path script, byte[] source) throws IOException {
+    ByteBuffer buf = open(script, source);
+    if (buf == null) {
+      return null;
+    }
+    try {
+      Decoder d = new Decoder(buf);
+      d.readStringTable();
+      buf.position(buf.getInt(PROGRAM_OFFSET));
+      return d.readProgram();
+    } catch (RuntimeException e) {
+      return null; // Corrupted file, parse it again
+    }
+  }
+
+  // Returns the cached bytecode, or null if the script isn't cached or has changed.
+  public Bytecode loadBytecode(Path script, byte[] source) throws IOException {
+    ByteBuffer buf = open(script, source);
+    if (buf == null) {
+      return null;
+    }
+    try {
+      Decoder d = new Decoder(buf);
+      d.readStringTable();
+      buf.position(buf.getInt(BYTECODE_OFFSET));
+      return d.readBytecode();
+    } catch (RuntimeException e) {
+      return null; // Corrupted file, parse it again
+    }
+  }
+
+  // Both program and bytecode should come from the source, and program shouldn't be run yet.
+  public void store(Path script, byte[] source, Program program, Bytecode bytecode)
+    throws IOException {
+    Encoder e = new Encoder();
+    e.writeProgram(program);
+    int bytecodeStart = e.size();
+    e.writeBytecode(bytecode);
+    byte[] strings = e.stringTable();
+    byte[] body = e.toByteArray();
+
+    int size = HEADER_SIZE + strings.length + body.length;
+    ByteBuffer buf = ByteBuffer.allocate(size);
+    buf.putInt(MAGIC);
+    buf.putInt(VERSION);
+    buf.putInt(size);
+    buf.put(checksum(source));
+    buf.putInt(HEADER_SIZE + strings.length);
+    buf.putInt(HEADER_SIZE + strings.length + bytecodeStart);
+    buf.put(strings);
+    buf.put(body);
+
+    Files.createDirectories(dir);
+    Path tmp = Files.createTempFile(dir, "script", SUFFIX);
+    try {
+      Files.write(tmp, buf.array());
+      Files.move(tmp, file(script), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  // Maps the file of script and positions it after the header, or returns null on a miss.
+  private ByteBuffer open(Path script, byte[] source) throws IOException {
+    MappedByteBuffer buf;
+    try (FileChannel channel = FileChannel.open(file(script), StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE) {
+        return null;
+      }
+      buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    if (buf.getInt() != MAGIC || buf.getInt() != VERSION || buf.getInt() != buf.capacity()) {
+      return null;
+    }
+    byte[] expected = checksum(source);
+    for (int i = 0; i < CHECKSUM_SIZE; i++) {
+      if (buf.get() != expected[i]) {
+        return null;
+      }
+    }
+    buf.position(HEADER_SIZE);
+    return buf;
+  }
+
+  private Path file(Path script) {
+    String name = script.toAbsolutePath().normalize().toString();
+    return dir.resolve(Hashing.sha256().hashString(name, StandardCharsets.UTF_8) + SUFFIX);
+  }
+
+  private static byte[] checksum(byte[] source) {
+    return Hashing.sha256().hashBytes(source).asBytes();
+  }
+}
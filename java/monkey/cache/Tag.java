@@ -0,0 +1,29 @@
+package monkey.cache;
+
+// Node and constant tags of the cache file format. Changing them means bumping
+// ScriptCache.VERSION.
+final class Tag {
+  static final int NULL = 0;
+
+  // Statements
+  static final int LET = 1;
+  static final int RETURN = 2;
+  static final int EXPRESSION = 3;
+  static final int BLOCK = 4;
+
+  // Expressions, INTEGER and FUNCTION are also used for constants
+  static final int IDENTIFIER = 5;
+  static final int INTEGER = 6;
+  static final int BOOL = 7;
+  static final int PREFIX = 8;
+  static final int INFIX = 9;
+  static final int IF = 10;
+  static final int FUNCTION = 11;
+  static final int CALL = 12;
+
+  // Constants
+  static final int EXCEPT = 13;
+
+  private Tag() {
+  }
+}
@@ -0,0 +1,29 @@
+package monkey.compiler;
+
+import java.util.List;
+
+import monkey.object.Obj;
+
+public class Bytecode {
+  private final int[] instructions;
+  private final List<Obj> constants;
+  private final List<String> globalNames;
+
+  public Bytecode(int[] instructions, List<Obj> constants, List<String> globalNames) {
+    this.instructions = instructions;
+    this.constants = constants;
+    this.globalNames = globalNames;
+  }
+
+  public int[] getInstructions() {
+    return instructions;
+  }
+
+  public List<Obj> getConstants() {
+    return constants;
+  }
+
+  public List<String> getGlobalNames() {
+    return globalNames;
+  }
+}
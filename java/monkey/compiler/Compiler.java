@@ -0,0 +1,351 @@
+package monkey.compiler;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.google.common.base.Joiner;
+
+import monkey.ast.Program;
+import monkey.ast.Statement;
+import monkey.ast.Expression;
+import monkey.ast.ExpressionStatement;
+import monkey.ast.LetStatement;
+import monkey.ast.ReturnStatement;
+import monkey.ast.IntegerLiteral;
+import monkey.ast.BoolLiteral;
+import monkey.ast.PrefixExpression;
+import monkey.ast.InfixExpression;
+import monkey.ast.Operator;
+import monkey.ast.IfExpression;
+import monkey.ast.Identifier;
+import monkey.ast.FunctionLiteral;
+import monkey.ast.CallExpression;
+import monkey.object.Obj;
+import monkey.object.Int;
+import monkey.object.Except;
+import monkey.object.CompiledFunction;
+
+/*
+ * Compiles a program to bytecode for VM. Returns behave as they do in Evaluator: one that isn't
+ * nested in an operand ends its function with RETURN_VALUE, and one that is wraps its value in a
+ * ReturnValue and jumps to where the operand ends, which is then the operand's value. A block
+ * whose statement gives a ReturnValue stops the same way, and a function unwraps the one its
+ * body ends with.
+ */
+public class Compiler {
+  private List<Obj> constants;
+  private SymbolTable symbolTable;
+  private Scope scope;
+
+  public Compiler(SymbolTable symbolTable, List<Obj> constants) {
+    this.symbolTable = symbolTable;
+    this.constants = constants;
+    this.scope = new Scope(null);
+  }
+
+  public Compiler() {
+    this(new SymbolTable(), new ArrayList<>());
+  }
+
+  public Bytecode compile(Program program) {
+    compileStatements(program.getStatements());
+    emitBodyReturn();
+    return new Bytecode(scope.toArray(), constants, symbolTable.getNames());
+  }
+
+  private void compileStatements(List<Statement> statements) {
+    if (statements.isEmpty()) {
+      emit(Opcode.NIL);
+      return;
+    }
+    for (int i = 0; i < statements.size(); i++) {
+      boolean last = i == statements.size() - 1;
+      Statement st = statements.get(i);
+      if (st instanceof ExpressionStatement) {
+        Expression e = ((ExpressionStatement)st).getExpression();
+        compileExpression(e);
+        if (!last) {
+          if (mayReturn(e)) {
+            scope.exits.add(emit(Opcode.JUMP_IF_RETURN, -1));
+          }
+          emit(Opcode.POP);
+        }
+      } else if (st instanceof LetStatement) {
+        compileLetStatement((LetStatement)st);
+        if (last) {
+          emit(Opcode.NIL);
+        }
+      } else if (st instanceof ReturnStatement) {
+        compileOperand(((ReturnStatement)st).getValue());
+        if (scope.operands > 0) {
+          emit(Opcode.WRAP_RETURN);
+          scope.exits.add(emit(Opcode.JUMP, -1));
+        } else {
+          emit(Opcode.RETURN_VALUE);
+        }
+      }
+    }
+  }
+
+  // Only these can give a ReturnValue, the value of any other expression is a new one.
+  private static boolean mayReturn(Expression e) {
+    return e instanceof Identifier || e instanceof CallExpression || e instanceof IfExpression;
+  }
+
+  // Compiles e, whose value is used by the node around it. Returns nested in it end up at its
+  // end.
+  private void compileOperand(Expression e) {
+    List<Integer> exits = scope.exits;
+    scope.exits = new ArrayList<>();
+    scope.operands++;
+    compileExpression(e);
+    scope.operands--;
+    patchExits();
+    scope.exits = exits;
+  }
+
+  private void emitBodyReturn() {
+    patchExits();
+    emit(Opcode.UNWRAP_RETURN);
+    emit(Opcode.RETURN_VALUE);
+  }
+
+  private void patchExits() {
+    for (int position : scope.exits) {
+      patch(position, scope.size());
+    }
+  }
+
+  private void compileLetStatement(LetStatement ls) {
+    String name = ls.getName().getValue();
+    if (ls.getValue() instanceof FunctionLiteral) {
+      compileFunctionLiteral((FunctionLiteral)ls.getValue(), name);
+    } else {
+      compileOperand(ls.getValue());
+    }
+    Symbol s = symbolTable.define(name, scope.conditional == 0);
+    if (s.getScope() == Symbol.Scope.GLOBAL) {
+      emit(Opcode.SET_GLOBAL, s.getIndex());
+    } else {
+      emit(Opcode.SET_LOCAL, s.getIndex());
+    }
+  }
+
+  private void compileExpression(Expression e) {
+    if (e == null) {
+      emit(Opcode.NIL);
+    } else if (e instanceof IntegerLiteral) {
+      emit(Opcode.CONSTANT, addConstant(Int.valueOf(((IntegerLiteral)e).getValue())));
+    } else if (e instanceof BoolLiteral) {
+      emit(((BoolLiteral)e).getValue() ? Opcode.TRUE : Opcode.FALSE);
+    } else if (e instanceof PrefixExpression) {
+      PrefixExpression pe = (PrefixExpression)e;
+      compileOperand(pe.getRight());
+      emit(prefixOpcode(pe.getOperator()));
+    } else if (e instanceof InfixExpression) {
+      InfixExpression ie = (InfixExpression)e;
+      compileOperand(ie.getLeft());
+      compileOperand(ie.getRight());
+      emit(infixOpcode(ie.getOperator()));
+    } else if (e instanceof IfExpression) {
+      compileIfExpression((IfExpression)e);
+    } else if (e instanceof Identifier) {
+      compileIdentifier((Identifier)e);
+    } else if (e instanceof FunctionLiteral) {
+      compileFunctionLiteral((FunctionLiteral)e, null);
+    } else if (e instanceof CallExpression) {
+      CallExpression ce = (CallExpression)e;
+      compileOperand(ce.getFunction());
+      List<Expression> args = nullToEmpty(ce.getArguments());
+      for (Expression arg : args) {
+        compileOperand(arg);
+      }
+      emit(Opcode.CALL, args.size());
+    } else {
+      emit(Opcode.NIL);
+    }
+  }
+
+  private void compileIfExpression(IfExpression ie) {
+    compileOperand(ie.getCondition());
+    int jumpIfFalse = emit(Opcode.JUMP_IF_FALSE, -1);
+
+    scope.conditional++;
+    compileStatements(ie.getConsequence().getStatements());
+    int jump = emit(Opcode.JUMP, -1);
+    patch(jumpIfFalse, scope.size());
+    if (ie.getAlternative() != null) {
+      compileStatements(ie.getAlternative().getStatements());
+    } else {
+      emit(Opcode.NIL);
+    }
+    scope.conditional--;
+    patch(jump, scope.size());
+  }
+
+  private void compileIdentifier(Identifier id) {
+    List<Symbol> chain = symbolTable.resolve(id.getValue());
+    if (chain.isEmpty()) {
+      emit(Opcode.UNDEFINED, addConstant(new Except("identifier not found: " + id.getValue())));
+    } else if (chain.size() == 1) {
+      Symbol s = chain.get(0);
+      switch (s.getScope()) {
+        case GLOBAL:
+          emit(Opcode.GET_GLOBAL, s.getIndex());
+          break;
+        case LOCAL:
+          emit(Opcode.GET_LOCAL, s.getIndex());
+          break;
+        case FREE:
+          emit(Opcode.GET_FREE, s.getIndex());
+          break;
+        case FUNCTION:
+          emit(Opcode.CURRENT_CLOSURE);
+          break;
+      }
+    } else {
+      emit(Opcode.GET_CHAIN);
+      emitChain(chain);
+    }
+  }
+
+  private void compileFunctionLiteral(FunctionLiteral fl, String name) {
+    List<Identifier> params = nullToEmpty(fl.getParameters());
+    symbolTable = SymbolTable.enclose(symbolTable);
+    scope = new Scope(scope);
+    if (name != null) {
+      symbolTable.defineFunctionName(name);
+    }
+    for (Identifier param : params) {
+      symbolTable.define(param.getValue(), true);
+    }
+
+    compileStatements(fl.getBody().getStatements());
+    emitBodyReturn();
+
+    List<Symbol> free = symbolTable.getFreeSymbols();
+    String[] freeNames = new String[free.size()];
+    for (int i = 0; i < freeNames.length; i++) {
+      freeNames[i] = free.get(i).getName();
+    }
+    CompiledFunction fn = new CompiledFunction(scope.toArray(), symbolTable.size(), params.size(),
+        symbolTable.getNames().toArray(new String[0]), freeNames, functionSource(params, fl));
+    symbolTable = symbolTable.getOuter();
+    scope = scope.outer;
+
+    emit(Opcode.CLOSURE, addConstant(fn), free.size());
+    for (Symbol s : free) {
+      emitChain(s.getCapture());
+    }
+  }
+
+  private void emitChain(List<Symbol> chain) {
+    emit(chain.size());
+    for (Symbol s : chain) {
+      emit(s.getScope().ordinal(), s.getIndex());
+    }
+  }
+
+  private static String functionSource(List<Identifier> params, FunctionLiteral fl) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("fn (");
+    sb.append(Joiner.on(", ").join(params));
+    sb.append(") { ");
+    sb.append(fl.getSourceBody().toString());
+    sb.append(" }");
+    return sb.toString();
+  }
+
+  private static int prefixOpcode(Operator operator) {
+    switch (operator) {
+      case BANG:
+        return Opcode.BANG;
+      case MINUS:
+        return Opcode.MINUS;
+      default:
+        throw new IllegalArgumentException("unknown prefix operator: " + operator);
+    }
+  }
+
+  private static int infixOpcode(Operator operator) {
+    switch (operator) {
+      case PLUS:
+        return Opcode.ADD;
+      case MINUS:
+        return Opcode.SUB;
+      case ASTERISK:
+        return Opcode.MUL;
+      case SLASH:
+        return Opcode.DIV;
+      case EQ:
+        return Opcode.EQ;
+      case NOT_EQ:
+        return Opcode.NOT_EQ;
+      case LT:
+        return Opcode.LT;
+      case GT:
+        return Opcode.GT;
+      default:
+        throw new IllegalArgumentException("unknown infix operator: " + operator);
+    }
+  }
+
+  private static <T> List<T> nullToEmpty(List<T> list) {
+    return list == null ? Collections.<T>emptyList() : list;
+  }
+
+  private int addConstant(Obj o) {
+    constants.add(o);
+    return constants.size() - 1;
+  }
+
+  private int emit(int... words) {
+    return scope.append(words);
+  }
+
+  private void patch(int position, int target) {
+    scope.instructions[position + 1] = target;
+  }
+
+  public SymbolTable getSymbolTable() {
+    return symbolTable;
+  }
+
+  public List<Obj> getConstants() {
+    return constants;
+  }
+
+  private static class Scope {
+    private Scope outer;
+    private int[] instructions = new int[16];
+    private int size;
+    private int conditional; // Number of enclosing if branches within this function
+    private int operands; // Number of enclosing operands, let and return values in this function
+    private List<Integer> exits = new ArrayList<>(); // Jumps to where the innermost one ends
+
+    Scope(Scope outer) {
+      this.outer = outer;
+    }
+
+    int append(int[] words) {
+      if (size + words.length > instructions.length) {
+        instructions = Arrays.copyOf(instructions,
+            Math.max(instructions.length * 2, size + words.length));
+      }
+      System.arraycopy(words, 0, instructions, size, words.length);
+      int position = size;
+      size += words.length;
+      return position;
+    }
+
+    int size() {
+      return size;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(instructions, size);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package monkey.compiler;
+
+public final class Opcode {
+  // Constants and literals
+  public static final int CONSTANT = 0; // CONSTANT index
+  public static final int TRUE = 1;
+  public static final int FALSE = 2;
+  public static final int NIL = 3;
+  public static final int POP = 4;
+
+  // Operators
+  public static final int ADD = 5;
+  public static final int SUB = 6;
+  public static final int MUL = 7;
+  public static final int DIV = 8;
+  public static final int EQ = 9;
+  public static final int NOT_EQ = 10;
+  public static final int LT = 11;
+  public static final int GT = 12;
+  public static final int MINUS = 13;
+  public static final int BANG = 14;
+
+  // Control flow
+  public static final int JUMP = 15; // JUMP target
+  public static final int JUMP_IF_FALSE = 16; // JUMP_IF_FALSE target
+
+  // Bindings
+  public static final int GET_GLOBAL = 17; // GET_GLOBAL index
+  public static final int SET_GLOBAL = 18; // SET_GLOBAL index
+  public static final int GET_LOCAL = 19; // GET_LOCAL index
+  public static final int SET_LOCAL = 20; // SET_LOCAL index
+  public static final int GET_FREE = 21; // GET_FREE index
+  public static final int CURRENT_CLOSURE = 22;
+  public static final int GET_CHAIN = 23; // GET_CHAIN count (scope index)*
+  public static final int UNDEFINED = 24; // UNDEFINED index
+
+  // Functions
+  public static final int CLOSURE = 25; // CLOSURE index count (chain)*
+  public static final int CALL = 26; // CALL argc
+  public static final int RETURN_VALUE = 27;
+
+  // Returns nested in operands
+  public static final int WRAP_RETURN = 28;
+  public static final int UNWRAP_RETURN = 29;
+  public static final int JUMP_IF_RETURN = 30; // JUMP_IF_RETURN target
+
+  private static final String[] NAMES = {
+    "CONSTANT", "TRUE", "FALSE", "NIL", "POP",
+    "ADD", "SUB", "MUL", "DIV", "EQ", "NOT_EQ", "LT", "GT", "MINUS", "BANG",
+    "JUMP", "JUMP_IF_FALSE",
+    "GET_GLOBAL", "SET_GLOBAL", "GET_LOCAL", "SET_LOCAL", "GET_FREE", "CURRENT_CLOSURE",
+    "GET_CHAIN", "UNDEFINED",
+    "CLOSURE", "CALL", "RETURN_VALUE",
+    "WRAP_RETURN", "UNWRAP_RETURN", "JUMP_IF_RETURN",
+  };
+
+  private Opcode() {
+  }
+
+  public static String name(int op) {
+    if (op < 0 || op >= NAMES.length) {
+      return "UNKNOWN(" + op + ")";
+    }
+    return NAMES[op];
+  }
+}
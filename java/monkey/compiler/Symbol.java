@@ -0,0 +1,63 @@
+package monkey.compiler;
+
+import java.util.List;
+
+import com.google.common.base.MoreObjects;
+
+public class Symbol {
+  private String name;
+  private Scope scope;
+  private int index;
+  private boolean definite; // Bound on every path that reaches a later use
+  private List<Symbol> capture; // Where a FREE symbol is loaded from in the enclosing scope
+
+  public Symbol(String name, Scope scope, int index) {
+    this.name = name;
+    this.scope = scope;
+    this.index = index;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Scope getScope() {
+    return scope;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public boolean isDefinite() {
+    return definite;
+  }
+
+  void markDefinite() {
+    definite = true;
+  }
+
+  public List<Symbol> getCapture() {
+    return capture;
+  }
+
+  void setCapture(List<Symbol> capture) {
+    this.capture = capture;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+      .add("name", name)
+      .add("scope", scope)
+      .add("index", index)
+      .toString();
+  }
+
+  public enum Scope {
+    GLOBAL,
+    LOCAL,
+    FREE,
+    FUNCTION;
+  }
+}
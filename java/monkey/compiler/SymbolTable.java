@@ -0,0 +1,111 @@
+package monkey.compiler;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.HashMap;
+
+/*
+ * Resolves names the same way Evaluator does at runtime. A function sees a snapshot of the
+ * scope it was created in, so every outer name is captured by value as a FREE symbol, and only
+ * bindings made textually before the function literal are visible. Blocks don't open new
+ * scopes, so a `let` inside an `if` may be skipped at runtime; such a binding resolves to a
+ * chain of candidates, tried in order until one of them is bound.
+ */
+public class SymbolTable {
+  private SymbolTable outer;
+  private Map<String, Symbol> store;
+  private Map<String, Symbol> free;
+  private List<Symbol> freeSymbols;
+  private List<String> names;
+  private Symbol function;
+
+  public SymbolTable(SymbolTable outer) {
+    this.outer = outer;
+    this.store = new HashMap<>();
+    this.free = new HashMap<>();
+    this.freeSymbols = new ArrayList<>();
+    this.names = new ArrayList<>();
+  }
+
+  public SymbolTable() {
+    this(null);
+  }
+
+  public static SymbolTable enclose(SymbolTable outer) {
+    return new SymbolTable(outer);
+  }
+
+  public SymbolTable getOuter() {
+    return outer;
+  }
+
+  public Symbol define(String name, boolean definite) {
+    Symbol s = store.get(name);
+    if (s == null) {
+      s = new Symbol(name, outer == null ? Symbol.Scope.GLOBAL : Symbol.Scope.LOCAL, names.size());
+      store.put(name, s);
+      names.add(name);
+    }
+    if (definite) {
+      s.markDefinite();
+    }
+    return s;
+  }
+
+  public Symbol defineFunctionName(String name) {
+    function = new Symbol(name, Symbol.Scope.FUNCTION, 0);
+    function.markDefinite();
+    return function;
+  }
+
+  public List<Symbol> resolve(String name) {
+    Symbol s = store.get(name);
+    if (s != null && s.isDefinite()) {
+      return Collections.singletonList(s);
+    }
+    List<Symbol> rest = resolveEnclosing(name);
+    if (s == null) {
+      return rest;
+    }
+    List<Symbol> chain = new ArrayList<>();
+    chain.add(s);
+    chain.addAll(rest);
+    return chain;
+  }
+
+  private List<Symbol> resolveEnclosing(String name) {
+    if (function != null && function.getName().equals(name)) {
+      return Collections.singletonList(function);
+    }
+    if (outer == null) {
+      return Collections.emptyList();
+    }
+    Symbol f = free.get(name);
+    if (f == null) {
+      List<Symbol> capture = outer.resolve(name);
+      if (capture.isEmpty()) {
+        return capture;
+      }
+      f = new Symbol(name, Symbol.Scope.FREE, freeSymbols.size());
+      f.setCapture(capture);
+      f.markDefinite();
+      free.put(name, f);
+      freeSymbols.add(f);
+    }
+    return Collections.singletonList(f);
+  }
+
+  public List<Symbol> getFreeSymbols() {
+    return freeSymbols;
+  }
+
+  public int size() {
+    return names.size();
+  }
+
+  public List<String> getNames() {
+    return names;
+  }
+}
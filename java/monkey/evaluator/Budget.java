@@ -0,0 +1,131 @@
+package monkey.evaluator;
+
+import java.util.function.Supplier;
+
+import monkey.ast.FunctionLiteral;
+import monkey.object.Obj;
+import monkey.object.Except;
+
+/*
+ * Caps on how much work one run of a program may do. Once a cap is hit the run stops with an
+ * Except, like any other error.
+ *
+ * Only calls can make a program run for long, so that's where the accounting happens, once per
+ * call and never per node. A call is charged with:
+ *   steps - the nodes of the function's body, or the VM instructions of its compiled form. Jumps
+ *           only go forward, so that's as many as the call can run itself.
+ *   depth - one level for as long as it runs. Tail calls reuse the level of their caller.
+ *   bytes - its frame, plus one closure per function literal in its body. The VM charges
+ *           closures as it makes them instead. Ints and the like are short lived and aren't
+ *           counted, so this is a rough bound on what a run keeps.
+ * Top-level statements run once and are free.
+ *
+ * A budget belongs to one run on one thread. The evaluator finds it through run(), the VM is
+ * handed one with setBudget().
+ */
+public class Budget {
+  public static final long FRAME_BYTES = 32;
+  public static final long SLOT_BYTES = 8;
+  public static final long CLOSURE_BYTES = 32;
+
+  private static final ThreadLocal<Budget> current = new ThreadLocal<>();
+  // Until some run has a budget, calls don't even look for one
+  private static volatile boolean used;
+
+  private final long maxSteps;
+  private final int maxDepth;
+  private final long maxBytes;
+
+  private long steps;
+  private int depth;
+  private long bytes;
+
+  // Zero means no cap.
+  public Budget(long maxSteps, int maxDepth, long maxBytes) {
+    this.maxSteps = maxSteps > 0 ? maxSteps : Long.MAX_VALUE;
+    this.maxDepth = maxDepth > 0 ? maxDepth : Integer.MAX_VALUE;
+    this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+  }
+
+  // Unused budget with the same caps.
+  public Budget fresh() {
+    return new Budget(maxSteps, maxDepth, maxBytes);
+  }
+
+  // Runs evaluation with this budget on the current thread. Running out of JVM stack before the
+  // depth cap is also reported as an Except.
+  public Obj run(Supplier<Obj> evaluation) {
+    used = true;
+    Budget enclosing = current.get();
+    current.set(this);
+    try {
+      return evaluation.get();
+    } catch (StackOverflowError e) {
+      return new Except(String.format("stack overflow at depth %d", depth));
+    } finally {
+      depth = 0;
+      current.set(enclosing);
+    }
+  }
+
+  // Budget of the run on this thread, or null if it has none.
+  static Budget current() {
+    return used ? current.get() : null;
+  }
+
+  // Enters a call, returns Except if it's too deep, null otherwise. Has to be paired with exit().
+  Except enter() {
+    if (++depth > maxDepth) {
+      return new Except(String.format("call depth limit exceeded: %d", maxDepth));
+    }
+    return null;
+  }
+
+  void exit() {
+    depth--;
+  }
+
+  // Charges a run of the body of fl, returns Except if it's over a cap, null otherwise.
+  Except charge(FunctionLiteral fl) {
+    return charge(fl.getSize(), FRAME_BYTES + SLOT_BYTES * fl.getFrameSize()
+        + CLOSURE_BYTES * fl.getFunctions());
+  }
+
+  // Charges a call for the VM, which keeps the depth itself.
+  public Except call(int depth, long steps, long bytes) {
+    if (depth > maxDepth) {
+      return new Except(String.format("call depth limit exceeded: %d", maxDepth));
+    }
+    return charge(steps, bytes);
+  }
+
+  // Charges a closure made by the VM.
+  public Except allocate(long bytes) {
+    return charge(0, bytes);
+  }
+
+  private Except charge(long steps, long bytes) {
+    this.steps += steps;
+    this.bytes += bytes;
+    if (this.steps > maxSteps) {
+      return new Except(String.format("step limit exceeded: %d", maxSteps));
+    }
+    if (this.bytes > maxBytes) {
+      return new Except(String.format("memory limit exceeded: %d bytes", maxBytes));
+    }
+    return null;
+  }
+
+  public long getSteps() {
+    return steps;
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("steps=%d bytes=%d", steps, bytes);
+  }
+}
@@ -0,0 +1,18 @@
+package monkey.evaluator;
+
+import monkey.object.Obj;
+import monkey.object.Environment;
+
+// Superclass of classes generated by JitCompiler. Has to be public, since generated classes live
+// in their own class loaders.
+public abstract class CompiledBody {
+  protected final Object[] constants;
+
+  protected CompiledBody(Object[] constants) {
+    this.constants = constants;
+  }
+
+  // Runs function body in a frame with arguments already set. Same as evaluating the body,
+  // except that the frame is never marked as returning.
+  public abstract Obj run(Environment env);
+}
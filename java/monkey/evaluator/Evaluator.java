@@ -13,6 +13,7 @@ import monkey.ast.IntegerLiteral;
 import monkey.ast.BoolLiteral;
 import monkey.ast.PrefixExpression;
 import monkey.ast.InfixExpression;
+import monkey.ast.Operator;
 import monkey.ast.BlockStatement;
 import monkey.ast.IfExpression;
 import monkey.ast.ReturnStatement;
@@ -25,46 +26,88 @@ import monkey.object.Environment;
 import monkey.object.Int;
 import monkey.object.Bool;
 import monkey.object.Nil;
-import monkey.object.ReturnValue;
 import monkey.object.Except;
+import monkey.object.ReturnValue;
 import monkey.object.Function;
+import monkey.resolver.Resolver;
+import monkey.resolver.Scope;
 
+/*
+ * Tree-walking evaluator. Nodes pass values up as results, and only values: the rest of how
+ * control flows is kept off the common path.
+ *   errors  - an Except is thrown, and caught where the program started. No node checks the
+ *             values of its children for errors.
+ *   returns - a return statement marks its frame as returning, and each block stops once its
+ *             statement leaves the mark. A return nested in an operand gives a ReturnValue
+ *             instead, which stops its blocks and is then an operand like any other value. Its
+ *             function unwraps it, if it gets that far. Returning such a value wraps it once
+ *             more, so that it gets out of the function. A function whose body ends in a tail
+ *             call unwraps what the call gives too, unless the call is returned.
+ */
 public class Evaluator {
   private static final Bool TRUE = new Bool(true);
   private static final Bool FALSE = new Bool(false);
   public static final Nil NIL = new Nil();
 
+  private static final Object MEGAMORPHIC = new Object();
+
+  // Specializations of InfixExpression, GENERIC is used once operands weren't both Ints
+  private static final int UNSPECIALIZED = 0;
+  private static final int GENERIC = -1;
+  private static final int INT_ADD = 1;
+  private static final int INT_SUB = 2;
+  private static final int INT_MUL = 3;
+  private static final int INT_DIV = 4;
+  private static final int INT_LT = 5;
+  private static final int INT_GT = 6;
+  private static final int INT_EQ = 7;
+  private static final int INT_NOT_EQ = 8;
+
   public static Obj eval(Node node, Environment env) {
     if (node instanceof Program) {
       Program p = (Program)node;
-      return evalProgram(p, env);
+      resolve(p, new Scope());
+      env.ensureCapacity(p.getFrameSize());
+      try {
+        return evalProgram(p, env);
+      } catch (Except e) {
+        return e;
+      }
     } else if (node instanceof ExpressionStatement) {
       ExpressionStatement es = (ExpressionStatement)node;
       return eval(es.getExpression(), env);
     } else if (node instanceof IntegerLiteral) {
       IntegerLiteral il = (IntegerLiteral)node;
-      return new Int(il.getValue());
+      return Int.valueOf(il.getValue());
     } else if (node instanceof BoolLiteral) {
       BoolLiteral bl = (BoolLiteral)node;
       return nativeBool(bl.getValue());
     } else if (node instanceof PrefixExpression) {
       PrefixExpression pe = (PrefixExpression)node;
       Obj right = eval(pe.getRight(), env);
-      if (right instanceof Except) {
-        return right;
-      }
-      return evalPrefixExpression(pe.getOperator(), right);
+      return check(evalPrefixExpression(pe.getOperator(), right), pe.getPosition());
     } else if (node instanceof InfixExpression) {
       InfixExpression ie = (InfixExpression)node;
-      Obj left = eval(ie.getLeft(), env);
-      if (left instanceof Except) {
-        return left;
+      if (isArithmetic(ie) && (isArithmetic(ie.getLeft()) || isArithmetic(ie.getRight()))) {
+        try {
+          return Int.valueOf(evalLong(ie, env));
+        } catch (NotLong nl) {
+          return nl.getValue();
+        }
       }
-      Obj right = eval(ie.getRight(), env);
-      if (right instanceof Except) {
-        return right;
+      Obj left;
+      Obj right;
+      Parallel.Branch branch;
+      if (ie.getCost() >= Resolver.CALL_COST && (branch = Parallel.current()) != null
+          && branch.splits(ie.getCost())) {
+        Obj[] values = branch.evalAll(Arrays.asList(ie.getLeft(), ie.getRight()), env);
+        left = values[0];
+        right = values[1];
+      } else {
+        left = eval(ie.getLeft(), env);
+        right = eval(ie.getRight(), env);
       }
-      return evalInfixExpression(ie.getOperator(), left, right);
+      return evalSpecializedInfixExpression(ie, left, right);
     } else if (node instanceof BlockStatement) {
       BlockStatement bs = (BlockStatement)node;
       return evalBlockStatement(bs, env);
@@ -74,96 +117,198 @@ public class Evaluator {
     } else if (node instanceof ReturnStatement) {
       ReturnStatement rs = (ReturnStatement)node;
       Obj value = eval(rs.getValue(), env);
-      if (value instanceof Except) {
-        return value;
+      if (rs.isNested()) {
+        return new ReturnValue(value);
       }
-      return new ReturnValue(value);
+      env.setReturning(true);
+      return returned(value);
     } else if (node instanceof LetStatement) {
       LetStatement ls = (LetStatement)node;
       Obj value = eval(ls.getValue(), env);
-      if (value instanceof Except) {
-        return value;
-      }
-      if (value instanceof Function) { // Recursion
-        Function fn = (Function)value;
-        fn.getEnv().set(ls.getName().toString(), value);
-      }
-      env.set(ls.getName().toString(), value);
+      env.set(ls.getSlot(), value); // Functions share env, so this also makes recursion work
     } else if (node instanceof Identifier) {
       return evalIdentifier((Identifier)node, env);
     } else if (node instanceof FunctionLiteral) {
       FunctionLiteral fl = (FunctionLiteral)node;
-      return new Function(fl.getParameters(), fl.getBody(), new Environment(env));
+      return new Function(fl, env);
     } else if (node instanceof CallExpression) {
       CallExpression ce = (CallExpression)node;
       Obj function = eval(ce.getFunction(), env);
-      if (function instanceof Except) {
-        return function;
+      if (function != ce.getTarget()) {
+        specializeCall(ce, function);
       }
-      List<Obj> args = evalExpressions(ce.getArguments(), env);
-      if (args.size() == 1 && args.get(0) instanceof Except) {
-        return args.get(0);
+
+      Function fn;
+      Environment extendedEnv;
+      Parallel.Branch branch = null;
+      if (ce.getCost() >= Resolver.CALL_COST && (branch = Parallel.current()) != null
+          && !branch.splits(ce.getCost())) {
+        branch = null;
+      }
+      if (function == ce.getTarget() && branch == null) {
+        fn = (Function)function;
+        extendedEnv = new Environment(fn.getLiteral().getFrameSize(), fn.getEnv());
+        evalArguments(ce.getArguments(), fn.getParameters().size(), env, extendedEnv);
+      } else {
+        List<Obj> args = branch != null ? Arrays.asList(branch.evalAll(ce.getArguments(), env))
+            : evalExpressions(ce.getArguments(), env);
+        if (!(function instanceof Function)) {
+          throw new Except(String.format("not a function: %s", function.typeName()),
+              ce.getPosition());
+        }
+        fn = (Function)function;
+        extendedEnv = extendFunctionEnv(fn, args);
+      }
+
+      if (ce.isTail()) {
+        return new TailCall(fn, extendedEnv); // Run by the applyFunction that is already on stack
       }
-      return applyFunction(function, args);
+      return applyFunction(fn, extendedEnv);
     }
     return NIL;
   }
 
-  private static Obj applyFunction(Obj func, List<Obj> args) {
-    if (!(func instanceof Function)) {
-      return new Except(String.format("not a function: %s", func.typeName()));
+  // Call site remembers the last function it called, which lets arguments go straight into the
+  // new frame. Closures of the same literal replace each other, any other function turns the
+  // cache off for good.
+  private static void specializeCall(CallExpression ce, Obj function) {
+    Object target = ce.getTarget();
+    if (target == MEGAMORPHIC) {
+      return;
+    }
+    if (function instanceof Function
+        && (target == null || ((Function)target).getLiteral() == ((Function)function).getLiteral())
+        && ce.getArguments().size() >= ((Function)function).getParameters().size()) {
+      ce.setTarget(function);
+    } else {
+      ce.setTarget(MEGAMORPHIC);
     }
-    Function fn = (Function)func;
-    Environment extendedEnv = extendFunctionEnv(fn, args);
-    Obj result = eval(fn.getBody(), extendedEnv);
-    return unwrapReturnValue(result);
   }
 
-  private static Environment extendFunctionEnv(Function fn, List<Obj> args) {
-    Environment env = Environment.enclose(fn.getEnv());
+  private static void evalArguments(List<Expression> arguments, int parameters, Environment env,
+      Environment extendedEnv) {
+    for (int i = 0; i < arguments.size(); i++) {
+      Obj o = eval(arguments.get(i), env);
+      if (i < parameters) {
+        extendedEnv.set(i, o);
+      }
+    }
+  }
 
-    List<Identifier> params = fn.getParameters();
-    for (int i = 0; i < params.size(); i++) {
-      env.set(params.get(i).getValue(), args.get(i));
+  // Resolves program in scope unless it's resolved already. Threads running the same program
+  // resolve it only once.
+  static void resolve(Program program, Scope scope) {
+    if (!program.isResolved()) {
+      synchronized (program) {
+        if (!program.isResolved()) {
+          Resolver.resolve(program, scope);
+        }
+      }
     }
+  }
 
-    return env;
+  static Obj applyFunction(Function fn, Environment env) {
+    Memo memo = Memo.current();
+    Memo.Key key = memo != null ? memo.key(fn, env) : null;
+    if (key == null) {
+      return runFunction(fn, env);
+    }
+    Obj result = memo.get(key);
+    if (result == null) {
+      result = runFunction(fn, env);
+      memo.put(key, result);
+    }
+    return result;
   }
 
-  private static Obj unwrapReturnValue(Obj value) {
-    if (value instanceof ReturnValue) {
-      ReturnValue rv = (ReturnValue)value;
-      return rv.getValue();
+  private static Obj runFunction(Function fn, Environment env) {
+    Budget budget = Budget.current();
+    Profiler profiler = Profiler.current();
+    Parallel.Branch branch = Parallel.current();
+    int unwraps = 0; // Functions that ended in a tail call, each of which unwraps a ReturnValue
+    if (budget != null) {
+      Except except = budget.enter();
+      if (except != null) {
+        throw except;
+      }
     }
-    return value;
+    while (true) {
+      // Only calls can make a program run for long, so this is where it stops when cancelled
+      // or out of budget
+      if (Thread.currentThread().isInterrupted()) {
+        throw new Except("interrupted");
+      }
+      if (branch != null && branch.isAbandoned()) {
+        throw new Except("abandoned"); // An operand to the left failed, this one is unused
+      }
+      if (budget != null) {
+        Except except = budget.charge(fn.getLiteral());
+        if (except != null) {
+          throw except;
+        }
+      }
+      if (profiler != null) {
+        profiler.enter(fn.getLiteral());
+      }
+      // Compiled bodies don't split their operands
+      CompiledBody body = branch != null && fn.getLiteral().isSplittable() ? null
+          : Jit.lookup(fn.getLiteral());
+      Obj result = body != null ? body.run(env) : eval(fn.getBody(), env);
+      if (profiler != null) {
+        profiler.exit(); // A tail call is entered next, in place of this one
+      }
+      if (!(result instanceof TailCall)) {
+        if (budget != null) {
+          budget.exit();
+        }
+        for (int i = 0; i <= unwraps && result instanceof ReturnValue; i++) {
+          result = ((ReturnValue)result).getValue();
+        }
+        return result;
+      }
+      TailCall tc = (TailCall)result;
+      if (!tc.isReturned()) {
+        unwraps++;
+      }
+      fn = tc.getFunction();
+      env = tc.getEnv();
+    }
+  }
+
+  static Environment extendFunctionEnv(Function fn, List<Obj> args) {
+    Environment env = new Environment(fn.getLiteral().getFrameSize(), fn.getEnv());
+
+    List<Identifier> params = fn.getParameters();
+    for (int i = 0; i < params.size(); i++) {
+      env.set(i, args.get(i));
+    }
+
+    return env;
   }
 
   private static List<Obj> evalExpressions(List<Expression> expressions, Environment env) {
     List<Obj> result = new ArrayList<>();
     for (Expression e : expressions) {
-      Obj o = eval(e, env);
-      if (o instanceof Except) {
-        return Arrays.asList(o);
-      }
-      result.add(o);
+      result.add(eval(e, env));
     }
     return result;
   }
 
   private static Obj evalIdentifier(Identifier id, Environment env) {
-    Obj value = env.get(id.getValue());
-    if (value == null) {
-      return new Except("identifier not found: " + id.getValue());
+    int[] addresses = id.getAddresses();
+    for (int i = 0; i < addresses.length; i += 2) {
+      Obj value = env.get(addresses[i], addresses[i + 1]);
+      if (value != null) {
+        return value;
+      }
     }
-    return value;
+    throw new Except("identifier not found: " + id.getValue(), id.getPosition());
   }
 
   private static Obj evalIfExpression(IfExpression ie, Environment env) {
     Obj condition = eval(ie.getCondition(), env);
 
-    if (condition instanceof Except) {
-      return condition;
-    } else if (isTruthy(condition)) {
+    if (isTruthy(condition)) {
       return eval(ie.getConsequence(), env);
     } else if (ie.getAlternative() != null) {
       return eval(ie.getAlternative(), env);
@@ -172,16 +317,153 @@ public class Evaluator {
     }
   }
 
-  private static boolean isTruthy(Obj obj) {
+  // Value of a return that ends its function. Its function unwraps one ReturnValue, so a
+  // returned one is wrapped again to get out of it, and a returned tail call isn't unwrapped.
+  static Obj returned(Obj value) {
+    if (value instanceof ReturnValue) {
+      return new ReturnValue(value);
+    }
+    if (value instanceof TailCall) {
+      ((TailCall)value).setReturned();
+    }
+    return value;
+  }
+
+  public static boolean isTruthy(Obj obj) {
     return !(obj == NIL || obj == FALSE);
   }
 
-  private static Obj evalInfixExpression(String operator, Obj left, Obj right) {
+  private static boolean isArithmetic(Expression e) {
+    if (!(e instanceof InfixExpression)) {
+      return false;
+    }
+    switch (((InfixExpression)e).getOperator()) {
+      case PLUS:
+      case MINUS:
+      case ASTERISK:
+      case SLASH:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  // Evaluates nested arithmetic without boxing intermediate results. Operands that aren't Ints
+  // leave the fast path with the same result the boxed evaluation would give.
+  private static long evalLong(Expression e, Environment env) {
+    if (e instanceof IntegerLiteral) {
+      return ((IntegerLiteral)e).getValue();
+    } else if (!isArithmetic(e)) {
+      Obj value = eval(e, env);
+      if (value instanceof Int) {
+        return ((Int)value).getValue();
+      }
+      throw new NotLong(value);
+    }
+
+    InfixExpression ie = (InfixExpression)e;
+    long left;
+    try {
+      left = evalLong(ie.getLeft(), env);
+    } catch (NotLong nl) {
+      Obj right = eval(ie.getRight(), env);
+      throw new NotLong(check(evalInfixExpression(ie.getOperator(), nl.getValue(), right),
+            ie.getPosition()));
+    }
+    long right;
+    try {
+      right = evalLong(ie.getRight(), env);
+    } catch (NotLong nl) {
+      throw new NotLong(check(evalInfixExpression(ie.getOperator(), Int.valueOf(left),
+            nl.getValue()), ie.getPosition()));
+    }
+
+    switch (ie.getOperator()) {
+      case PLUS:
+        return left + right;
+      case MINUS:
+        return left - right;
+      case ASTERISK:
+        return left * right;
+      default:
+        return left / right;
+    }
+  }
+
+  private static Obj evalSpecializedInfixExpression(InfixExpression ie, Obj left, Obj right) {
+    int specialization = ie.getSpecialization();
+    if (specialization > 0 && left instanceof Int && right instanceof Int) {
+      long l = ((Int)left).getValue();
+      long r = ((Int)right).getValue();
+      switch (specialization) {
+        case INT_ADD:
+          return Int.valueOf(l + r);
+        case INT_SUB:
+          return Int.valueOf(l - r);
+        case INT_MUL:
+          return Int.valueOf(l * r);
+        case INT_DIV:
+          return Int.valueOf(l / r);
+        case INT_LT:
+          return nativeBool(l < r);
+        case INT_GT:
+          return nativeBool(l > r);
+        case INT_EQ:
+          return nativeBool(l == r);
+        default:
+          return nativeBool(l != r);
+      }
+    }
+
+    if (specialization == UNSPECIALIZED) {
+      ie.setSpecialization(specializeInfix(ie.getOperator(), left, right));
+    } else if (specialization != GENERIC) {
+      ie.setSpecialization(GENERIC);
+    }
+    return check(evalInfixExpression(ie.getOperator(), left, right), ie.getPosition());
+  }
+
+  // Operations on values return their errors, which the evaluator throws pointing at the node at
+  // position that failed. Returns result if it isn't an error.
+  static Obj check(Obj result, int position) {
+    if (result instanceof Except) {
+      throw new Except(((Except)result).getMessage(), position);
+    }
+    return result;
+  }
+
+  private static int specializeInfix(Operator operator, Obj left, Obj right) {
+    if (!(left instanceof Int && right instanceof Int)) {
+      return GENERIC;
+    }
+    switch (operator) {
+      case PLUS:
+        return INT_ADD;
+      case MINUS:
+        return INT_SUB;
+      case ASTERISK:
+        return INT_MUL;
+      case SLASH:
+        return INT_DIV;
+      case LT:
+        return INT_LT;
+      case GT:
+        return INT_GT;
+      case EQ:
+        return INT_EQ;
+      case NOT_EQ:
+        return INT_NOT_EQ;
+      default:
+        return GENERIC;
+    }
+  }
+
+  public static Obj evalInfixExpression(Operator operator, Obj left, Obj right) {
     if (left instanceof Int && right instanceof Int) {
       return evalIntegerInfixExpression(operator, (Int)left, (Int)right);
-    } else if (operator == "==") {
+    } else if (operator == Operator.EQ) {
       return nativeBool(left == right);
-    } else if (operator == "!=") {
+    } else if (operator == Operator.NOT_EQ) {
       return nativeBool(left != right);
     } else if (left.getClass() != right.getClass()) {
       return new Except(String.format("type mistmatch: %s %s %s", left.typeName(), operator,
@@ -192,34 +474,34 @@ public class Evaluator {
     }
   }
 
-  private static Obj evalIntegerInfixExpression(String operator, Int left, Int right) {
+  private static Obj evalIntegerInfixExpression(Operator operator, Int left, Int right) {
     switch (operator) {
-      case "+":
-        return new Int(left.getValue() + right.getValue());
-      case "-":
-        return new Int(left.getValue() - right.getValue());
-      case "*":
-        return new Int(left.getValue() * right.getValue());
-      case "/":
-        return new Int(left.getValue() / right.getValue());
-      case "<":
+      case PLUS:
+        return Int.valueOf(left.getValue() + right.getValue());
+      case MINUS:
+        return Int.valueOf(left.getValue() - right.getValue());
+      case ASTERISK:
+        return Int.valueOf(left.getValue() * right.getValue());
+      case SLASH:
+        return Int.valueOf(left.getValue() / right.getValue());
+      case LT:
         return nativeBool(left.getValue() < right.getValue());
-      case ">":
+      case GT:
         return nativeBool(left.getValue() > right.getValue());
-      case "==":
+      case EQ:
         return nativeBool(left.getValue() == right.getValue());
-      case "!=":
+      case NOT_EQ:
         return nativeBool(left.getValue() != right.getValue());
       default:
         return new Except(String.format("unknown operator: INT %s INT", operator));
     }
   }
 
-  private static Obj evalPrefixExpression(String operator, Obj right) {
+  public static Obj evalPrefixExpression(Operator operator, Obj right) {
     switch (operator) {
-      case "!":
+      case BANG:
         return evalBangOperatorExpression(right);
-      case "-":
+      case MINUS:
         return evalMinusPrefixOperatorExpression(right);
       default:
         return new Except(String.format("unknown operator: %s%s", operator, right.typeName()));
@@ -232,7 +514,7 @@ public class Evaluator {
     }
 
     Int i = (Int)right;
-    return new Int(-i.getValue());
+    return Int.valueOf(-i.getValue());
   }
 
   private static Obj evalBangOperatorExpression(Obj right) {
@@ -249,14 +531,19 @@ public class Evaluator {
 
   private static Obj evalProgram(Program p, Environment env) {
     Obj result = NIL;
-    for (Statement st : p.getStatements()) {
-      result = eval(st, env);
-      if (result instanceof ReturnValue) {
-        ReturnValue rv = (ReturnValue)result;
-        return rv.getValue();
-      } else if(result instanceof Except) {
-        return result;
+    try {
+      for (Statement st : p.getStatements()) {
+        result = eval(st, env);
+        if (result instanceof ReturnValue) {
+          result = ((ReturnValue)result).getValue();
+          break;
+        }
+        if (env.isReturning()) {
+          break;
+        }
       }
+    } finally {
+      env.setReturning(false); // The REPL runs the next line in the same frame
     }
     return result;
   }
@@ -265,7 +552,7 @@ public class Evaluator {
     Obj result = NIL;
     for (Statement st : bs.getStatements()) {
       result = eval(st, env);
-      if (result instanceof ReturnValue || result instanceof Except) {
+      if (env.isReturning() || result instanceof ReturnValue) {
         return result;
       }
     }
@@ -0,0 +1,98 @@
+package monkey.evaluator;
+
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
+
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Environment;
+import monkey.object.Except;
+import monkey.resolver.Scope;
+
+/*
+ * Bindings of a prelude program, shared by programs that run on top of it, possibly on many
+ * threads at once.
+ *
+ * The concurrency model is the following. The prelude runs once, and its frame is never written
+ * again after that, so any thread can read it. Each run of a program gets a frame of its own,
+ * whose outer frame is the prelude's, and so does each function call, so frames that are written
+ * are only ever seen by one thread. Closures made by a run capture frames of that run.
+ *
+ * The tree of a program is shared by all its runs. The resolver writes into it only once, under
+ * the program's lock, before it runs anywhere. After that the evaluator only writes its inline
+ * caches: infix specializations, call site targets, call counts and compiled bodies. Each of them
+ * is a single field that a racing thread may see stale, which costs at most a slow path, and the
+ * objects they point to have final fields, so they're fully built when another thread sees them.
+ *
+ * A program is resolved against the globals and the input names it first runs with, so it
+ * should only be run with those.
+ */
+public class Globals {
+  private final Scope scope;
+  private final Environment env;
+  // Input names each program was resolved with, in slot order
+  private final ConcurrentMap<Program, List<String>> inputNames =
+      new MapMaker().weakKeys().makeMap();
+
+  private Globals(Scope scope, Environment env) {
+    this.scope = scope;
+    this.env = env;
+  }
+
+  // Runs prelude and keeps its bindings. Throws IllegalArgumentException if prelude fails.
+  public static Globals of(Program prelude) {
+    Scope scope = new Scope();
+    Environment env = new Environment();
+    Evaluator.resolve(prelude, scope);
+    Obj result = Evaluator.eval(prelude, env);
+    if (result instanceof Except) {
+      throw new IllegalArgumentException(((Except)result).getMessage());
+    }
+    return new Globals(scope, env);
+  }
+
+  // Runs program in a frame of its own, so it can be called from many threads at once.
+  public Obj eval(Program program) {
+    return eval(program, Collections.<String, Obj>emptyMap());
+  }
+
+  // Same as eval(program), with inputs bound as if by lets at the start of program. Throws
+  // IllegalArgumentException if program was run with other input names before.
+  public Obj eval(Program program, Map<String, Obj> inputs) {
+    List<String> names = new ArrayList<>(inputs.keySet());
+    Collections.sort(names);
+    List<String> resolved = inputNames.get(program);
+    if (resolved == null) {
+      synchronized (program) {
+        resolved = inputNames.get(program);
+        if (resolved == null) {
+          if (program.isResolved()) {
+            throw new IllegalArgumentException("program was resolved without these globals");
+          }
+          Scope programScope = new Scope(scope);
+          for (String name : names) {
+            programScope.declare(name);
+          }
+          Evaluator.resolve(program, programScope);
+          resolved = ImmutableList.copyOf(names);
+          inputNames.put(program, resolved);
+        }
+      }
+    }
+    if (!resolved.equals(names)) {
+      throw new IllegalArgumentException("program was run with inputs " + resolved);
+    }
+
+    Environment frame = new Environment(program.getFrameSize(), env);
+    for (int i = 0; i < names.size(); i++) {
+      frame.set(i, inputs.get(names.get(i)));
+    }
+    return Evaluator.eval(program, frame);
+  }
+}
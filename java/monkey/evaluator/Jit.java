@@ -0,0 +1,36 @@
+package monkey.evaluator;
+
+import org.objectweb.asm.ClassTooLargeException;
+import org.objectweb.asm.MethodTooLargeException;
+
+import monkey.ast.FunctionLiteral;
+
+// Decides when function bodies are compiled to JVM bytecode. Functions are counted per literal,
+// so all closures of the same literal share one compiled body.
+class Jit {
+  // Number of calls before body is compiled, negative value turns compilation off.
+  // Can be set with -Dmonkey.jit.threshold
+  static int threshold = Integer.getInteger("monkey.jit.threshold", 1000);
+
+  private static final Object UNSUPPORTED = new Object();
+
+  // Returns compiled body, or null if function should be interpreted.
+  static CompiledBody lookup(FunctionLiteral fl) {
+    Object compiled = fl.getCompiled();
+    if (compiled != null) {
+      return compiled == UNSUPPORTED ? null : (CompiledBody)compiled;
+    }
+    if (threshold < 0 || fl.countCall() < threshold) {
+      return null;
+    }
+
+    try {
+      compiled = new JitCompiler().compile(fl);
+    } catch (JitCompiler.UnsupportedException | ReflectiveOperationException | LinkageError
+        | MethodTooLargeException | ClassTooLargeException e) {
+      compiled = UNSUPPORTED;
+    }
+    fl.setCompiled(compiled);
+    return compiled == UNSUPPORTED ? null : (CompiledBody)compiled;
+  }
+}
@@ -0,0 +1,296 @@
+package monkey.evaluator;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import monkey.ast.Statement;
+import monkey.ast.Expression;
+import monkey.ast.ExpressionStatement;
+import monkey.ast.IntegerLiteral;
+import monkey.ast.BoolLiteral;
+import monkey.ast.PrefixExpression;
+import monkey.ast.InfixExpression;
+import monkey.ast.Operator;
+import monkey.ast.BlockStatement;
+import monkey.ast.IfExpression;
+import monkey.ast.ReturnStatement;
+import monkey.ast.LetStatement;
+import monkey.ast.Identifier;
+import monkey.ast.FunctionLiteral;
+import monkey.ast.CallExpression;
+import monkey.object.Obj;
+import monkey.object.Environment;
+import monkey.object.Int;
+import monkey.object.Nil;
+import monkey.object.Except;
+import monkey.object.Function;
+
+// Translates body of a FunctionLiteral into a subclass of CompiledBody. Values stay boxed and
+// frames stay in Environment, so compiled code can be mixed freely with interpreted one. What's
+// gone is the dispatch on node types and the recursion through eval, which lets HotSpot see
+// the whole body at once.
+//
+// Errors are thrown as Excepts, by JitRuntime or the functions it calls, so the code in between
+// has no checks for them, same as in the interpreter. A return statement is compiled only where
+// it ends the whole function, other returns (e.g. inside an operand) make the function
+// unsupported.
+class JitCompiler {
+  private static final AtomicInteger ids = new AtomicInteger();
+
+  private static final String OBJ = Type.getInternalName(Obj.class);
+  private static final String ENVIRONMENT = Type.getInternalName(Environment.class);
+  private static final String EVALUATOR = Type.getInternalName(Evaluator.class);
+  private static final String RUNTIME = Type.getInternalName(JitRuntime.class);
+  private static final String COMPILED_BODY = Type.getInternalName(CompiledBody.class);
+  private static final String OBJ_DESC = Type.getDescriptor(Obj.class);
+  private static final String NIL_DESC = Type.getDescriptor(Nil.class);
+  private static final String OPERATOR = Type.getInternalName(Operator.class);
+  private static final String OPERATOR_DESC = Type.getDescriptor(Operator.class);
+  // Runtime operations also take the position of their node, for errors to point at
+  private static final String BINARY_DESC = "(" + OBJ_DESC + OBJ_DESC + "I)" + OBJ_DESC;
+  private static final String CALL_DESC = "(" + OBJ_DESC + "[" + OBJ_DESC + "I)" + OBJ_DESC;
+
+  private static final int THIS = 0;
+  private static final int ENV = 1;
+
+  private List<Object> constants = new ArrayList<>();
+  private MethodVisitor mv;
+  private int locals = ENV + 1;
+
+  static class UnsupportedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedException(String message) {
+      super(message);
+    }
+  }
+
+  CompiledBody compile(FunctionLiteral fl) throws ReflectiveOperationException {
+    String name = COMPILED_BODY + "$" + ids.incrementAndGet();
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+      @Override
+      protected String getCommonSuperClass(String type1, String type2) {
+        return "java/lang/Object"; // Only Objs are merged, verifier treats interfaces as Object
+      }
+    };
+    cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name, null, COMPILED_BODY, null);
+
+    mv = cw.visitMethod(ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, THIS);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitMethodInsn(INVOKESPECIAL, COMPILED_BODY, "<init>", "([Ljava/lang/Object;)V", false);
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    mv = cw.visitMethod(ACC_PUBLIC, "run", "(" + Type.getDescriptor(Environment.class) + ")"
+        + OBJ_DESC, null, null);
+    mv.visitCode();
+    compileBlockStatement(fl.getBody(), true);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+    cw.visitEnd();
+
+    Class<?> c = new Loader(JitCompiler.class.getClassLoader())
+      .define(name.replace('/', '.'), cw.toByteArray());
+    return (CompiledBody)c.getConstructor(Object[].class).newInstance((Object)constants.toArray());
+  }
+
+  // Leaves value of the block on the stack. `returns` is true when a return statement in the
+  // block would return from the whole function.
+  private void compileBlockStatement(BlockStatement bs, boolean returns) {
+    List<Statement> statements = bs.getStatements();
+    if (statements.isEmpty()) {
+      mv.visitFieldInsn(GETSTATIC, EVALUATOR, "NIL", NIL_DESC);
+      return;
+    }
+    for (int i = 0; i < statements.size(); i++) {
+      if (i > 0) {
+        mv.visitInsn(POP);
+      }
+      compileStatement(statements.get(i), returns);
+    }
+  }
+
+  private void compileStatement(Statement st, boolean returns) {
+    if (st instanceof ExpressionStatement) {
+      compileExpression(((ExpressionStatement)st).getExpression(), returns);
+    } else if (st instanceof LetStatement) {
+      LetStatement ls = (LetStatement)st;
+      compileExpression(ls.getValue(), false);
+      int value = locals++;
+      mv.visitVarInsn(ASTORE, value);
+      mv.visitVarInsn(ALOAD, ENV);
+      pushInt(ls.getSlot());
+      mv.visitVarInsn(ALOAD, value);
+      mv.visitMethodInsn(INVOKEVIRTUAL, ENVIRONMENT, "set", "(I" + OBJ_DESC + ")V", false);
+      mv.visitFieldInsn(GETSTATIC, EVALUATOR, "NIL", NIL_DESC);
+    } else if (st instanceof ReturnStatement) {
+      if (!returns) {
+        throw new UnsupportedException("return doesn't end the function");
+      }
+      compileExpression(((ReturnStatement)st).getValue(), false);
+      mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "returned", "(" + OBJ_DESC + ")" + OBJ_DESC,
+          false);
+      mv.visitInsn(ARETURN);
+    } else {
+      throw new UnsupportedException("statement " + st.getClass().getSimpleName());
+    }
+  }
+
+  private void compileExpression(Expression e, boolean returns) {
+    if (e instanceof IntegerLiteral) {
+      pushConstant(Int.valueOf(((IntegerLiteral)e).getValue()), OBJ);
+    } else if (e instanceof BoolLiteral) {
+      pushInt(((BoolLiteral)e).getValue() ? 1 : 0);
+      mv.visitMethodInsn(INVOKESTATIC, EVALUATOR, "nativeBool", "(Z)" + OBJ_DESC, false);
+    } else if (e instanceof Identifier) {
+      compileIdentifier((Identifier)e);
+    } else if (e instanceof PrefixExpression) {
+      PrefixExpression pe = (PrefixExpression)e;
+      mv.visitFieldInsn(GETSTATIC, OPERATOR, pe.getOperator().name(), OPERATOR_DESC);
+      compileExpression(pe.getRight(), false);
+      pushInt(pe.getPosition());
+      mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "prefix",
+          "(" + OPERATOR_DESC + OBJ_DESC + "I)" + OBJ_DESC, false);
+    } else if (e instanceof InfixExpression) {
+      InfixExpression ie = (InfixExpression)e;
+      String method = infixMethod(ie.getOperator());
+      compileExpression(ie.getLeft(), false);
+      compileExpression(ie.getRight(), false);
+      pushInt(ie.getPosition());
+      mv.visitMethodInsn(INVOKESTATIC, RUNTIME, method, BINARY_DESC, false);
+    } else if (e instanceof IfExpression) {
+      compileIfExpression((IfExpression)e, returns);
+    } else if (e instanceof FunctionLiteral) {
+      String function = Type.getInternalName(Function.class);
+      mv.visitTypeInsn(NEW, function);
+      mv.visitInsn(DUP);
+      pushConstant(e, Type.getInternalName(FunctionLiteral.class));
+      mv.visitVarInsn(ALOAD, ENV);
+      mv.visitMethodInsn(INVOKESPECIAL, function, "<init>", "("
+          + Type.getDescriptor(FunctionLiteral.class) + Type.getDescriptor(Environment.class)
+          + ")V", false);
+    } else if (e instanceof CallExpression) {
+      CallExpression ce = (CallExpression)e;
+      compileExpression(ce.getFunction(), false);
+      List<Expression> arguments = ce.getArguments();
+      pushInt(arguments.size());
+      mv.visitTypeInsn(ANEWARRAY, OBJ);
+      for (int i = 0; i < arguments.size(); i++) {
+        mv.visitInsn(DUP);
+        pushInt(i);
+        compileExpression(arguments.get(i), false);
+          mv.visitInsn(AASTORE);
+      }
+      pushInt(ce.getPosition());
+      mv.visitMethodInsn(INVOKESTATIC, RUNTIME, ce.isTail() ? "tailCall" : "call", CALL_DESC,
+          false);
+    } else {
+      throw new UnsupportedException("expression " + e.getClass().getSimpleName());
+    }
+  }
+
+  private void compileIdentifier(Identifier id) {
+    Label found = new Label();
+    int[] addresses = id.getAddresses();
+    for (int i = 0; i < addresses.length; i += 2) {
+      mv.visitVarInsn(ALOAD, ENV);
+      pushInt(addresses[i]);
+      pushInt(addresses[i + 1]);
+      mv.visitMethodInsn(INVOKEVIRTUAL, ENVIRONMENT, "get", "(II)" + OBJ_DESC, false);
+      mv.visitInsn(DUP);
+      mv.visitJumpInsn(IFNONNULL, found);
+      mv.visitInsn(POP);
+    }
+    pushConstant(id, "java/lang/Object");
+    mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "notFound", "(Ljava/lang/Object;)"
+        + Type.getDescriptor(Except.class), false);
+    mv.visitInsn(ATHROW);
+    mv.visitLabel(found);
+  }
+
+  private void compileIfExpression(IfExpression ie, boolean returns) {
+    Label alternative = new Label();
+    Label end = new Label();
+    compileExpression(ie.getCondition(), false);
+    mv.visitMethodInsn(INVOKESTATIC, EVALUATOR, "isTruthy", "(" + OBJ_DESC + ")Z", false);
+    mv.visitJumpInsn(IFEQ, alternative);
+    compileBlockStatement(ie.getConsequence(), returns);
+    mv.visitJumpInsn(GOTO, end);
+    mv.visitLabel(alternative);
+    if (ie.getAlternative() != null) {
+      compileBlockStatement(ie.getAlternative(), returns);
+    } else {
+      mv.visitFieldInsn(GETSTATIC, EVALUATOR, "NIL", NIL_DESC);
+    }
+    mv.visitLabel(end);
+  }
+
+  private static String infixMethod(Operator operator) {
+    switch (operator) {
+      case PLUS:
+        return "add";
+      case MINUS:
+        return "sub";
+      case ASTERISK:
+        return "mul";
+      case SLASH:
+        return "div";
+      case LT:
+        return "lt";
+      case GT:
+        return "gt";
+      case EQ:
+        return "eq";
+      case NOT_EQ:
+        return "notEq";
+      default:
+        throw new UnsupportedException("operator " + operator);
+    }
+  }
+
+  private void pushConstant(Object value, String type) {
+    mv.visitVarInsn(ALOAD, THIS);
+    mv.visitFieldInsn(GETFIELD, COMPILED_BODY, "constants", "[Ljava/lang/Object;");
+    pushInt(constants.size());
+    mv.visitInsn(AALOAD);
+    if (!type.equals("java/lang/Object")) {
+      mv.visitTypeInsn(CHECKCAST, type);
+    }
+    constants.add(value);
+  }
+
+  private void pushInt(int value) {
+    if (value >= -1 && value <= 5) {
+      mv.visitInsn(ICONST_0 + value);
+    } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+      mv.visitIntInsn(BIPUSH, value);
+    } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+      mv.visitIntInsn(SIPUSH, value);
+    } else {
+      mv.visitLdcInsn(value);
+    }
+  }
+
+  // Every compiled function gets its own loader, so it can be unloaded together with the AST.
+  private static class Loader extends ClassLoader {
+    Loader(ClassLoader parent) {
+      super(parent);
+    }
+
+    Class<?> define(String name, byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package monkey.evaluator;
+
+import java.util.Arrays;
+
+import monkey.ast.Identifier;
+import monkey.ast.Operator;
+import monkey.object.Obj;
+import monkey.object.Int;
+import monkey.object.Except;
+import monkey.object.Function;
+
+// Operations called from generated code. Like the evaluator, they throw their errors.
+public final class JitRuntime {
+  private JitRuntime() {}
+
+  public static Obj add(Obj left, Obj right, int position) {
+    if (left instanceof Int && right instanceof Int) {
+      return Int.valueOf(((Int)left).getValue() + ((Int)right).getValue());
+    }
+    return Evaluator.check(Evaluator.evalInfixExpression(Operator.PLUS, left, right), position);
+  }
+
+  public static Obj sub(Obj left, Obj right, int position) {
+    if (left instanceof Int && right instanceof Int) {
+      return Int.valueOf(((Int)left).getValue() - ((Int)right).getValue());
+    }
+    return Evaluator.check(Evaluator.evalInfixExpression(Operator.MINUS, left, right), position);
+  }
+
+  public static Obj mul(Obj left, Obj right, int position) {
+    if (left instanceof Int && right instanceof Int) {
+      return Int.valueOf(((Int)left).getValue() * ((Int)right).getValue());
+    }
+    return Evaluator.check(Evaluator.evalInfixExpression(Operator.ASTERISK, left, right), position);
+  }
+
+  public static Obj div(Obj left, Obj right, int position) {
+    if (left instanceof Int && right instanceof Int) {
+      return Int.valueOf(((Int)left).getValue() / ((Int)right).getValue());
+    }
+    return Evaluator.check(Evaluator.evalInfixExpression(Operator.SLASH, left, right), position);
+  }
+
+  public static Obj lt(Obj left, Obj right, int position) {
+    if (left instanceof Int && right instanceof Int) {
+      return Evaluator.nativeBool(((Int)left).getValue() < ((Int)right).getValue());
+    }
+    return Evaluator.check(Evaluator.evalInfixExpression(Operator.LT, left, right), position);
+  }
+
+  public static Obj gt(Obj left, Obj right, int position) {
+    if (left instanceof Int && right instanceof Int) {
+      return Evaluator.nativeBool(((Int)left).getValue() > ((Int)right).getValue());
+    }
+    return Evaluator.check(Evaluator.evalInfixExpression(Operator.GT, left, right), position);
+  }
+
+  public static Obj eq(Obj left, Obj right, int position) {
+    if (left instanceof Int && right instanceof Int) {
+      return Evaluator.nativeBool(((Int)left).getValue() == ((Int)right).getValue());
+    }
+    return Evaluator.check(Evaluator.evalInfixExpression(Operator.EQ, left, right), position);
+  }
+
+  public static Obj notEq(Obj left, Obj right, int position) {
+    if (left instanceof Int && right instanceof Int) {
+      return Evaluator.nativeBool(((Int)left).getValue() != ((Int)right).getValue());
+    }
+    return Evaluator.check(Evaluator.evalInfixExpression(Operator.NOT_EQ, left, right), position);
+  }
+
+  public static Obj prefix(Operator operator, Obj right, int position) {
+    return Evaluator.check(Evaluator.evalPrefixExpression(operator, right), position);
+  }
+
+  public static Obj call(Obj function, Obj[] args, int position) {
+    if (!(function instanceof Function)) {
+      throw new Except(String.format("not a function: %s", function.typeName()), position);
+    }
+    Function fn = (Function)function;
+    return Evaluator.applyFunction(fn, Evaluator.extendFunctionEnv(fn, Arrays.asList(args)));
+  }
+
+  public static Obj tailCall(Obj function, Obj[] args, int position) {
+    if (!(function instanceof Function)) {
+      throw new Except(String.format("not a function: %s", function.typeName()), position);
+    }
+    Function fn = (Function)function;
+    return new TailCall(fn, Evaluator.extendFunctionEnv(fn, Arrays.asList(args)));
+  }
+
+  public static Obj returned(Obj value) {
+    return Evaluator.returned(value);
+  }
+
+  public static Except notFound(Object id) {
+    Identifier identifier = (Identifier)id;
+    return new Except("identifier not found: " + identifier.getValue(), identifier.getPosition());
+  }
+}
@@ -0,0 +1,172 @@
+package monkey.evaluator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import monkey.ast.FunctionLiteral;
+import monkey.object.Obj;
+import monkey.object.Environment;
+import monkey.object.Int;
+import monkey.object.Bool;
+import monkey.object.Nil;
+import monkey.object.Function;
+
+/*
+ * Remembers results of calls within one run of a program, so a function called again with the
+ * same arguments answers without running its body.
+ *
+ * Monkey has no mutation and no I/O. A function only sees its arguments and the frames it was
+ * made in, and whatever those frames bind it can see is bound before the function exists. So
+ * a call of the same closure with equal arguments always has the same result. Which functions
+ * are worth it is decided by the Resolver, see FunctionLiteral.isMemoizable().
+ *
+ * Only calls whose arguments and result are Ints, Bools or nil are remembered, since those
+ * compare by value. Two functions made by two calls are never ==, so a call that returns one
+ * has to run every time. Excepts aren't remembered either, so running out of budget or being
+ * interrupted is never replayed.
+ *
+ * At most maxEntries results are kept, the least recently used one is evicted first. Like a
+ * Budget, a memo belongs to one run on one thread.
+ */
+public class Memo {
+  public static final int DEFAULT_ENTRIES = 100000;
+
+  private static final ThreadLocal<Memo> current = new ThreadLocal<>();
+  private static volatile boolean used;
+
+  private final Map<Key, Obj> results;
+  private long hits;
+  private long misses;
+
+  public Memo() {
+    this(DEFAULT_ENTRIES);
+  }
+
+  public Memo(int maxEntries) {
+    this.results = new LinkedHashMap<Key, Obj>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Obj> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  // Runs evaluation with this memo on the current thread.
+  public Obj run(Supplier<Obj> evaluation) {
+    used = true;
+    Memo enclosing = current.get();
+    current.set(this);
+    try {
+      return evaluation.get();
+    } finally {
+      current.set(enclosing);
+    }
+  }
+
+  // Memo of the run on this thread, or null if it has none.
+  static Memo current() {
+    return used ? current.get() : null;
+  }
+
+  // Key of a call of fn with arguments already in env, or null if it can't be remembered.
+  Key key(Function fn, Environment env) {
+    FunctionLiteral fl = fn.getLiteral();
+    if (!fl.isMemoizable()) {
+      return null;
+    }
+    Obj[] args = new Obj[fl.getParameters().size()];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = env.get(0, i);
+      if (!isValue(args[i])) {
+        return null;
+      }
+    }
+    return new Key(fn, args);
+  }
+
+  // Result remembered for key, or null.
+  Obj get(Key key) {
+    Obj result = results.get(key);
+    if (result != null) {
+      hits++;
+    } else {
+      misses++;
+    }
+    return result;
+  }
+
+  void put(Key key, Obj result) {
+    if (isValue(result)) {
+      results.put(key, result);
+    }
+  }
+
+  private static boolean isValue(Obj o) {
+    return o instanceof Int || o instanceof Bool || o instanceof Nil;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public int size() {
+    return results.size();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("hits=%d misses=%d size=%d", hits, misses, size());
+  }
+
+  // A closure and its arguments. Ints are equal by value, Bools and nil are shared.
+  static class Key {
+    private final Function function;
+    private final Obj[] args;
+    private final int hash;
+
+    Key(Function function, Obj[] args) {
+      this.function = function;
+      this.args = args;
+      int h = System.identityHashCode(function);
+      for (Obj a : args) {
+        h = 31 * h + (a instanceof Int ? Long.hashCode(((Int)a).getValue())
+            : System.identityHashCode(a));
+      }
+      this.hash = h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key k = (Key)o;
+      if (k.function != function || k.hash != hash || k.args.length != args.length) {
+        return false;
+      }
+      for (int i = 0; i < args.length; i++) {
+        if (!same(args[i], k.args[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    private static boolean same(Obj a, Obj b) {
+      if (a instanceof Int && b instanceof Int) {
+        return ((Int)a).getValue() == ((Int)b).getValue();
+      }
+      return a == b;
+    }
+  }
+}
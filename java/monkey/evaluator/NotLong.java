@@ -0,0 +1,19 @@
+package monkey.evaluator;
+
+import monkey.object.Obj;
+
+// Thrown when an operand of unboxed arithmetic turns out not to be an Int.
+class NotLong extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  private final transient Obj value;
+
+  NotLong(Obj value) {
+    super(null, null, false, false);
+    this.value = value;
+  }
+
+  Obj getValue() {
+    return value;
+  }
+}
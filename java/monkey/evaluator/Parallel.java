@@ -0,0 +1,174 @@
+package monkey.evaluator;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+import monkey.ast.Expression;
+import monkey.object.Obj;
+import monkey.object.Except;
+import monkey.object.Environment;
+import monkey.resolver.Resolver;
+
+/*
+ * Evaluates independent operands at the same time: both sides of an infix expression, and the
+ * arguments of a call. Expressions have no side effects, so the only way a program could tell is
+ * which error it gets, and that is always the one of the leftmost operand that failed, as if they
+ * ran one after another.
+ *
+ * Splitting only pays for operands that do a lot of work. The Resolver estimates what each
+ * expression costs, and operands are split only when at least two of them cost threshold or
+ * more, so each has a call in it at least. At run time, a worker that already has a few tasks
+ * queued that nobody took evaluates in place, which keeps deep recursion from making a task per
+ * call.
+ *
+ * The leftmost operand is evaluated in place and the rest are forked. Once an operand fails, the
+ * ones to its right are abandoned and stop at their next call.
+ *
+ * The program itself is evaluated on the thread that runs it, so what isn't forked has the stack
+ * it would have without the pool. Workers can't be given a stack size, and may have less: an
+ * operand that runs out of stack on a worker is evaluated again by the thread that joins it, the
+ * one that would have evaluated it anyway, and at worst by the thread that runs the program.
+ * Running out of stack there too gives an Except, as it does with a Budget.
+ *
+ * Compiled bodies can't split, so a function whose body has operands worth splitting is
+ * interpreted during a parallel run. Budget, Profiler and Memo belong to one thread, a run with
+ * any of them is evaluated as usual.
+ */
+public class Parallel {
+  private static final int SURPLUS = 2; // Queued tasks a worker keeps before it stops splitting
+
+  private static final ThreadLocal<Branch> current = new ThreadLocal<>();
+  private static volatile boolean used;
+
+  private final ForkJoinPool pool;
+  private final int threshold;
+
+  public Parallel() {
+    this(ForkJoinPool.commonPool(), Resolver.CALL_COST);
+  }
+
+  // Threshold is in the units of Resolver, it's never below the cost of a call.
+  public Parallel(ForkJoinPool pool, int threshold) {
+    this.pool = pool;
+    this.threshold = Math.max(threshold, Resolver.CALL_COST);
+  }
+
+  // Runs evaluation on the current thread, with operands forked to the pool.
+  public Obj run(Supplier<Obj> evaluation) {
+    if (Budget.current() != null || Profiler.current() != null || Memo.current() != null) {
+      return evaluation.get();
+    }
+    used = true;
+    try {
+      return new Branch(this, null, evaluation).evaluate();
+    } catch (StackOverflowError e) {
+      return new Except("stack overflow");
+    }
+  }
+
+  // Branch of the parallel run on this thread, or null if there's none.
+  static Branch current() {
+    return used ? current.get() : null;
+  }
+
+  // One evaluation of a run, the whole program or an operand forked from its parent.
+  static class Branch extends RecursiveTask<Branch> {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Parallel parallel;
+    private final transient Branch parent;
+    private final transient Supplier<Obj> evaluation;
+    private volatile boolean abandoned; // An operand to its left failed
+    private transient Obj value;
+    private RuntimeException failure; // An Except, or what went wrong in the evaluator
+    private boolean overflowed; // Ran out of stack
+
+    private Branch(Parallel parallel, Branch parent, Supplier<Obj> evaluation) {
+      this.parallel = parallel;
+      this.parent = parent;
+      this.evaluation = evaluation;
+    }
+
+    @Override
+    protected Branch compute() {
+      try {
+        value = evaluate();
+      } catch (RuntimeException e) {
+        failure = e;
+      } catch (StackOverflowError e) {
+        overflowed = true;
+      }
+      return this;
+    }
+
+    private Obj evaluate() {
+      Branch enclosing = current.get(); // Joining may run other branches on this thread
+      current.set(this);
+      try {
+        return evaluation.get();
+      } finally {
+        current.set(enclosing);
+      }
+    }
+
+    // Value of a joined branch. One that ran out of stack is evaluated again on this thread.
+    private Obj result() {
+      if (overflowed) {
+        return evaluate();
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return value;
+    }
+
+    // Whether operands that cost this much should be split now.
+    boolean splits(int cost) {
+      return cost >= parallel.threshold && getSurplusQueuedTaskCount() < SURPLUS;
+    }
+
+    // Whether this branch or one it was forked from has been abandoned, checked once per call.
+    boolean isAbandoned() {
+      for (Branch b = this; b != null; b = b.parent) {
+        if (b.abandoned) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // Evaluates operands in env, and returns their values in order. Throws what the leftmost
+    // operand that failed threw.
+    Obj[] evalAll(List<Expression> operands, Environment env) {
+      int n = operands.size();
+      Branch[] forked = new Branch[n];
+      // Forked last to first, so this thread joins them from the top of its queue
+      for (int i = n - 1; i > 0; i--) {
+        Expression e = operands.get(i);
+        forked[i] = new Branch(parallel, this, () -> Evaluator.eval(e, env));
+        if (getPool() == parallel.pool) {
+          forked[i].fork();
+        } else {
+          parallel.pool.execute(forked[i]); // From the thread that runs the program
+        }
+      }
+
+      Obj[] values = new Obj[n];
+      int i = 0;
+      try {
+        values[0] = Evaluator.eval(operands.get(0), env);
+        for (i = 1; i < n; i++) {
+          values[i] = forked[i].join().result();
+        }
+      } catch (RuntimeException | StackOverflowError e) {
+        for (int j = i + 1; j < n; j++) {
+          forked[j].abandoned = true;
+        }
+        throw e;
+      }
+      return values;
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package monkey.evaluator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+
+import monkey.ast.FunctionLiteral;
+import monkey.object.Obj;
+import monkey.object.Allocations;
+import monkey.token.LineMap;
+
+/*
+ * Records where one run of a program spends its time, per FunctionLiteral: how many times it was
+ * called, time spent in it including and excluding the functions it called, and how many Objs
+ * it made itself. A recursive function adds to its total time only once per outermost call.
+ *
+ * Calls are also kept as a tree of call paths, which dumps in the collapsed stack format that
+ * flame graph tools read: one line per path, frames separated by ';', followed by the time spent
+ * in the last frame itself in microseconds.
+ *
+ * Functions are labelled with the let binding they're the value of, and the line and column of
+ * their fn in source, if it's known. A tail call replaces its caller on the stack, as it does
+ * in the evaluator.
+ *
+ * Like a Budget, a profiler belongs to one run on one thread, and the evaluator finds it
+ * through run(). Until some run has a profiler, calls don't even look for one.
+ */
+public class Profiler {
+  private static final ThreadLocal<Profiler> current = new ThreadLocal<>();
+  private static volatile boolean used;
+
+  private final LineMap lines; // Of the program's source, may be null
+
+  private final Map<FunctionLiteral, Entry> entries = new LinkedHashMap<>();
+  private final Node root = new Node(null, null);
+  private Frame[] frames = new Frame[0];
+  private int depth;
+
+  // Totals of one function, the program itself has a null literal.
+  public static class Entry {
+    private final FunctionLiteral literal;
+    private long calls;
+    private long totalNanos;
+    private long selfNanos;
+    private long allocations;
+    private int active; // Calls on the stack, only the outermost adds to totalNanos
+
+    private Entry(FunctionLiteral literal) {
+      this.literal = literal;
+    }
+
+    public FunctionLiteral getLiteral() {
+      return literal;
+    }
+
+    public long getCalls() {
+      return calls;
+    }
+
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    public long getSelfNanos() {
+      return selfNanos;
+    }
+
+    public long getAllocations() {
+      return allocations;
+    }
+  }
+
+  // A call path, the literal of its last call and the path that made it.
+  private static class Node {
+    final FunctionLiteral literal;
+    final Node parent;
+    final Map<FunctionLiteral, Node> children = new LinkedHashMap<>();
+    long selfNanos;
+
+    Node(FunctionLiteral literal, Node parent) {
+      this.literal = literal;
+      this.parent = parent;
+    }
+  }
+
+  private static class Frame {
+    Entry entry;
+    Node node;
+    long start;
+    long startAllocations;
+    long childNanos;
+    long childAllocations;
+  }
+
+  public Profiler() {
+    this(null);
+  }
+
+  // Positions of functions are reported as lines and columns, see Program.getLines().
+  public Profiler(LineMap lines) {
+    this.lines = lines;
+  }
+
+  // Runs evaluation with this profiler on the current thread.
+  public Obj run(Supplier<Obj> evaluation) {
+    used = true;
+    Profiler enclosing = current.get();
+    current.set(this);
+    Allocations.start();
+    enter(null);
+    try {
+      return evaluation.get();
+    } finally {
+      while (depth > 0) {
+        exit();
+      }
+      Allocations.stop();
+      current.set(enclosing);
+    }
+  }
+
+  // Profiler of the run on this thread, or null if it has none.
+  static Profiler current() {
+    return used ? current.get() : null;
+  }
+
+  // Starts a call of fl, to be finished by exit().
+  void enter(FunctionLiteral fl) {
+    Entry entry = entries.get(fl);
+    if (entry == null) {
+      entry = new Entry(fl);
+      entries.put(fl, entry);
+    }
+    entry.calls++;
+    entry.active++;
+
+    Node parent = depth > 0 ? frames[depth - 1].node : null;
+    Node node;
+    if (parent == null) {
+      node = root;
+    } else {
+      node = parent.children.get(fl);
+      if (node == null) {
+        node = new Node(fl, parent);
+        parent.children.put(fl, node);
+      }
+    }
+
+    if (depth == frames.length) {
+      frames = Arrays.copyOf(frames, Math.max(16, depth * 2));
+      for (int i = depth; i < frames.length; i++) {
+        frames[i] = new Frame();
+      }
+    }
+    Frame f = frames[depth++];
+    f.entry = entry;
+    f.node = node;
+    f.childNanos = 0;
+    f.childAllocations = 0;
+    f.startAllocations = Allocations.get();
+    f.start = System.nanoTime();
+  }
+
+  void exit() {
+    long nanos = System.nanoTime();
+    Frame f = frames[--depth];
+    nanos -= f.start;
+    long allocations = Allocations.get() - f.startAllocations;
+    long selfNanos = nanos - f.childNanos;
+    f.entry.selfNanos += selfNanos;
+    f.entry.allocations += allocations - f.childAllocations;
+    if (--f.entry.active == 0) {
+      f.entry.totalNanos += nanos;
+    }
+    f.node.selfNanos += selfNanos;
+    if (depth > 0) {
+      frames[depth - 1].childNanos += nanos;
+      frames[depth - 1].childAllocations += allocations;
+    }
+  }
+
+  // Functions that were called, most expensive by self time first.
+  public List<Entry> getEntries() {
+    List<Entry> result = new ArrayList<>(entries.values());
+    Collections.sort(result, (a, b) -> Long.compare(b.selfNanos, a.selfNanos));
+    return result;
+  }
+
+  public String table() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%10s %12s %12s %12s  %s\n", "calls", "total(ms)", "self(ms)",
+        "allocs", "function"));
+    for (Entry e : getEntries()) {
+      sb.append(String.format("%10d %12.3f %12.3f %12d  %s\n", e.calls, e.totalNanos / 1e6,
+          e.selfNanos / 1e6, e.allocations, label(e.literal)));
+    }
+    return sb.toString();
+  }
+
+  public String collapsedStacks() {
+    StringBuilder sb = new StringBuilder();
+    Deque<Node> pending = new ArrayDeque<>();
+    pending.push(root);
+    while (!pending.isEmpty()) {
+      Node node = pending.pop();
+      long micros = node.selfNanos / 1000;
+      if (micros > 0) {
+        List<String> path = new ArrayList<>();
+        for (Node n = node; n != null; n = n.parent) {
+          path.add(label(n.literal));
+        }
+        Collections.reverse(path);
+        sb.append(String.join(";", path)).append(' ').append(micros).append('\n');
+      }
+      List<Node> children = new ArrayList<>(node.children.values());
+      for (int i = children.size() - 1; i >= 0; i--) {
+        pending.push(children.get(i));
+      }
+    }
+    return sb.toString();
+  }
+
+  // Name of the function, or fn if it has none, and where it is, like fib@3:11.
+  String label(FunctionLiteral fl) {
+    if (fl == null) {
+      return "<program>";
+    }
+    String name = fl.getName() != null ? fl.getName() : "fn";
+    if (fl.getPosition() < 0) {
+      return name;
+    }
+    if (lines == null) {
+      return name + "@" + fl.getPosition();
+    }
+    return name + "@" + lines.format(fl.getPosition());
+  }
+}
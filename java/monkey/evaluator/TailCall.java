@@ -0,0 +1,39 @@
+package monkey.evaluator;
+
+import monkey.object.Obj;
+import monkey.object.Environment;
+import monkey.object.Function;
+import monkey.object.Allocations;
+
+class TailCall implements Obj {
+  private Function function;
+  private Environment env; // Frame with arguments already in place
+  private boolean returned; // By a return statement, so the function it ends doesn't unwrap
+
+  TailCall(Function function, Environment env) {
+    this.function = function;
+    this.env = env;
+    Allocations.count();
+  }
+
+  Function getFunction() {
+    return function;
+  }
+
+  Environment getEnv() {
+    return env;
+  }
+
+  boolean isReturned() {
+    return returned;
+  }
+
+  void setReturned() {
+    returned = true;
+  }
+
+  @Override
+  public String typeName() {
+    return "TAIL_CALL";
+  }
+}
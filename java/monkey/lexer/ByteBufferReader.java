@@ -0,0 +1,42 @@
+package monkey.lexer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+// Decodes chars straight from a ByteBuffer, without copying bytes anywhere first.
+class ByteBufferReader extends Reader {
+  private ByteBuffer in;
+  private CharsetDecoder decoder;
+  private boolean flushed;
+
+  ByteBufferReader(ByteBuffer in, Charset charset) {
+    this.in = in.duplicate();
+    this.decoder = charset.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    if (flushed) {
+      return -1;
+    }
+    CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+    CoderResult result = decoder.decode(in, out, true);
+    if (result.isUnderflow()) {
+      result = decoder.flush(out);
+      flushed = result.isUnderflow();
+    }
+    int n = out.position() - off;
+    return n == 0 && flushed ? -1 : n;
+  }
+
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,30 @@
+package monkey.lexer;
+
+import java.io.Reader;
+
+// Reads chars of a CharSequence from some offset on, like a StringBuilder being edited, without
+// copying it.
+class CharSequenceReader extends Reader {
+  private CharSequence in;
+  private int next;
+
+  CharSequenceReader(CharSequence in, int offset) {
+    this.in = in;
+    this.next = offset;
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) {
+    if (next >= in.length()) {
+      return -1;
+    }
+    int n = Math.min(len, in.length() - next);
+    for (int i = 0; i < n; i++) {
+      cbuf[off + i] = in.charAt(next++);
+    }
+    return n;
+  }
+
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,61 @@
+package monkey.lexer;
+
+import monkey.token.Token;
+
+// Cache of identifier tokens. Text is looked up straight in the lexer buffer, so a name that was
+// seen recently costs no allocation. The table has a fixed number of slots and a name replaces
+// whatever is in its slot, so memory doesn't depend on how many distinct names the input has.
+// Names longer than MAX_LENGTH aren't kept, they are rarely repeated.
+class Interner {
+  static final int SIZE = 1024; // A power of two
+  static final int MAX_LENGTH = 32;
+
+  private final Token[] table = new Token[SIZE];
+
+  Token intern(char[] chars, int start, int end) {
+    if (end - start > MAX_LENGTH) {
+      return token(new String(chars, start, end - start));
+    }
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + chars[i];
+    }
+    hash ^= hash >>> 16;
+
+    int i = hash & (SIZE - 1);
+    Token t = table[i];
+    if (t != null && matches(t.getLiteral(), chars, start, end)) {
+      return t;
+    }
+    t = token(new String(chars, start, end - start));
+    table[i] = t;
+    return t;
+  }
+
+  // Number of tokens kept, never more than SIZE.
+  int size() {
+    int size = 0;
+    for (Token t : table) {
+      if (t != null) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  private static Token token(String text) {
+    return new Token(Token.Type.lookupIdent(text), text);
+  }
+
+  private static boolean matches(String text, char[] chars, int start, int end) {
+    if (text.length() != end - start) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i - start) != chars[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -1,136 +1,305 @@
 package monkey.lexer;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
 import monkey.token.Token;
+import monkey.token.LineMap;
+import monkey.token.LineStarts;
 
+// Input that isn't a String is read through a sliding window of `buffer`, so memory doesn't
+// depend on size of the input. Window grows only to fit a single token longer than it. The one
+// exception is the LineStarts, which keeps an int per line so that positions can be reported as
+// lines and columns. It can be turned off with setTrackLines(false).
 public class Lexer {
-  private String input;
+  private static final int BUFFER_SIZE = 8192;
+
+  // Tokens with fixed text are shared, identifiers come from the interner
+  private static final Token EQ = new Token(Token.Type.EQ, "==");
+  private static final Token ASSIGN = new Token(Token.Type.ASSIGN, "=");
+  private static final Token PLUS = new Token(Token.Type.PLUS, "+");
+  private static final Token MINUS = new Token(Token.Type.MINUS, "-");
+  private static final Token NOT_EQ = new Token(Token.Type.NOT_EQ, "!=");
+  private static final Token BANG = new Token(Token.Type.BANG, "!");
+  private static final Token ASTERISK = new Token(Token.Type.ASTERISK, "*");
+  private static final Token SLASH = new Token(Token.Type.SLASH, "/");
+  private static final Token LT = new Token(Token.Type.LT, "<");
+  private static final Token GT = new Token(Token.Type.GT, ">");
+  private static final Token SEMICOLON = new Token(Token.Type.SEMICOLON, ";");
+  private static final Token COMMA = new Token(Token.Type.COMMA, ",");
+  private static final Token LPAREN = new Token(Token.Type.LPAREN, "(");
+  private static final Token RPAREN = new Token(Token.Type.RPAREN, ")");
+  private static final Token LBRACE = new Token(Token.Type.LBRACE, "{");
+  private static final Token RBRACE = new Token(Token.Type.RBRACE, "}");
+  private static final Token EOF = new Token(Token.Type.EOF, "");
+
+  private Reader reader; // null when all input is in buffer
+  private char[] buffer;
+  private int limit; // Number of valid chars in buffer
   private int position;
   private int readPosition;
+  private int tokenStart = -1; // Start of identifier or number being read, must stay in buffer
   private char ch;
+  private int discarded; // Number of chars dropped from the front of buffer
+  private final Interner interner = new Interner();
+  private Token token;
+  private int start;
+  private int end;
+  private int first; // Position of the first char
+  private LineStarts lines = new LineStarts();
 
   public Lexer(String input) {
-    this.input = input;
+    this.buffer = input.toCharArray();
+    this.limit = buffer.length;
     this.readPosition = 0;
     readChar();
   }
 
+  public Lexer(Reader reader) {
+    this(reader, BUFFER_SIZE);
+  }
+
+  public Lexer(ReadableByteChannel channel, Charset charset) {
+    this(Channels.newReader(channel, charset.newDecoder(), -1));
+  }
+
+  // Decodes buffer, which may be memory-mapped file, as it goes.
+  public Lexer(ByteBuffer buffer, Charset charset) {
+    this(new ByteBufferReader(buffer, charset));
+  }
+
+  // Lexes input from offset on. Positions are offsets in the whole input, and lines are only
+  // those that start after offset.
+  public Lexer(CharSequence input, int offset) {
+    this(input, offset, offset);
+  }
+
+  // Lexes input from offset on, as if the char at offset were at position. Positions of tokens
+  // and lines go on from there.
+  public Lexer(CharSequence input, int offset, int position) {
+    this(new CharSequenceReader(input, offset), BUFFER_SIZE, position);
+  }
+
+  Lexer(Reader reader, int bufferSize) {
+    this(reader, bufferSize, 0);
+  }
+
+  private Lexer(Reader reader, int bufferSize, int position) {
+    this.reader = reader;
+    this.buffer = new char[bufferSize];
+    this.readPosition = 0;
+    this.discarded = position;
+    this.first = position;
+    this.lines = new LineStarts(position);
+    readChar();
+  }
+
   public Token nextToken() {
+    advance();
+    return token;
+  }
+
+  // Moves to the next token and returns its type. Unlike nextToken it's meant to be used
+  // together with getToken, getStart and getEnd.
+  public Token.Type advance() {
     skipWhitespace();
+    start = discarded + position;
 
-    Token t;
     switch (ch) {
       case '=':
         if (peekChar() == '=') {
           readChar();
-          t = new Token(Token.Type.EQ, "==");
+          token = EQ;
         } else {
-          t = new Token(Token.Type.ASSIGN, "=");
+          token = ASSIGN;
         }
         break;
       case '+':
-        t = new Token(Token.Type.PLUS, "+");
+        token = PLUS;
         break;
       case '-':
-        t = new Token(Token.Type.MINUS, "-");
+        token = MINUS;
         break;
       case '!':
         if (peekChar() == '=') {
           readChar();
-          t = new Token(Token.Type.NOT_EQ, "!=");
+          token = NOT_EQ;
         } else {
-          t = new Token(Token.Type.BANG, "!");
+          token = BANG;
         }
         break;
       case '*':
-        t = new Token(Token.Type.ASTERISK, "*");
+        token = ASTERISK;
         break;
       case '/':
-        t = new Token(Token.Type.SLASH, "/");
+        token = SLASH;
         break;
       case '<':
-        t = new Token(Token.Type.LT, "<");
+        token = LT;
         break;
       case '>':
-        t = new Token(Token.Type.GT, ">");
+        token = GT;
         break;
       case ';':
-        t = new Token(Token.Type.SEMICOLON, ";");
+        token = SEMICOLON;
         break;
       case ',':
-        t = new Token(Token.Type.COMMA, ",");
+        token = COMMA;
         break;
       case '(':
-        t = new Token(Token.Type.LPAREN, "(");
+        token = LPAREN;
         break;
       case ')':
-        t = new Token(Token.Type.RPAREN, ")");
+        token = RPAREN;
         break;
       case '{':
-        t = new Token(Token.Type.LBRACE, "{");
+        token = LBRACE;
         break;
       case '}':
-        t = new Token(Token.Type.RBRACE, "}");
+        token = RBRACE;
         break;
       case 0:
-        t = new Token(Token.Type.EOF, "");
-        break;
+        token = EOF;
+        end = start;
+        return token.getType();
       default:
         if (isLetter(ch)) {
-          String ident = readIdentifier();
-          Token.Type type = Token.Type.lookupIdent(ident);
-          return new Token(type, ident);
+          token = readIdentifier();
+          end = discarded + position;
+          return token.getType();
         } else if (Character.isDigit(ch)) {
-          String number = readNumber();
-          return new Token(Token.Type.INT, number);
+          token = readNumber();
+          end = discarded + position;
+          return token.getType();
         } else {
-          t = new Token(Token.Type.ILLEGAL, Character.toString(ch));
+          token = new Token(Token.Type.ILLEGAL, Character.toString(ch));
         }
         break;
     }
     readChar();
-    return t;
+    end = discarded + position;
+    return token.getType();
+  }
+
+  public Token getToken() {
+    return token;
+  }
+
+  // Starts of lines read so far, or null if lines aren't tracked.
+  public LineMap getLines() {
+    return lines;
+  }
+
+  // Without lines, memory doesn't grow with the input at all, and positions are only offsets.
+  // Must be called before the first token.
+  public void setTrackLines(boolean trackLines) {
+    lines = trackLines ? new LineStarts(first) : null;
+  }
+
+  // Offset of the first char of current token in the whole input.
+  public int getStart() {
+    return start;
+  }
+
+  // Offset right after the last char of current token.
+  public int getEnd() {
+    return end;
   }
 
   private void readChar() {
-    if (readPosition >= input.length()) {
+    if (readPosition >= limit && !fill()) {
       ch = 0;
     } else {
-      ch = input.charAt(readPosition);
+      ch = buffer[readPosition];
     }
     position = readPosition;
     readPosition += 1;
   }
 
   private char peekChar() {
-    if (readPosition >= input.length()) {
+    if (readPosition >= limit && !fill()) {
       return 0;
     } else {
-      return input.charAt(readPosition);
+      return buffer[readPosition];
     }
   }
 
-  private String readIdentifier() {
-    int start = position;
+  // Reads more input, dropping chars that are no longer needed. Returns false at end of input.
+  private boolean fill() {
+    if (reader == null) {
+      return false;
+    }
+
+    int keep = tokenStart >= 0 ? tokenStart : position;
+    System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+    limit -= keep;
+    discarded += keep;
+    position -= keep;
+    readPosition -= keep;
+    if (tokenStart >= 0) {
+      tokenStart -= keep;
+    }
+    if (limit > buffer.length / 2) {
+      char[] grown = new char[buffer.length * 2];
+      System.arraycopy(buffer, 0, grown, 0, limit);
+      buffer = grown;
+    }
+
+    try {
+      int n;
+      do {
+        n = reader.read(buffer, limit, buffer.length - limit);
+      } while (n == 0);
+      if (n < 0) {
+        reader = null;
+        return false;
+      }
+      limit += n;
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Token readIdentifier() {
+    tokenStart = position;
     while (isLetter(ch)) {
       readChar();
     }
-    return input.substring(start, position);
+    Token ident = interner.intern(buffer, tokenStart, position);
+    tokenStart = -1;
+    return ident;
+  }
+
+  Interner getInterner() {
+    return interner;
   }
 
   private boolean isLetter(char ch) {
     return Character.isLetter(ch) || ch == '_';
   }
 
-  private String readNumber() {
-    int start = position;
+  private Token readNumber() {
+    tokenStart = position;
     while (Character.isDigit(ch)) {
       readChar();
     }
-    return input.substring(start, position);
+    // Not interned: numbers are rarely repeated often enough to pay for the table
+    Token number = new Token(Token.Type.INT, new String(buffer, tokenStart, position - tokenStart));
+    tokenStart = -1;
+    return number;
   }
 
   private void skipWhitespace() {
     while (Character.isWhitespace(ch)) {
+      if (ch == '\n' && lines != null) {
+        lines.addLineStart(discarded + readPosition);
+      }
       readChar();
     }
   }
@@ -0,0 +1,36 @@
+package monkey.object;
+
+// Counts Objs made on threads that asked for it, which is how the profiler knows what each
+// function allocates. Shared constants, like small Ints and Bools, aren't counted. Until some
+// thread starts counting, making an Obj costs one extra read.
+public final class Allocations {
+  private static final ThreadLocal<long[]> counter = new ThreadLocal<>();
+  private static volatile boolean used;
+
+  private Allocations() {}
+
+  // Starts counting on the current thread, from zero.
+  public static void start() {
+    used = true;
+    counter.set(new long[1]);
+  }
+
+  public static void stop() {
+    counter.remove();
+  }
+
+  // Objs made on the current thread since start(), or 0 if it isn't counting.
+  public static long get() {
+    long[] c = counter.get();
+    return c != null ? c[0] : 0;
+  }
+
+  public static void count() {
+    if (used) {
+      long[] c = counter.get();
+      if (c != null) {
+        c[0]++;
+      }
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package monkey.object;
+
+public class Closure implements Obj {
+  private final CompiledFunction fn;
+  private final Obj[] free;
+
+  public Closure(CompiledFunction fn, Obj[] free) {
+    this.fn = fn;
+    this.free = free;
+    Allocations.count();
+  }
+
+  public CompiledFunction getFn() {
+    return fn;
+  }
+
+  public Obj[] getFree() {
+    return free;
+  }
+
+  @Override
+  public String typeName() {
+    return "FUNCTION";
+  }
+
+  @Override
+  public String toString() {
+    return fn.toString();
+  }
+}
@@ -0,0 +1,54 @@
+package monkey.object;
+
+public class CompiledFunction implements Obj {
+  private final int[] instructions;
+  private final int numLocals;
+  private final int numParameters;
+  private final String[] localNames;
+  private final String[] freeNames;
+  private final String source;
+
+  public CompiledFunction(int[] instructions, int numLocals, int numParameters,
+      String[] localNames, String[] freeNames, String source) {
+    this.instructions = instructions;
+    this.numLocals = numLocals;
+    this.numParameters = numParameters;
+    this.localNames = localNames;
+    this.freeNames = freeNames;
+    this.source = source;
+  }
+
+  public int[] getInstructions() {
+    return instructions;
+  }
+
+  public int getNumLocals() {
+    return numLocals;
+  }
+
+  public int getNumParameters() {
+    return numParameters;
+  }
+
+  public String[] getLocalNames() {
+    return localNames;
+  }
+
+  public String[] getFreeNames() {
+    return freeNames;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  @Override
+  public String typeName() {
+    return "COMPILED_FUNCTION";
+  }
+
+  @Override
+  public String toString() {
+    return source;
+  }
+}
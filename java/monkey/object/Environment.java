@@ -1,38 +1,50 @@
 package monkey.object;
 
-import java.util.Map;
-import java.util.HashMap;
+import java.util.Arrays;
 
+// A frame of slots. Each frame is written only by the thread that runs its function or program,
+// other threads may only read the frames shared through Globals, which aren't written anymore.
 public class Environment {
-  private Map<String, Obj> store;
-  private Environment outer;
+  private Obj[] slots;
+  private final Environment outer;
+  private boolean returning; // A return statement ran, so the blocks of this frame stop
 
-  public Environment(Map<String, Obj> store, Environment outer) {
-    this.store = store;
+  public Environment(Obj[] slots, Environment outer) {
+    this.slots = slots;
     this.outer = outer;
   }
 
-  public Environment(Environment e) {
-    this(new HashMap<>(e.store), e.outer);
+  public Environment(int size, Environment outer) {
+    this(new Obj[size], outer);
   }
 
   public Environment() {
-    this(new HashMap<>(), null);
+    this(0, null);
   }
 
-  public static Environment enclose(Environment e) {
-    return new Environment(new HashMap<>(), e);
+  public Obj get(int depth, int slot) {
+    Environment e = this;
+    for (int i = 0; i < depth; i++) {
+      e = e.outer;
+    }
+    return e.slots[slot];
   }
 
-  public Obj get(String name) {
-    Obj value = store.get(name);
-    if (value == null && outer != null) {
-      return outer.get(name);
-    }
-    return value;
+  public void set(int slot, Obj value) {
+    slots[slot] = value;
+  }
+
+  public boolean isReturning() {
+    return returning;
   }
 
-  public void set(String name, Obj value) {
-    store.put(name, value);
+  public void setReturning(boolean returning) {
+    this.returning = returning;
+  }
+
+  public void ensureCapacity(int size) {
+    if (slots.length < size) {
+      slots = Arrays.copyOf(slots, size);
+    }
   }
 }
@@ -1,14 +1,25 @@
 package monkey.object;
 
-public class Except implements Obj {
-  private String message;
+// An error of a running program. The evaluator throws it to unwind to the top of the program,
+// where it becomes the result like any other Obj. It never needs a stack trace, so it's as cheap
+// to throw as it is to return.
+public class Except extends RuntimeException implements Obj {
+  private static final long serialVersionUID = 1L;
+
+  private final int position; // Offset in source of the node that failed, -1 if unknown
 
   public Except(String message) {
-    this.message = message;
+    this(message, -1);
+  }
+
+  public Except(String message, int position) {
+    super(message, null, false, false);
+    this.position = position;
+    Allocations.count();
   }
 
-  public String getMessage() {
-    return message;
+  public int getPosition() {
+    return position;
   }
 
   @Override
@@ -18,6 +29,6 @@ public class Except implements Obj {
 
   @Override
   public String toString() {
-    return "Error! " + message;
+    return "Error! " + getMessage();
   }
 }
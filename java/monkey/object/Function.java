@@ -6,24 +6,29 @@ import com.google.common.base.Joiner;
 
 import monkey.ast.Identifier;
 import monkey.ast.BlockStatement;
+import monkey.ast.FunctionLiteral;
 
 public class Function implements Obj {
-  private List<Identifier> parameters;
-  private BlockStatement body;
-  private Environment env;
+  // Final, so a function read through a data race, like the call site cache, is fully built
+  private final FunctionLiteral literal;
+  private final Environment env;
 
-  public Function(List<Identifier> parameters, BlockStatement body, Environment env) {
-    this.parameters = parameters;
-    this.body = body;
+  public Function(FunctionLiteral literal, Environment env) {
+    this.literal = literal;
     this.env = env;
+    Allocations.count();
+  }
+
+  public FunctionLiteral getLiteral() {
+    return literal;
   }
 
   public List<Identifier> getParameters() {
-    return parameters;
+    return literal.getParameters();
   }
 
   public BlockStatement getBody() {
-    return body;
+    return literal.getBody();
   }
 
   public Environment getEnv() {
@@ -39,9 +44,9 @@ public class Function implements Obj {
   public String toString() {
     StringBuilder sb = new StringBuilder();
     sb.append("fn (");
-    sb.append(Joiner.on(", ").join(parameters));
+    sb.append(Joiner.on(", ").join(getParameters()));
     sb.append(") { ");
-    sb.append(body.toString());
+    sb.append(literal.getSourceBody().toString()); // Printed as written, even if optimized
     sb.append(" }");
     return sb.toString();
   }
@@ -1,12 +1,32 @@
 package monkey.object;
 
 public class Int implements Obj {
-  private long value;
+  // Range of preallocated values, can be changed with -Dmonkey.int.cache.low/high
+  private static final long CACHE_LOW = Long.getLong("monkey.int.cache.low", -128);
+  private static final long CACHE_HIGH = Math.max(CACHE_LOW - 1,
+      Long.getLong("monkey.int.cache.high", 1024));
+  private static final Int[] CACHE = new Int[(int)(CACHE_HIGH - CACHE_LOW + 1)];
 
-  public Int(long value) {
+  static {
+    for (int i = 0; i < CACHE.length; i++) {
+      CACHE[i] = new Int(CACHE_LOW + i);
+    }
+  }
+
+  private final long value;
+
+  private Int(long value) {
     this.value = value;
   }
 
+  public static Int valueOf(long value) {
+    if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+      return CACHE[(int)(value - CACHE_LOW)];
+    }
+    Allocations.count();
+    return new Int(value);
+  }
+
   public long getValue() {
     return value;
   }
@@ -1,7 +1,10 @@
 package monkey.object;
 
+// Value of a return nested in an operand or in the value of a let. It stops the blocks around the
+// return and is then used by the expression around them like any other value, as the type
+// RETURN, until the function it's returned from unwraps it.
 public class ReturnValue implements Obj {
-  private Obj value;
+  private final Obj value;
 
   public ReturnValue(Obj value) {
     this.value = value;
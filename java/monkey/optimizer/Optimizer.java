@@ -0,0 +1,292 @@
+package monkey.optimizer;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import monkey.ast.Program;
+import monkey.ast.Statement;
+import monkey.ast.BlockStatement;
+import monkey.ast.Expression;
+import monkey.ast.ExpressionStatement;
+import monkey.ast.LetStatement;
+import monkey.ast.ReturnStatement;
+import monkey.ast.IntegerLiteral;
+import monkey.ast.BoolLiteral;
+import monkey.ast.Operator;
+import monkey.ast.PrefixExpression;
+import monkey.ast.InfixExpression;
+import monkey.ast.IfExpression;
+import monkey.ast.FunctionLiteral;
+import monkey.ast.CallExpression;
+import monkey.token.Token;
+
+/*
+ * Rewrites a parsed program into a cheaper one with the same meaning. It runs between the
+ * parser and the resolver, so both engines benefit.
+ *
+ * Prefix and infix expressions over Int and Bool literals are folded into a literal. Anything
+ * that would fail at run time, like -true or 1 / 0, is left as it is, so the error still comes
+ * from the engine with its usual message.
+ *
+ * An if with a literal condition loses the branch that can't run. When the branch that runs is
+ * a single expression, the if is replaced by that expression; when the if is a statement of its
+ * own, the statements of the branch take its place. Blocks don't open scopes, so this doesn't
+ * change what a let inside the branch binds.
+ *
+ * Nodes that don't change are reused, and a function whose body was rewritten keeps the original
+ * body for printing.
+ */
+public class Optimizer {
+  private static final Token TRUE = new Token(Token.Type.TRUE, "true");
+  private static final Token FALSE = new Token(Token.Type.FALSE, "false");
+
+  private Optimizer() {}
+
+  public static Program optimize(Program program) {
+    List<Statement> statements = optimizeStatements(program.getStatements());
+    if (statements == program.getStatements()) {
+      return program;
+    }
+    Program optimized = new Program(statements);
+    optimized.setLines(program.getLines());
+    return optimized;
+  }
+
+  private static List<Statement> optimizeStatements(List<Statement> statements) {
+    List<Statement> result = null; // Allocated on the first change
+    for (int i = 0; i < statements.size(); i++) {
+      Statement st = statements.get(i);
+      Statement opt = optimizeStatement(st);
+      List<Statement> spliced = takenBranch(opt);
+      if (result == null && opt == st && spliced == null) {
+        continue;
+      }
+      if (result == null) {
+        result = new ArrayList<>(statements.subList(0, i));
+      }
+      if (spliced != null) {
+        result.addAll(spliced);
+      } else {
+        result.add(opt);
+      }
+    }
+    return result != null ? result : statements;
+  }
+
+  // Statements of the branch an if statement always takes, or null if there is nothing to splice.
+  private static List<Statement> takenBranch(Statement st) {
+    if (!(st instanceof ExpressionStatement)
+        || !(((ExpressionStatement)st).getExpression() instanceof IfExpression)) {
+      return null;
+    }
+    IfExpression ie = (IfExpression)((ExpressionStatement)st).getExpression();
+    if (!isLiteral(ie.getCondition())) {
+      return null;
+    }
+    BlockStatement taken = isTruthy(ie.getCondition()) ? ie.getConsequence() : ie.getAlternative();
+    // An empty block still yields NIL, which matters when it is the last statement.
+    if (taken == null || taken.getStatements() == null || taken.getStatements().isEmpty()) {
+      return null;
+    }
+    return taken.getStatements();
+  }
+
+  private static Statement optimizeStatement(Statement st) {
+    if (st instanceof ExpressionStatement) {
+      ExpressionStatement es = (ExpressionStatement)st;
+      Expression e = optimizeExpression(es.getExpression());
+      if (e == es.getExpression()) {
+        return st;
+      }
+      return at(new ExpressionStatement(es.getToken(), e), es);
+    } else if (st instanceof LetStatement) {
+      LetStatement ls = (LetStatement)st;
+      Expression value = optimizeExpression(ls.getValue());
+      if (value == ls.getValue()) {
+        return st;
+      }
+      return at(new LetStatement(ls.getToken(), ls.getName(), value), ls);
+    } else if (st instanceof ReturnStatement) {
+      ReturnStatement rs = (ReturnStatement)st;
+      Expression value = optimizeExpression(rs.getValue());
+      if (value == rs.getValue()) {
+        return st;
+      }
+      return at(new ReturnStatement(rs.getToken(), value), rs);
+    }
+    return st;
+  }
+
+  private static BlockStatement optimizeBlock(BlockStatement bs) {
+    if (bs == null || bs.getStatements() == null) {
+      return bs;
+    }
+    List<Statement> statements = optimizeStatements(bs.getStatements());
+    if (statements == bs.getStatements()) {
+      return bs;
+    }
+    return at(new BlockStatement(bs.getToken(), statements), bs);
+  }
+
+  private static Expression optimizeExpression(Expression e) {
+    if (e instanceof PrefixExpression) {
+      return optimizePrefixExpression((PrefixExpression)e);
+    } else if (e instanceof InfixExpression) {
+      return optimizeInfixExpression((InfixExpression)e);
+    } else if (e instanceof IfExpression) {
+      return optimizeIfExpression((IfExpression)e);
+    } else if (e instanceof FunctionLiteral) {
+      FunctionLiteral fl = (FunctionLiteral)e;
+      BlockStatement body = optimizeBlock(fl.getBody());
+      if (body == fl.getBody()) {
+        return e;
+      }
+      return at(new FunctionLiteral(fl.getToken(), fl.getParameters(), body, fl.getSourceBody()),
+          fl);
+    } else if (e instanceof CallExpression) {
+      CallExpression ce = (CallExpression)e;
+      Expression function = optimizeExpression(ce.getFunction());
+      List<Expression> args = ce.getArguments();
+      List<Expression> newArgs = null;
+      if (args != null) {
+        for (int i = 0; i < args.size(); i++) {
+          Expression arg = optimizeExpression(args.get(i));
+          if (newArgs == null && arg != args.get(i)) {
+            newArgs = new ArrayList<>(args.subList(0, i));
+          }
+          if (newArgs != null) {
+            newArgs.add(arg);
+          }
+        }
+      }
+      if (function == ce.getFunction() && newArgs == null) {
+        return e;
+      }
+      return at(new CallExpression(ce.getToken(), function, newArgs != null ? newArgs : args), ce);
+    }
+    return e;
+  }
+
+  private static Expression optimizePrefixExpression(PrefixExpression pe) {
+    Expression right = optimizeExpression(pe.getRight());
+    if (pe.getOperator() == Operator.MINUS && right instanceof IntegerLiteral) {
+      return at(intLiteral(-((IntegerLiteral)right).getValue()), pe);
+    } else if (pe.getOperator() == Operator.BANG && right instanceof BoolLiteral) {
+      return at(boolLiteral(!((BoolLiteral)right).getValue()), pe);
+    } else if (pe.getOperator() == Operator.BANG && right instanceof IntegerLiteral) {
+      return at(boolLiteral(false), pe);
+    }
+    if (right == pe.getRight()) {
+      return pe;
+    }
+    return at(new PrefixExpression(pe.getToken(), pe.getOperator(), right), pe);
+  }
+
+  private static Expression optimizeInfixExpression(InfixExpression ie) {
+    Expression left = optimizeExpression(ie.getLeft());
+    Expression right = optimizeExpression(ie.getRight());
+    Operator op = ie.getOperator();
+    if (left instanceof IntegerLiteral && right instanceof IntegerLiteral) {
+      Expression folded = foldInteger(op, ((IntegerLiteral)left).getValue(),
+          ((IntegerLiteral)right).getValue());
+      if (folded != null) {
+        return at(folded, ie);
+      }
+    } else if (isLiteral(left) && isLiteral(right)
+        && (op == Operator.EQ || op == Operator.NOT_EQ)) {
+      // Bools are singletons and an Int is never a Bool, so == compares literal values here.
+      boolean equal = left instanceof BoolLiteral && right instanceof BoolLiteral
+          && ((BoolLiteral)left).getValue() == ((BoolLiteral)right).getValue();
+      return at(boolLiteral(op == Operator.EQ ? equal : !equal), ie);
+    }
+    if (left == ie.getLeft() && right == ie.getRight()) {
+      return ie;
+    }
+    return at(new InfixExpression(ie.getToken(), left, op, right), ie);
+  }
+
+  private static Expression foldInteger(Operator op, long left, long right) {
+    switch (op) {
+      case PLUS:
+        return intLiteral(left + right);
+      case MINUS:
+        return intLiteral(left - right);
+      case ASTERISK:
+        return intLiteral(left * right);
+      case SLASH:
+        return right != 0 ? intLiteral(left / right) : null;
+      case LT:
+        return boolLiteral(left < right);
+      case GT:
+        return boolLiteral(left > right);
+      case EQ:
+        return boolLiteral(left == right);
+      case NOT_EQ:
+        return boolLiteral(left != right);
+      default:
+        return null;
+    }
+  }
+
+  private static Expression optimizeIfExpression(IfExpression ie) {
+    Expression condition = optimizeExpression(ie.getCondition());
+    BlockStatement consequence = ie.getConsequence();
+    BlockStatement alternative = ie.getAlternative();
+    if (isLiteral(condition)) {
+      if (isTruthy(condition)) {
+        alternative = null;
+      } else {
+        consequence = at(new BlockStatement(consequence.getToken(), new ArrayList<Statement>()),
+            consequence);
+      }
+    }
+    consequence = optimizeBlock(consequence);
+    alternative = optimizeBlock(alternative);
+
+    if (isLiteral(condition)) {
+      BlockStatement taken = isTruthy(condition) ? consequence : alternative;
+      if (taken != null && taken.getStatements() != null && taken.getStatements().size() == 1
+          && taken.getStatements().get(0) instanceof ExpressionStatement) {
+        return ((ExpressionStatement)taken.getStatements().get(0)).getExpression();
+      }
+    }
+    if (condition == ie.getCondition() && consequence == ie.getConsequence()
+        && alternative == ie.getAlternative()) {
+      return ie;
+    }
+    return at(new IfExpression(ie.getToken(), condition, consequence, alternative), ie);
+  }
+
+  private static boolean isLiteral(Expression e) {
+    return e instanceof IntegerLiteral || e instanceof BoolLiteral;
+  }
+
+  // Mirrors Evaluator.isTruthy for literals: only false and nil are falsy.
+  private static boolean isTruthy(Expression literal) {
+    return !(literal instanceof BoolLiteral) || ((BoolLiteral)literal).getValue();
+  }
+
+  private static IntegerLiteral intLiteral(long value) {
+    return new IntegerLiteral(new Token(Token.Type.INT, Long.toString(value)), value);
+  }
+
+  private static BoolLiteral boolLiteral(boolean value) {
+    return new BoolLiteral(value ? TRUE : FALSE, value);
+  }
+
+  // Gives a new node the position of the one it replaces, so errors still point at source.
+  private static <T extends Expression> T at(T e, Expression original) {
+    e.setPosition(original.getPosition());
+    return e;
+  }
+
+  private static <T extends Statement> T at(T st, Statement original) {
+    st.setPosition(original.getPosition());
+    return st;
+  }
+
+  private static BlockStatement at(BlockStatement bs, BlockStatement original) {
+    bs.setPosition(original.getPosition());
+    return bs;
+  }
+}
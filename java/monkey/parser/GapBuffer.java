@@ -0,0 +1,70 @@
+package monkey.parser;
+
+// Chars of a source being edited. The free space is kept where the last edit was, so an edit
+// only moves the chars between it and the one before.
+class GapBuffer implements CharSequence {
+  private char[] chars;
+  private int gapStart;
+  private int gapEnd;
+
+  GapBuffer(String source) {
+    chars = new char[source.length() + 16];
+    source.getChars(0, source.length(), chars, 0);
+    gapStart = source.length();
+    gapEnd = chars.length;
+  }
+
+  // Replaces removed chars at offset with inserted.
+  void replace(int offset, int removed, String inserted) {
+    moveGap(offset);
+    gapEnd += removed;
+    if (inserted.length() > gapEnd - gapStart) {
+      grow(inserted.length());
+    }
+    inserted.getChars(0, inserted.length(), chars, gapStart);
+    gapStart += inserted.length();
+  }
+
+  private void moveGap(int offset) {
+    if (offset < gapStart) {
+      int n = gapStart - offset;
+      System.arraycopy(chars, offset, chars, gapEnd - n, n);
+      gapStart -= n;
+      gapEnd -= n;
+    } else if (offset > gapStart) {
+      int n = offset - gapStart;
+      System.arraycopy(chars, gapEnd, chars, gapStart, n);
+      gapStart += n;
+      gapEnd += n;
+    }
+  }
+
+  private void grow(int needed) {
+    int after = chars.length - gapEnd;
+    char[] grown = new char[Math.max(chars.length * 2, length() + needed + 16)];
+    System.arraycopy(chars, 0, grown, 0, gapStart);
+    System.arraycopy(chars, gapEnd, grown, grown.length - after, after);
+    chars = grown;
+    gapEnd = grown.length - after;
+  }
+
+  @Override
+  public int length() {
+    return chars.length - (gapEnd - gapStart);
+  }
+
+  @Override
+  public char charAt(int index) {
+    return chars[index < gapStart ? index : index + gapEnd - gapStart];
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return new StringBuilder(end - start).append(this, start, end);
+  }
+
+  @Override
+  public String toString() {
+    return new String(chars, 0, gapStart) + new String(chars, gapEnd, chars.length - gapEnd);
+  }
+}
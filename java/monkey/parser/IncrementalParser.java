@@ -0,0 +1,388 @@
+package monkey.parser;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.concurrent.ThreadLocalRandom;
+
+import monkey.token.LineMap;
+import monkey.token.LineStarts;
+import monkey.token.MovedLines;
+import monkey.lexer.Lexer;
+import monkey.ast.Program;
+import monkey.ast.Statement;
+
+/*
+ * Keeps a source that is being edited parsed, reparsing only top-level statements an edit could
+ * have changed. The result is the same as parsing the whole source again, errors included, but
+ * for what positions of nodes are: the lines of the program turn them into the same lines and
+ * columns.
+ *
+ * A top-level statement is parsed from its own tokens, and the one token after it decides
+ * whether it goes on, so a statement that ends before the token in front of an edit stays as
+ * it is. Parsing starts again at the statement before the one the edit is in. It stops at the
+ * first statement that starts where an old statement after the edit starts: from there on the
+ * text and the parser's state are the same as before, so the rest are reused.
+ *
+ * Reused statements are the same objects, and nothing in them changes: each parse gives its
+ * nodes positions no parse before gave, and where a statement is now is only worked out when
+ * its lines are used. So a Program returned earlier stays as it was. Statements are kept in a
+ * persistent tree that knows lengths instead of offsets, and an edit only makes new nodes on
+ * the path to where it is, so it costs about as much as parsing the statements it changed.
+ * What is linear in the source is done when asked for: the lines of a program the first time
+ * they are used, getSource and getErrors.
+ */
+public class IncrementalParser {
+  private final GapBuffer source;
+  private Entry head; // Whitespace in front of the first statement
+  private Node root; // Top-level statements, in order
+  private int next; // Position the next parse starts at
+  private Program program;
+  private int reused;
+  private int reparsed;
+
+  // A top-level statement with the text up to the next one, and the errors parsing it reported.
+  private static class Entry {
+    final int origin; // Position its first char was parsed at
+    final int length;
+    final Statement statement; // null if its errors left nothing
+    final int[] lineStarts; // Of lines that start in it, from its first char
+    final int[] errorPositions;
+    final String[] errors; // Without line and column
+
+    Entry(int origin, int length, Statement statement, int[] lineStarts, int[] errorPositions,
+        String[] errors) {
+      this.origin = origin;
+      this.length = length;
+      this.statement = statement;
+      this.lineStarts = lineStarts;
+      this.errorPositions = errorPositions;
+      this.errors = errors;
+    }
+  }
+
+  public IncrementalParser(String source) {
+    this.source = new GapBuffer(source);
+    parse(null, 0, null, 0, 0, 0);
+  }
+
+  // Replaces removed chars at offset with inserted, and returns the program of the new source.
+  public Program edit(int offset, int removed, String inserted) {
+    if (offset < 0 || removed < 0 || offset + removed > source.length()) {
+      throw new IndexOutOfBoundsException(
+          String.format("edit %d+%d of %d chars", offset, removed, source.length()));
+    }
+    source.replace(offset, removed, inserted);
+    if (next > Integer.MAX_VALUE - source.length() - 1) {
+      // Out of positions, but no statement parsed with the ones given so far is kept
+      next = 0;
+      parse(null, 0, null, 0, 0, 0);
+      return program;
+    }
+
+    // The statement the edit is in, and the one before it whose next token may have changed.
+    // An edit before the first statement starts from the beginning.
+    int first = Math.max(0, countBefore(root, head.length, offset) - 2);
+    Node[] split = split(root, first);
+    int start = head.length + length(split[0]);
+    parse(split[0], first > 0 ? start : 0, split[1], start, offset + removed,
+        inserted.length() - removed);
+    return program;
+  }
+
+  // Parses from offset start on, after the statements kept, until the parser is at an old
+  // statement of rest that starts where it did, moved by delta, and not before end. Rest starts
+  // at restStart and both are in offsets of the source before the edit. Statements of rest that
+  // are passed over are dropped, the others are reused.
+  private void parse(Node kept, int start, Node rest, int restStart, int end, int delta) {
+    int base = next;
+    Lexer lexer = new Lexer(source, start, base);
+    Parser p = new Parser(lexer);
+    List<Integer> positions = new ArrayList<>();
+    List<Statement> statements = new ArrayList<>();
+    List<Integer> firstErrors = new ArrayList<>();
+    while (!p.atEnd()) {
+      int at = start + p.getStart() - base;
+      while (rest != null && (restStart < end || restStart + delta < at)) {
+        restStart += first(rest).length;
+        rest = split(rest, 1)[1];
+      }
+      if (rest != null && restStart + delta == at) {
+        break;
+      }
+      positions.add(p.getStart());
+      firstErrors.add(p.getErrorPositions().size());
+      statements.add(p.parseNext());
+    }
+    if (p.atEnd()) {
+      rest = null;
+    }
+    int stop = base + (rest != null ? restStart + delta : source.length()) - start;
+
+    LineMap lines = lexer.getLines();
+    Node parsed = null;
+    int n = positions.size();
+    for (int i = 0; i < n; i++) {
+      int origin = positions.get(i);
+      int length = (i + 1 < n ? positions.get(i + 1) : stop) - origin;
+      int from = firstErrors.get(i);
+      int to = i + 1 < n ? firstErrors.get(i + 1) : p.getErrorPositions().size();
+      int[] errorPositions = new int[to - from];
+      String[] errors = new String[to - from];
+      for (int j = from; j < to; j++) {
+        errorPositions[j - from] = p.getErrorPositions().get(j);
+        errors[j - from] = p.getErrorMessages().get(j);
+      }
+      Entry e = new Entry(origin, length, statements.get(i), lineStarts(lines, origin, length),
+          errorPositions, errors);
+      parsed = merge(parsed, new Node(e, null, null, ThreadLocalRandom.current().nextInt()));
+    }
+    if (start == 0) {
+      int length = (n > 0 ? positions.get(0) : stop) - base;
+      head = new Entry(base, length, null, lineStarts(lines, base, length), new int[0],
+          new String[0]);
+    }
+    root = merge(merge(kept, parsed), rest);
+    next = stop + 1;
+    reparsed = n;
+    reused = size(kept) + size(rest);
+    program = new Program(new Statements(root));
+    program.setLines(new Lines(head, root));
+  }
+
+  // Offsets from origin of the lines that start after it, up to length chars after it.
+  private static int[] lineStarts(LineMap lines, int origin, int length) {
+    int from = lines.line(origin);
+    int[] result = new int[lines.line(origin + length) - from];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = lines.start(from + i + 1) - origin;
+    }
+    return result;
+  }
+
+  public Program getProgram() {
+    return program;
+  }
+
+  public String getSource() {
+    return source.toString();
+  }
+
+  // Same as Parser.getErrors() for the current source.
+  public List<String> getErrors() {
+    List<String> result = new ArrayList<>();
+    LineMap lines = program.getLines();
+    for (Entry e : entries(root)) {
+      for (int i = 0; i < e.errors.length; i++) {
+        result.add(lines.format(e.errorPositions[i]) + ": " + e.errors[i]);
+      }
+    }
+    return result;
+  }
+
+  // Top-level statements the last edit kept.
+  public int getReused() {
+    return reused;
+  }
+
+  // Top-level statements the last edit parsed again.
+  public int getReparsed() {
+    return reparsed;
+  }
+
+  private static List<Entry> entries(Node n) {
+    List<Entry> result = new ArrayList<>(size(n));
+    addEntries(n, result);
+    return result;
+  }
+
+  private static void addEntries(Node n, List<Entry> result) {
+    if (n != null) {
+      addEntries(n.left, result);
+      result.add(n.entry);
+      addEntries(n.right, result);
+    }
+  }
+
+  // Node of a treap of entries, in order of the source. Nodes never change, so a tree is shared
+  // by every version of the source that has it.
+  private static class Node {
+    final Entry entry;
+    final Node left;
+    final Node right;
+    final int priority; // Not less than those of the nodes under it
+    final int size; // Entries in the subtree
+    final int statements; // Entries with a statement in the subtree
+    final int length; // Chars in the subtree
+
+    Node(Entry entry, Node left, Node right, int priority) {
+      this.entry = entry;
+      this.left = left;
+      this.right = right;
+      this.priority = priority;
+      this.size = size(left) + 1 + size(right);
+      this.statements = statements(left) + (entry.statement != null ? 1 : 0) + statements(right);
+      this.length = length(left) + entry.length + length(right);
+    }
+  }
+
+  private static int size(Node n) {
+    return n != null ? n.size : 0;
+  }
+
+  private static int statements(Node n) {
+    return n != null ? n.statements : 0;
+  }
+
+  private static int length(Node n) {
+    return n != null ? n.length : 0;
+  }
+
+  private static Node merge(Node a, Node b) {
+    if (a == null) {
+      return b;
+    }
+    if (b == null) {
+      return a;
+    }
+    if (a.priority >= b.priority) {
+      return new Node(a.entry, a.left, merge(a.right, b), a.priority);
+    }
+    return new Node(b.entry, merge(a, b.left), b.right, b.priority);
+  }
+
+  // First count entries of n, and the rest.
+  private static Node[] split(Node n, int count) {
+    if (n == null) {
+      return new Node[2];
+    }
+    if (count <= size(n.left)) {
+      Node[] s = split(n.left, count);
+      return new Node[] {s[0], new Node(n.entry, s[1], n.right, n.priority)};
+    }
+    Node[] s = split(n.right, count - size(n.left) - 1);
+    return new Node[] {new Node(n.entry, n.left, s[0], n.priority), s[1]};
+  }
+
+  private static Entry first(Node n) {
+    while (n.left != null) {
+      n = n.left;
+    }
+    return n.entry;
+  }
+
+  // Number of entries of n that start before offset, when n starts at start.
+  private static int countBefore(Node n, int start, int offset) {
+    int count = 0;
+    while (n != null) {
+      int entryStart = start + length(n.left);
+      if (entryStart < offset) {
+        count += size(n.left) + 1;
+        start = entryStart + n.entry.length;
+        n = n.right;
+      } else {
+        n = n.left;
+      }
+    }
+    return count;
+  }
+
+  // Statements of one version, looked up in its tree.
+  private static class Statements extends AbstractList<Statement> {
+    private final Node root;
+
+    Statements(Node root) {
+      this.root = root;
+    }
+
+    @Override
+    public Statement get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException(index + " of " + size());
+      }
+      Node n = root;
+      while (true) {
+        int left = statements(n.left);
+        if (index < left) {
+          n = n.left;
+        } else if (index == left && n.entry.statement != null) {
+          return n.entry.statement;
+        } else {
+          index -= left + (n.entry.statement != null ? 1 : 0);
+          n = n.right;
+        }
+      }
+    }
+
+    @Override
+    public int size() {
+      return statements(root);
+    }
+  }
+
+  // Lines of one version, with positions taken to where their statement is in it. They are
+  // worked out when first used.
+  private static class Lines implements LineMap {
+    private final Entry head;
+    private final Node root;
+    private volatile MovedLines moved;
+
+    Lines(Entry head, Node root) {
+      this.head = head;
+      this.root = root;
+    }
+
+    private MovedLines moved() {
+      MovedLines result = moved;
+      if (result == null) {
+        LineStarts lines = new LineStarts();
+        for (int lineStart : head.lineStarts) {
+          lines.addLineStart(lineStart);
+        }
+        List<Entry> entries = entries(root);
+        int[] origins = new int[entries.size()];
+        int[] starts = new int[entries.size()];
+        int[] lengths = new int[entries.size()];
+        int start = head.length;
+        for (int i = 0; i < entries.size(); i++) {
+          Entry e = entries.get(i);
+          for (int lineStart : e.lineStarts) {
+            lines.addLineStart(start + lineStart);
+          }
+          origins[i] = e.origin;
+          starts[i] = start;
+          lengths[i] = e.length;
+          start += e.length;
+        }
+        result = new MovedLines(lines, origins, starts, lengths);
+        moved = result;
+      }
+      return result;
+    }
+
+    @Override
+    public int size() {
+      return moved().size();
+    }
+
+    @Override
+    public int start(int line) {
+      return moved().start(line);
+    }
+
+    @Override
+    public int line(int position) {
+      return moved().line(position);
+    }
+
+    @Override
+    public int column(int position) {
+      return moved().column(position);
+    }
+
+    @Override
+    public String format(int position) {
+      return moved().format(position);
+    }
+  }
+}
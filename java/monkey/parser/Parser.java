@@ -4,12 +4,16 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Supplier;
 import java.util.function.Function;
 
 import com.google.common.collect.ImmutableMap;
 
 import monkey.token.Token;
+import monkey.token.LineMap;
 import monkey.lexer.Lexer;
 import monkey.ast.Program;
 import monkey.ast.Statement;
@@ -21,24 +25,72 @@ import monkey.ast.Identifier;
 import monkey.ast.IntegerLiteral;
 import monkey.ast.PrefixExpression;
 import monkey.ast.InfixExpression;
+import monkey.ast.Operator;
 import monkey.ast.BoolLiteral;
 import monkey.ast.IfExpression;
 import monkey.ast.BlockStatement;
 import monkey.ast.FunctionLiteral;
 import monkey.ast.CallExpression;
 
+/*
+ * Pratt parser. Tokens come straight from the lexer, or, when the program is parsed in parallel,
+ * from a slice of all its tokens lexed up front.
+ *
+ * A parallel parse splits the tokens after each ';' outside of braces, which is where the
+ * sequential parser starts a new top-level statement, and parses runs of such statements of at
+ * least CHUNK_TOKENS tokens on the pool. The only way a statement gets past such a ';' is a block
+ * that the parser closes elsewhere than the braces were counted, and such a block runs into the
+ * end of its chunk. A chunk that reads past its end more than the sequential parser would, or
+ * has errors, makes the whole program be parsed again sequentially, so errors and their order
+ * are always the same as without the pool.
+ */
 public class Parser {
-  private Lexer lexer;
+  static final int CHUNK_TOKENS = 1 << 14;
+  private static final Token EOF = new Token(Token.Type.EOF, "");
+
+  private Lexer lexer; // null when tokens are read from an array
+  private LineMap lines;
   private Token curToken;
   private Token peekToken;
+  private int curStart; // Offsets of curToken and peekToken in the input
+  private int peekStart;
   private Map<Token.Type, Supplier<Expression>> prefixParseFns;
   private Map<Token.Type, Function<Expression, Expression>> infixParseFns;
-  private List<String> errors; // TODO: Use something instead of String for error handling.
+  private List<Integer> errorPositions; // Offsets errors were reported at
+  private List<String> errorMessages; // Without line and column, getErrors adds those
+
+  // Tokens of a parallel parse, this parser reads those from next to end
+  private Token[] tokens;
+  private int[] starts;
+  private int next;
+  private int end;
+  private boolean chunk; // Reading past end of a chunk more than twice means it's misaligned
+  private int pastEnd;
+  private List<Statement> statements; // Of a chunk, once parsed
 
   public Parser(Lexer lexer) {
+    this(lexer.getLines());
     this.lexer = lexer;
     curToken = lexer.nextToken();
+    curStart = lexer.getStart();
     peekToken = lexer.nextToken();
+    peekStart = lexer.getStart();
+  }
+
+  // Parser of tokens from..to of a parallel parse.
+  private Parser(LineMap lines, Token[] tokens, int[] starts, int from, int to, boolean chunk) {
+    this(lines);
+    this.tokens = tokens;
+    this.starts = starts;
+    this.next = from;
+    this.end = to;
+    this.chunk = chunk;
+    readToken();
+    nextToken();
+  }
+
+  private Parser(LineMap lines) {
+    this.lines = lines;
 
     prefixParseFns = new HashMap<>();
     registerPrefix(Token.Type.IDENT, this::parseIdentifier);
@@ -61,14 +113,18 @@ public class Parser {
     registerInfix(Token.Type.LT, this::parseInfixExpression);
     registerInfix(Token.Type.GT, this::parseInfixExpression);
     registerInfix(Token.Type.LPAREN, this::parseCallExpression);
-    errors = new ArrayList<>();
+    errorPositions = new ArrayList<>();
+    errorMessages = new ArrayList<>();
   }
 
   private Expression parseCallExpression(Expression function) {
     Token token = curToken;
+    int position = curStart;
     List<Expression> arguments = parseCallArguments();
 
-    return new CallExpression(curToken, function, arguments);
+    CallExpression ce = new CallExpression(curToken, function, arguments);
+    ce.setPosition(position);
+    return ce;
   }
 
   private List<Expression> parseCallArguments() {
@@ -97,6 +153,7 @@ public class Parser {
 
   private Expression parseFunctionLiteral() {
     Token token = curToken;
+    int position = curStart;
 
     if (!expectPeek(Token.Type.LPAREN)) {
       return null;
@@ -110,7 +167,9 @@ public class Parser {
 
     BlockStatement body = parseBlockStatement();
 
-    return new FunctionLiteral(token, parameters, body);
+    FunctionLiteral fl = new FunctionLiteral(token, parameters, body);
+    fl.setPosition(position);
+    return fl;
   }
 
   private List<Identifier> parseFunctionParameters() {
@@ -139,6 +198,7 @@ public class Parser {
 
   private Expression parseIfExpression() {
     Token token = curToken;
+    int position = curStart;
 
     if (!expectPeek(Token.Type.LPAREN)) {
       return null;
@@ -162,15 +222,22 @@ public class Parser {
       alternative = parseBlockStatement();
     }
 
-    return new IfExpression(token, condition, consequence, alternative);
+    IfExpression ie = new IfExpression(token, condition, consequence, alternative);
+    ie.setPosition(position);
+    return ie;
   }
 
   private BlockStatement parseBlockStatement() {
     Token token = curToken;
+    int position = curStart;
     List<Statement> statements = new ArrayList<>();
 
     nextToken(); // Eat {
     while (!curTokenIs(Token.Type.RBRACE)) {
+      if (curTokenIs(Token.Type.EOF)) {
+        error(curStart, "expected next token to be RBRACE, got EOF instead");
+        break;
+      }
       Statement st = parseStatement();
       if (st != null) {
         statements.add(st);
@@ -178,7 +245,9 @@ public class Parser {
       nextToken();
     }
 
-    return new BlockStatement(token, statements);
+    BlockStatement bs = new BlockStatement(token, statements);
+    bs.setPosition(position);
+    return bs;
   }
 
   private Expression parseGroupedExpression() {
@@ -192,50 +261,166 @@ public class Parser {
   }
 
   private Expression parseBoolLiteral() {
-    return new BoolLiteral(curToken, curTokenIs(Token.Type.TRUE));
+    BoolLiteral bl = new BoolLiteral(curToken, curTokenIs(Token.Type.TRUE));
+    bl.setPosition(curStart);
+    return bl;
   }
 
   private Expression parseInfixExpression(Expression left) {
     Token token = curToken;
-    String operator = curToken.getLiteral();
+    int position = curStart;
+    Operator operator = Operator.fromToken(curToken.getType());
 
     Precedence p = curPrecedence();
     nextToken();
     Expression right = parseExpression(p);
 
-    return new InfixExpression(token, left, operator, right);
+    InfixExpression ie = new InfixExpression(token, left, operator, right);
+    ie.setPosition(position);
+    return ie;
   }
 
   private Expression parsePrefixExpression() {
     Token token = curToken;
-    String operator = curToken.getLiteral();
+    int position = curStart;
+    Operator operator = Operator.fromToken(curToken.getType());
 
     nextToken();
     Expression right = parseExpression(Precedence.PREFIX);
 
-    return new PrefixExpression(curToken, operator, right);
+    PrefixExpression pe = new PrefixExpression(curToken, operator, right);
+    pe.setPosition(position);
+    return pe;
   }
 
   private Expression parseIntegerLiteral() {
     long value = Long.parseLong(curToken.getLiteral());
     // TODO: Check for parsing errors
-    return new IntegerLiteral(curToken, value);
+    IntegerLiteral il = new IntegerLiteral(curToken, value);
+    il.setPosition(curStart);
+    return il;
   }
 
   private Expression parseIdentifier() {
-    return new Identifier(curToken, curToken.getLiteral());
+    Identifier id = new Identifier(curToken, curToken.getLiteral());
+    id.setPosition(curStart);
+    return id;
   }
 
   public Program parseProgram() {
     List<Statement> statements = new ArrayList<>();
-    while (!curTokenIs(Token.Type.EOF)) {
-      Statement st = parseStatement();
+    while (!atEnd()) {
+      Statement st = parseNext();
       if (st != null) {
         statements.add(st);
       }
+    }
+    Program program = new Program(statements);
+    program.setLines(lines);
+    return program;
+  }
+
+  // Same as parseProgram, with top-level statements parsed in parallel on pool. The whole input
+  // is lexed first.
+  public Program parseProgram(ForkJoinPool pool) {
+    Token[] tokens = new Token[1024];
+    int[] starts = new int[1024];
+    int n = 0;
+    tokens[n] = curToken;
+    starts[n++] = curStart;
+    while (!curTokenIs(Token.Type.EOF)) {
+      if (n == tokens.length) {
+        tokens = Arrays.copyOf(tokens, n * 2);
+        starts = Arrays.copyOf(starts, n * 2);
+      }
       nextToken();
+      tokens[n] = curToken;
+      starts[n++] = curStart;
     }
-    return new Program(statements);
+
+    // Chunks end right after a ';' outside of braces, the last one before EOF
+    List<Integer> ends = new ArrayList<>();
+    int depth = 0;
+    int from = 0;
+    for (int i = 0; i < n - 1; i++) {
+      Token.Type type = tokens[i].getType();
+      if (type == Token.Type.LBRACE) {
+        depth++;
+      } else if (type == Token.Type.RBRACE) {
+        depth--;
+      } else if (type == Token.Type.SEMICOLON && depth == 0 && i + 1 - from >= CHUNK_TOKENS) {
+        ends.add(i + 1);
+        from = i + 1;
+      }
+    }
+    ends.add(n - 1);
+
+    if (ends.size() > 1) {
+      List<ForkJoinTask<Parser>> chunks = new ArrayList<>();
+      from = 0;
+      for (int to : ends) {
+        Parser chunk = new Parser(lines, tokens, starts, from, to, true);
+        chunks.add(pool.submit(() -> chunk.parseChunk()));
+        from = to;
+      }
+      List<Statement> statements = new ArrayList<>();
+      for (ForkJoinTask<Parser> task : chunks) {
+        Parser chunk = task.join();
+        if (chunk == null || !chunk.errorPositions.isEmpty()) {
+          statements = null;
+          break;
+        }
+        statements.addAll(chunk.statements);
+      }
+      if (statements != null) {
+        Program program = new Program(statements);
+        program.setLines(lines);
+        return program;
+      }
+    }
+
+    Parser all = new Parser(lines, tokens, starts, 0, n - 1, false);
+    Program program = all.parseProgram();
+    errorPositions.addAll(all.errorPositions);
+    errorMessages.addAll(all.errorMessages);
+    return program;
+  }
+
+  // Parses the statements of a chunk, returns this parser, or null if the chunk turned out to
+  // end inside a statement.
+  private Parser parseChunk() {
+    try {
+      statements = parseProgram().getStatements();
+      return this;
+    } catch (Misaligned e) {
+      return null;
+    }
+  }
+
+  private static class Misaligned extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    Misaligned() {
+      super(null, null, false, false);
+    }
+  }
+
+  // Whether all top-level statements are parsed.
+  boolean atEnd() {
+    return curTokenIs(Token.Type.EOF);
+  }
+
+  // Offset of the top-level statement parseNext parses.
+  int getStart() {
+    return curStart;
+  }
+
+  // Parses the top-level statement at current token, and moves on to the next one. Returns
+  // null if it has errors that leave nothing to parse.
+  Statement parseNext() {
+    Statement st = parseStatement();
+    nextToken();
+    return st;
   }
 
   private Statement parseStatement() {
@@ -252,7 +437,8 @@ public class Parser {
   private Expression parseExpression(Precedence precedence) {
     Supplier<Expression> prefix = prefixParseFns.get(curToken.getType());
     if (prefix == null) {
-      errors.add(String.format("No prefix parse function for %s found", curToken.getType()));
+      error(curStart, String.format("No prefix parse function for %s found",
+            curToken.getType()));
       return null;
     }
     Expression leftExp = prefix.get();
@@ -311,34 +497,41 @@ public class Parser {
 
   private ExpressionStatement parseExpressionStatement() {
     Token token = curToken;
+    int position = curStart;
 
     Expression expression = parseExpression(Precedence.LOWEST);
 
     if (peekTokenIs(Token.Type.SEMICOLON)) {
       nextToken();
     }
-    return new ExpressionStatement(token, expression);
+    ExpressionStatement es = new ExpressionStatement(token, expression);
+    es.setPosition(position);
+    return es;
   }
 
   private ReturnStatement parseReturnStatement() {
     Token token = curToken;
+    int position = curStart;
     nextToken(); // Skip return
 
     Expression value = parseExpression(Precedence.LOWEST);
 
-    while (!curTokenIs(Token.Type.SEMICOLON)) {
+    while (!curTokenIs(Token.Type.SEMICOLON) && !curTokenIs(Token.Type.EOF)) {
       nextToken();
     }
-    return new ReturnStatement(token, value);
+    ReturnStatement rs = new ReturnStatement(token, value);
+    rs.setPosition(position);
+    return rs;
   }
 
   private LetStatement parseLetStatement() {
     Token token = curToken;
+    int position = curStart;
 
     if (!expectPeek(Token.Type.IDENT)) {
       return null;
     }
-    Identifier name = new Identifier(curToken, curToken.getLiteral());
+    Identifier name = (Identifier)parseIdentifier();
 
     if (!expectPeek(Token.Type.ASSIGN)) {
       return null;
@@ -347,10 +540,12 @@ public class Parser {
 
     Expression value = parseExpression(Precedence.LOWEST);
 
-    while (!curTokenIs(Token.Type.SEMICOLON)) {
+    while (!curTokenIs(Token.Type.SEMICOLON) && !curTokenIs(Token.Type.EOF)) {
       nextToken();
     }
-    return new LetStatement(token, name, value);
+    LetStatement ls = new LetStatement(token, name, value);
+    ls.setPosition(position);
+    return ls;
   }
 
   private void registerPrefix(Token.Type type, Supplier<Expression> fn) {
@@ -371,10 +566,15 @@ public class Parser {
   }
 
   private void peekError(Token.Type type) {
-    errors.add(String.format("expected next token to be %s, got %s instead", type,
+    error(peekStart, String.format("expected next token to be %s, got %s instead", type,
           peekToken.getType()));
   }
 
+  private void error(int position, String message) {
+    errorPositions.add(position);
+    errorMessages.add(message);
+  }
+
   private boolean curTokenIs(Token.Type type) {
     return curToken.getType() == type;
   }
@@ -385,10 +585,48 @@ public class Parser {
 
   private void nextToken() {
     curToken = peekToken;
-    peekToken = lexer.nextToken();
+    curStart = peekStart;
+    if (lexer != null) {
+      peekToken = lexer.nextToken();
+      peekStart = lexer.getStart();
+    } else {
+      readToken();
+    }
+  }
+
+  // Reads peekToken from tokens. Past the end it's EOF, as the lexer's is.
+  private void readToken() {
+    if (next < end) {
+      peekToken = tokens[next];
+      peekStart = starts[next++];
+      return;
+    }
+    if (chunk && ++pastEnd > 2) {
+      throw new Misaligned();
+    }
+    peekToken = chunk ? EOF : tokens[end];
+    peekStart = starts[end];
   }
 
+  // Errors so far, each starting with its line and column. Without lines, with "@" and the
+  // offset.
   public List<String> getErrors() {
-    return errors;
+    List<String> result = new ArrayList<>(errorMessages.size());
+    for (int i = 0; i < errorMessages.size(); i++) {
+      int position = errorPositions.get(i);
+      result.add((lines != null ? lines.format(position) : "@" + position) + ": "
+          + errorMessages.get(i));
+    }
+    return result;
+  }
+
+  // Offsets in source of getErrors().
+  List<Integer> getErrorPositions() {
+    return errorPositions;
+  }
+
+  // getErrors() without their lines and columns.
+  List<String> getErrorMessages() {
+    return errorMessages;
   }
 }
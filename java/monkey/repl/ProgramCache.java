@@ -0,0 +1,152 @@
+package monkey.repl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import monkey.ast.Program;
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.optimizer.Optimizer;
+import monkey.resolver.Resolver;
+import monkey.resolver.Scope;
+import monkey.compiler.Compiler;
+import monkey.compiler.Bytecode;
+
+/*
+ * Keeps parsed programs around, so running the same script again skips the lexer, parser,
+ * optimizer and resolver. Programs are keyed by the SHA-256 of their source and evicted least
+ * recently used first, once there are more than maxEntries of them or their total weight goes
+ * over maxWeight. The weight of a program is the length of its source, which is roughly
+ * proportional to the size of its tree.
+ *
+ * A program is resolved before it is published, and nothing changes it afterwards except the
+ * evaluator's inline caches, so one entry can be run by many threads at once. Bytecode for the
+ * VM is compiled the first time it's asked for.
+ *
+ * The cache is safe to share between threads. Two threads missing the same source at once may
+ * both parse it, but only the first result is kept.
+ */
+public class ProgramCache {
+  private final int maxEntries;
+  private final long maxWeight;
+  private final LinkedHashMap<HashCode, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long weight; // Guarded by entries
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  public static class Entry {
+    private final Program program;
+    private final List<String> errors;
+    private final long weight;
+    private volatile Bytecode bytecode;
+
+    private Entry(Program program, List<String> errors, long weight) {
+      this.program = program;
+      this.errors = errors;
+      this.weight = weight;
+    }
+
+    public Program getProgram() {
+      return program;
+    }
+
+    public List<String> getErrors() {
+      return errors;
+    }
+
+    public Bytecode getBytecode() {
+      Bytecode b = bytecode;
+      if (b == null) {
+        synchronized (this) {
+          b = bytecode;
+          if (b == null) {
+            b = new Compiler().compile(program);
+            bytecode = b;
+          }
+        }
+      }
+      return b;
+    }
+  }
+
+  public ProgramCache(int maxEntries, long maxWeight) {
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+  }
+
+  public Entry get(String source) {
+    HashCode key = Hashing.sha256().hashString(source, StandardCharsets.UTF_8);
+    synchronized (entries) {
+      Entry e = entries.get(key);
+      if (e != null) {
+        hits.incrementAndGet();
+        return e;
+      }
+    }
+    misses.incrementAndGet();
+
+    Parser p = new Parser(new Lexer(source));
+    Program program = Optimizer.optimize(p.parseProgram());
+    Resolver.resolve(program, new Scope());
+    Entry e = new Entry(program, ImmutableList.copyOf(p.getErrors()), source.length());
+    if (e.weight > maxWeight) {
+      return e; // Would evict everything else and still not fit
+    }
+
+    synchronized (entries) {
+      Entry existing = entries.get(key);
+      if (existing != null) {
+        return existing;
+      }
+      entries.put(key, e);
+      weight += e.weight;
+      Iterator<Map.Entry<HashCode, Entry>> it = entries.entrySet().iterator();
+      while (entries.size() > maxEntries || weight > maxWeight) {
+        Entry eldest = it.next().getValue();
+        it.remove();
+        weight -= eldest.weight;
+        evictions.incrementAndGet();
+      }
+    }
+    return e;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long weight() {
+    synchronized (entries) {
+      return weight;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("hits=%d misses=%d evictions=%d size=%d weight=%d", getHits(),
+        getMisses(), getEvictions(), size(), weight());
+  }
+}
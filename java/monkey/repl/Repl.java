@@ -1,34 +1,72 @@
 package monkey.repl;
 
 import java.util.List;
+import java.util.ArrayList;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.BufferedReader;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.charset.Charset;
-
-import com.google.common.base.Joiner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import monkey.ast.Program;
+import monkey.cache.ScriptCache;
 import monkey.lexer.Lexer;
 import monkey.parser.Parser;
 import monkey.object.Obj;
+import monkey.object.Except;
 import monkey.object.Environment;
 import monkey.evaluator.Evaluator;
+import monkey.evaluator.Profiler;
+import monkey.evaluator.Memo;
+import monkey.evaluator.Parallel;
+import monkey.optimizer.Optimizer;
+import monkey.resolver.Resolver;
+import monkey.resolver.Scope;
+import monkey.compiler.Compiler;
+import monkey.compiler.Bytecode;
+import monkey.compiler.SymbolTable;
+import monkey.vm.VM;
 
 public class Repl {
   private static final String PROMPT = ">> ";
+  private static final String LOAD_COMMAND = ":load ";
+  private static final String RELOAD_COMMAND = ":reload";
+  // Scripts already in memory that are bigger than this are parsed in parallel. Streamed ones
+  // never are, since that reads all of their tokens into memory first.
+  private static final int PARALLEL_PARSE_BYTES = 1 << 20;
   private static final String MONKEY_FACE =
     "  /~\\ \n" +
     " C oo \n" +
     " _( ^) \n" +
     "/   ~\\ \n";
 
+  public enum Engine {
+    EVALUATOR,
+    VM;
+  }
+
   public static void start(InputStreamReader in, OutputStreamWriter out) throws IOException {
+    start(in, out, Engine.EVALUATOR);
+  }
+
+  public static void start(InputStreamReader in, OutputStreamWriter out, Engine engine)
+    throws IOException {
     try (BufferedReader bs = new BufferedReader(in)) {
       Environment env = new Environment();
+      Scope scope = new Scope();
+      SymbolTable symbolTable = new SymbolTable();
+      List<Obj> constants = new ArrayList<>();
+      Obj[] globals = new Obj[0];
+      Session session = new Session();
+      String script = null;
       while (true) {
         out.write(PROMPT);
         out.flush();
@@ -36,35 +74,213 @@ public class Repl {
         if (line == null) {
           return;
         }
+        if (line.startsWith(LOAD_COMMAND) || line.trim().equals(RELOAD_COMMAND)) {
+          if (line.startsWith(LOAD_COMMAND)) {
+            script = line.substring(LOAD_COMMAND.length()).trim();
+          }
+          if (engine == Engine.VM) {
+            out.write("scripts can only be loaded with the evaluator\n");
+          } else if (script == null) {
+            out.write("no script to reload, use " + LOAD_COMMAND + "<path> first\n");
+          } else if (load(session, script, out)) {
+            // Lines typed from now on see the script's bindings, and lose those typed before
+            env = session.getEnvironment();
+            scope = session.getScope();
+          }
+          continue;
+        }
         Parser p = new Parser(new Lexer(line));
         Program program = p.parseProgram();
         if (!p.getErrors().isEmpty()) {
           printParseErrors(out, p.getErrors());
           continue;
         }
+        program = Optimizer.optimize(program);
 
-        Obj result = Evaluator.eval(program, env);
+        Obj result;
+        if (engine == Engine.VM) {
+          Bytecode bytecode = new Compiler(symbolTable, constants).compile(program);
+          globals = VM.growGlobals(globals, bytecode);
+          result = new VM(bytecode, globals).run();
+        } else {
+          Resolver.resolve(program, scope);
+          result = Evaluator.eval(program, env);
+        }
         if (result != null) {
-          out.write(result.toString());
+          out.write(describe(result, program));
           out.write("\n");
         }
       }
     }
   }
 
+  // Loads the script at path into session, and prints its result and how much of the last load
+  // was reused. Returns false if the script can't be read.
+  static boolean load(Session session, String path, OutputStreamWriter out) throws IOException {
+    String source;
+    try {
+      source = new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset());
+    } catch (IOException e) {
+      out.write("can't read " + path + ": " + e + "\n");
+      return false;
+    }
+    Obj result = session.load(source);
+    if (!session.getErrors().isEmpty()) {
+      printParseErrors(out, session.getErrors());
+    }
+    if (result != null) {
+      out.write(describe(result, session.getProgram()));
+      out.write("\n");
+    }
+    out.write(String.format("%s: %d statements reused, %d recomputed\n", path,
+        session.getReused(), session.getRecomputed()));
+    return true;
+  }
+
   public static void run(String path) throws IOException {
-    List<String> lines = Files.readAllLines(Paths.get(path), Charset.defaultCharset());
-    String text = Joiner.on("").join(lines);
+    run(path, Engine.EVALUATOR);
+  }
+
+  public static void run(String path, Engine engine) throws IOException {
     Environment env = new Environment();
-    Parser p = new Parser(new Lexer(text));
+    Parser p;
+    Program program;
+    try (FileChannel channel = FileChannel.open(Paths.get(path))) {
+      p = new Parser(new Lexer(channel, Charset.defaultCharset()));
+      program = p.parseProgram();
+    }
+    if (!p.getErrors().isEmpty()) {
+      printParseErrors(p.getErrors());
+    }
+    program = Optimizer.optimize(program);
+    Obj result;
+    if (engine == Engine.VM) {
+      result = new VM(new Compiler().compile(program)).run();
+    } else {
+      result = Evaluator.eval(program, env);
+    }
+    if (result != null) {
+      System.out.println(describe(result, program));
+    }
+  }
+
+  // Same as run, but takes the parsed program from cache when the script was seen before.
+  public static void run(String path, Engine engine, ProgramCache cache) throws IOException {
+    String source = new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset());
+    ProgramCache.Entry entry = cache.get(source);
+    if (!entry.getErrors().isEmpty()) {
+      printParseErrors(entry.getErrors());
+    }
+    Obj result = execute(entry, engine);
+    if (result != null) {
+      System.out.println(describe(result, entry.getProgram()));
+    }
+  }
+
+  // Same as run, but skips lexing and parsing when scriptCache has the script.
+  public static void run(String path, Engine engine, ScriptCache scriptCache) throws IOException {
+    Path script = Paths.get(path);
+    byte[] source = Files.readAllBytes(script);
+    Program program = null;
+    Bytecode bytecode = null;
+    if (engine == Engine.VM) {
+      bytecode = scriptCache.loadBytecode(script, source);
+    } else {
+      program = scriptCache.loadProgram(script, source);
+    }
+    if (program == null && bytecode == null) {
+      Parser p = new Parser(new Lexer(ByteBuffer.wrap(source), Charset.defaultCharset()));
+      program = Optimizer.optimize(source.length > PARALLEL_PARSE_BYTES
+          ? p.parseProgram(ForkJoinPool.commonPool())
+          : p.parseProgram());
+      if (!p.getErrors().isEmpty()) {
+        printParseErrors(p.getErrors());
+      } else {
+        bytecode = new Compiler().compile(program);
+        scriptCache.store(script, source, program, bytecode);
+      }
+    }
+    Obj result;
+    if (engine == Engine.VM) {
+      result = new VM(bytecode != null ? bytecode : new Compiler().compile(program)).run();
+    } else {
+      result = Evaluator.eval(program, new Environment());
+    }
+    if (result != null) {
+      System.out.println(describe(result, program));
+    }
+  }
+
+  // Same as run with the evaluator, and returns where the run spent its time.
+  public static Profiler profile(String path) throws IOException {
+    String source = new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset());
+    Parser p = new Parser(new Lexer(source));
     Program program = p.parseProgram();
     if (!p.getErrors().isEmpty()) {
-      printParseErrors(new OutputStreamWriter(System.out), p.getErrors());
+      printParseErrors(p.getErrors());
     }
-    Obj result = Evaluator.eval(program, env);
+    Program optimized = Optimizer.optimize(program);
+    Profiler profiler = new Profiler(program.getLines());
+    Obj result = profiler.run(() -> Evaluator.eval(optimized, new Environment()));
     if (result != null) {
-      System.out.println(result);
+      System.out.println(describe(result, program));
     }
+    return profiler;
+  }
+
+  // Same as run with the evaluator, with results of calls remembered in memo.
+  public static void run(String path, Memo memo) throws IOException {
+    run(path, memo::run);
+  }
+
+  // Same as run with the evaluator, with independent operands evaluated in parallel.
+  public static void run(String path, Parallel parallel) throws IOException {
+    run(path, parallel::run);
+  }
+
+  // Same as run with the evaluator, which is run by runner.
+  private static void run(String path, Function<Supplier<Obj>, Obj> runner) throws IOException {
+    Parser p;
+    Program program;
+    try (FileChannel channel = FileChannel.open(Paths.get(path))) {
+      p = new Parser(new Lexer(channel, Charset.defaultCharset()));
+      program = p.parseProgram();
+    }
+    if (!p.getErrors().isEmpty()) {
+      printParseErrors(p.getErrors());
+    }
+    Program optimized = Optimizer.optimize(program);
+    Obj result = runner.apply(() -> Evaluator.eval(optimized, new Environment()));
+    if (result != null) {
+      System.out.println(describe(result, program));
+    }
+  }
+
+  public static Obj execute(ProgramCache.Entry entry, Engine engine) {
+    if (engine == Engine.VM) {
+      return new VM(entry.getBytecode()).run();
+    } else {
+      return Evaluator.eval(entry.getProgram(), new Environment());
+    }
+  }
+
+  // Result as printed, errors get the line and column where they happened if it's known.
+  static String describe(Obj result, Program program) {
+    if (result instanceof Except && program != null && program.getLines() != null) {
+      Except e = (Except)result;
+      if (e.getPosition() >= 0) {
+        return String.format("Error! %s: %s", program.getLines().format(e.getPosition()),
+            e.getMessage());
+      }
+    }
+    return result.toString();
+  }
+
+  // Prints errors to System.out, ahead of anything printed after.
+  private static void printParseErrors(List<String> errors) throws IOException {
+    OutputStreamWriter out = new OutputStreamWriter(System.out);
+    printParseErrors(out, errors);
+    out.flush();
   }
 
   private static void printParseErrors(OutputStreamWriter out, List<String> errors)
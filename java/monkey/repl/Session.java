@@ -0,0 +1,361 @@
+package monkey.repl;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.List;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import monkey.ast.Program;
+import monkey.ast.Statement;
+import monkey.ast.BlockStatement;
+import monkey.ast.Expression;
+import monkey.ast.ExpressionStatement;
+import monkey.ast.LetStatement;
+import monkey.ast.ReturnStatement;
+import monkey.ast.Identifier;
+import monkey.ast.PrefixExpression;
+import monkey.ast.InfixExpression;
+import monkey.ast.IfExpression;
+import monkey.ast.FunctionLiteral;
+import monkey.ast.CallExpression;
+import monkey.token.LineMap;
+import monkey.token.MovedLines;
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.object.Obj;
+import monkey.object.Except;
+import monkey.object.Environment;
+import monkey.evaluator.Evaluator;
+import monkey.optimizer.Optimizer;
+import monkey.resolver.Resolver;
+import monkey.resolver.Scope;
+
+/*
+ * A script loaded into the REPL, kept evaluated so that loading it again after an edit only
+ * recomputes what the edit affected.
+ *
+ * Each top-level statement is evaluated as a program of its own, on top of the bindings of the
+ * ones before it, as REPL lines are. Along with its result, the session keeps its source and
+ * the statements that made the bindings it reads, which are found from the names it uses that
+ * no function in it binds. On the next load, a statement with the same source whose bindings
+ * read are all reused is reused too: a let binds the value it had and any other statement gives
+ * the result it had, without running. Everything else is evaluated, so an edit recomputes the
+ * statements it touched, and through their bindings the ones downstream of them.
+ *
+ * That is sound because evaluation has no side effects, and a statement sees nothing but the
+ * bindings it names. Two kinds of statements don't fit: one that may return at top level, which
+ * ends the script, and one that binds names with lets nested in an if. From the first of those
+ * on, the rest of the script runs as one program, as it would without a session.
+ *
+ * Reused values may hold closures over the nodes of an earlier load, which are left as they are.
+ * Each load is lexed at positions no load before had, and the lines of its program take
+ * positions of reused statements to where those are now, so errors have the right line.
+ */
+public class Session {
+  private List<Entry> entries = new ArrayList<>();
+  private Scope scope = new Scope();
+  private Environment env = new Environment();
+  private Program program;
+  private List<String> errors = new ArrayList<>();
+  private int base; // Position the next load is lexed at
+  private int reused;
+  private int recomputed;
+
+  // A top-level statement as of the last load that evaluated it.
+  private static class Entry {
+    final String source; // Without trailing whitespace
+    final int origin; // Position it was lexed at
+    int start; // Offset in the source of the last load that had it
+    final Program program; // What was evaluated, optimized and resolved
+    final Entry[] reads; // Statements that bound the names it reads, null for a name unbound
+    final Obj result;
+    final Obj value; // Bound by it, if it's a let
+
+    Entry(String source, int origin, int start, Program program, Entry[] reads, Obj result,
+        Obj value) {
+      this.source = source;
+      this.origin = origin;
+      this.start = start;
+      this.program = program;
+      this.reads = reads;
+      this.result = result;
+      this.value = value;
+    }
+  }
+
+  // Parses and evaluates source, reusing what it can from the last load. Returns the result of
+  // the script, as Evaluator.eval would.
+  public Obj load(String source) {
+    if (base > Integer.MAX_VALUE - source.length() - 1) {
+      // Out of positions, so nothing lexed at the ones given so far is reused
+      base = 0;
+      entries = new ArrayList<>();
+    }
+    int position = base;
+    base += source.length() + 1;
+    Parser p = new Parser(new Lexer(source, 0, position));
+    program = p.parseProgram();
+    errors = p.getErrors();
+    LineMap lines = program.getLines();
+    Obj result = run(source, position);
+    program.setLines(moved(lines, position));
+    return result;
+  }
+
+  // Evaluates the program of source, lexed at position.
+  private Obj run(String source, int position) {
+    Map<String, List<Entry>> previous = new HashMap<>();
+    for (Entry e : entries) {
+      previous.computeIfAbsent(e.source, k -> new ArrayList<>()).add(e);
+    }
+    Map<String, Entry> bound = new HashMap<>(); // Latest binding of each name
+    entries = new ArrayList<>();
+    scope = new Scope();
+    env = new Environment();
+    reused = 0;
+    recomputed = 0;
+
+    List<Statement> statements = program.getStatements();
+    Obj result = Evaluator.NIL;
+    for (int i = 0; i < statements.size(); i++) {
+      Statement st = statements.get(i);
+      Reads r = new Reads(st);
+      if (!r.simple) {
+        recomputed += statements.size() - i;
+        return evaluate(statements.subList(i, statements.size()));
+      }
+      Entry[] reads = new Entry[r.names.size()];
+      int n = 0;
+      for (String name : r.names) {
+        reads[n++] = bound.get(name);
+      }
+      int start = st.getPosition() - position;
+      int end = i + 1 < statements.size() ? statements.get(i + 1).getPosition() - position
+          : source.length();
+      String text = trimTrailing(source.substring(start, end));
+
+      Entry e = take(previous.get(text), reads);
+      if (e != null) {
+        reuse(e, start);
+        reused++;
+      } else {
+        recomputed++;
+        Program single = evaluated(statements.subList(i, i + 1));
+        Obj value = Evaluator.eval(single, env);
+        if (value instanceof Except) {
+          return value;
+        }
+        Obj let = null;
+        if (st instanceof LetStatement) {
+          let = env.get(0, ((LetStatement)single.getStatements().get(0)).getSlot());
+        }
+        e = new Entry(text, st.getPosition(), start, single, reads, value, let);
+      }
+      entries.add(e);
+      if (st instanceof LetStatement) {
+        bound.put(((LetStatement)st).getName().getValue(), e);
+      }
+      result = e.result;
+    }
+    return result;
+  }
+
+  // First of candidates that reads the same bindings, which is taken out of them, or null.
+  private static Entry take(List<Entry> candidates, Entry[] reads) {
+    if (candidates == null) {
+      return null;
+    }
+    for (int i = 0; i < candidates.size(); i++) {
+      if (Arrays.equals(candidates.get(i).reads, reads)) {
+        return candidates.remove(i);
+      }
+    }
+    return null;
+  }
+
+  private void reuse(Entry e, int start) {
+    e.start = start;
+    if (e.value != null) {
+      LetStatement ls = (LetStatement)e.program.getStatements().get(0);
+      int slot = scope.declare(ls.getName().getValue());
+      env.ensureCapacity(scope.size());
+      env.set(slot, e.value);
+    }
+  }
+
+  // Lines of the load lexed at position, with statements reused from earlier loads where they
+  // are in it.
+  private MovedLines moved(LineMap lines, int position) {
+    int[] origins = new int[entries.size()];
+    int[] starts = new int[entries.size()];
+    int[] lengths = new int[entries.size()];
+    for (int i = 0; i < entries.size(); i++) {
+      Entry e = entries.get(i);
+      origins[i] = e.origin;
+      starts[i] = position + e.start;
+      lengths[i] = e.source.length();
+    }
+    return new MovedLines(lines, origins, starts, lengths);
+  }
+
+  private Obj evaluate(List<Statement> statements) {
+    return Evaluator.eval(evaluated(statements), env);
+  }
+
+  // Statements as a program that is ready to be evaluated in env.
+  private Program evaluated(List<Statement> statements) {
+    Program p = new Program(new ArrayList<>(statements));
+    p.setLines(program.getLines());
+    p = Optimizer.optimize(p);
+    Resolver.resolve(p, scope);
+    return p;
+  }
+
+  private static String trimTrailing(String s) {
+    int end = s.length();
+    while (end > 0 && Character.isWhitespace(s.charAt(end - 1))) {
+      end--;
+    }
+    return s.substring(0, end);
+  }
+
+  // Program of the last load, for positions of errors.
+  public Program getProgram() {
+    return program;
+  }
+
+  // Parse errors of the last load. Statements that parsed are evaluated anyway.
+  public List<String> getErrors() {
+    return errors;
+  }
+
+  // Bindings of the last load, where the REPL evaluates lines typed after it.
+  public Scope getScope() {
+    return scope;
+  }
+
+  public Environment getEnvironment() {
+    return env;
+  }
+
+  // Top-level statements the last load took from the one before without running them.
+  public int getReused() {
+    return reused;
+  }
+
+  // Top-level statements the last load evaluated, including the one that failed, if any.
+  public int getRecomputed() {
+    return recomputed;
+  }
+
+  // Names a top-level statement reads that no function in it binds, in order of first use.
+  private static class Reads {
+    final Set<String> names = new LinkedHashSet<>();
+    boolean simple = true; // Doesn't return at top level, and binds nothing but its own let
+    private final Deque<Set<String>> locals = new ArrayDeque<>(); // Of the functions around
+    private int conditional; // Enclosing ifs within the current function
+
+    Reads(Statement st) {
+      if (st instanceof LetStatement && ((LetStatement)st).getValue() instanceof FunctionLiteral) {
+        // The function is in the scope of its own binding
+        expression(((LetStatement)st).getValue());
+        names.remove(((LetStatement)st).getName().getValue());
+      } else if (st instanceof LetStatement) {
+        expression(((LetStatement)st).getValue());
+      } else {
+        statement(st);
+      }
+    }
+
+    private void statement(Statement st) {
+      if (st instanceof LetStatement) {
+        LetStatement ls = (LetStatement)st;
+        if (locals.isEmpty()) {
+          simple = false; // Nested in a block at top level
+        }
+        boolean recursive = ls.getValue() instanceof FunctionLiteral;
+        if (recursive) {
+          bind(ls.getName().getValue());
+        }
+        expression(ls.getValue());
+        if (!recursive) {
+          bind(ls.getName().getValue());
+        }
+      } else if (st instanceof ReturnStatement) {
+        if (locals.isEmpty()) {
+          simple = false;
+        }
+        expression(((ReturnStatement)st).getValue());
+      } else if (st instanceof ExpressionStatement) {
+        expression(((ExpressionStatement)st).getExpression());
+      }
+    }
+
+    private void block(BlockStatement bs) {
+      if (bs != null) {
+        for (Statement st : bs.getStatements()) {
+          statement(st);
+        }
+      }
+    }
+
+    // Only bindings made on every path hide outer ones, as in the Resolver.
+    private void bind(String name) {
+      if (!locals.isEmpty() && conditional == 0) {
+        locals.peek().add(name);
+      }
+    }
+
+    private void expression(Expression e) {
+      if (e instanceof Identifier) {
+        String name = ((Identifier)e).getValue();
+        for (Set<String> l : locals) {
+          if (l.contains(name)) {
+            return;
+          }
+        }
+        names.add(name);
+      } else if (e instanceof PrefixExpression) {
+        expression(((PrefixExpression)e).getRight());
+      } else if (e instanceof InfixExpression) {
+        expression(((InfixExpression)e).getLeft());
+        expression(((InfixExpression)e).getRight());
+      } else if (e instanceof IfExpression) {
+        IfExpression ie = (IfExpression)e;
+        expression(ie.getCondition());
+        conditional++;
+        block(ie.getConsequence());
+        block(ie.getAlternative());
+        conditional--;
+      } else if (e instanceof FunctionLiteral) {
+        FunctionLiteral fl = (FunctionLiteral)e;
+        Set<String> params = new HashSet<>();
+        if (fl.getParameters() != null) {
+          for (Identifier param : fl.getParameters()) {
+            params.add(param.getValue());
+          }
+        }
+        int enclosing = conditional;
+        conditional = 0;
+        locals.push(params);
+        block(fl.getBody());
+        locals.pop();
+        conditional = enclosing;
+      } else if (e instanceof CallExpression) {
+        CallExpression ce = (CallExpression)e;
+        expression(ce.getFunction());
+        if (ce.getArguments() != null) {
+          for (Expression arg : ce.getArguments()) {
+            expression(arg);
+          }
+        }
+      }
+    }
+  }
+}
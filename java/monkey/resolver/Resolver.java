@@ -0,0 +1,237 @@
+package monkey.resolver;
+
+import java.util.List;
+import java.util.Arrays;
+
+import monkey.ast.Program;
+import monkey.ast.Statement;
+import monkey.ast.Expression;
+import monkey.ast.ExpressionStatement;
+import monkey.ast.LetStatement;
+import monkey.ast.ReturnStatement;
+import monkey.ast.PrefixExpression;
+import monkey.ast.InfixExpression;
+import monkey.ast.IfExpression;
+import monkey.ast.Identifier;
+import monkey.ast.FunctionLiteral;
+import monkey.ast.CallExpression;
+
+/*
+ * Assigns every variable a frame slot ahead of time, so Evaluator can load it by
+ * (depth, slot) instead of by name. Depth counts function boundaries: a function runs in a
+ * fresh frame whose outer frame is the one it was created in.
+ *
+ * Every let statement and parameter gets a slot of its own, even when it rebinds a name. There
+ * are no loops, so each slot is written at most once per frame, and a use only ever refers to
+ * bindings made textually before it. That is what lets a closure share its enclosing frame
+ * instead of copying it: bindings made after the closure was created land in slots the closure
+ * never reads.
+ *
+ * Blocks don't open scopes, so a let inside an if branch may not have run when a later use is
+ * reached. Such a use gets several candidate addresses, latest binding first; the evaluator
+ * takes the first one that is bound.
+ *
+ * The resolver also marks calls in tail position, whose value becomes the result of the
+ * enclosing function, so the evaluator can run them without growing the Java stack, and counts
+ * the nodes of each function body for Budget. Returns nested in an operand or in the value of a
+ * let or return are marked as well: the rest of them end their function, those give their value
+ * wrapped in a ReturnValue to the expression around them.
+ *
+ * Last, it finds the functions whose calls are worth remembering by Memo: those that take
+ * arguments and make calls of their own. Every function is pure, so any of them could be
+ * remembered, but a lookup costs more than evaluating a body without calls.
+ *
+ * And it estimates what evaluating each expression costs, for Parallel: a node costs 1, and a
+ * call CALL_COST on top of that, since what it runs is only known at run time. An if costs its
+ * condition and its dearer branch. Infix expressions and calls are marked with the cost of their
+ * operands, and functions with whether their body has any operands worth splitting.
+ */
+public class Resolver {
+  public static final int CALL_COST = 1000;
+
+  private Scope scope;
+  private int conditional; // Number of enclosing if branches within the current function
+  private int functions; // Number of enclosing function literals
+  private int operands; // Number of enclosing operands, let and return values in this function
+  private int nodes; // Nodes seen so far in the current function body
+  private int literals; // Function literals seen so far in the current function body
+  private int calls; // Calls seen so far in the current function body
+  private int splits; // Expressions seen so far in the current function body worth splitting
+
+  private Resolver(Scope scope) {
+    this.scope = scope;
+  }
+
+  public static void resolve(Program program, Scope globals) {
+    Resolver r = new Resolver(globals);
+    r.resolveStatements(program.getStatements(), false);
+    program.setFrameSize(globals.size());
+  }
+
+  // Returns the estimated cost of evaluating statements, as does each resolve method below.
+  private long resolveStatements(List<Statement> statements, boolean tail) {
+    nodes += statements.size();
+    long cost = statements.size();
+    for (int i = 0; i < statements.size(); i++) {
+      Statement st = statements.get(i);
+      if (st instanceof LetStatement) {
+        cost += resolveLetStatement((LetStatement)st);
+      } else if (st instanceof ReturnStatement) {
+        ReturnStatement rs = (ReturnStatement)st;
+        rs.setNested(operands > 0);
+        boolean returned = functions > 0 && operands == 0;
+        operands++;
+        cost += resolveExpression(rs.getValue(), returned);
+        operands--;
+      } else if (st instanceof ExpressionStatement) {
+        cost += resolveExpression(((ExpressionStatement)st).getExpression(),
+            tail && i == statements.size() - 1);
+      }
+    }
+    return cost;
+  }
+
+  private long resolveLetStatement(LetStatement ls) {
+    String name = ls.getName().getValue();
+    Scope.Binding b;
+    long cost;
+    if (ls.getValue() instanceof FunctionLiteral) {
+      // The function shares the frame this binding lands in, which makes recursion work.
+      b = scope.define(name, conditional == 0);
+      ((FunctionLiteral)ls.getValue()).setName(name);
+      cost = resolveOperand(ls.getValue());
+    } else {
+      cost = resolveOperand(ls.getValue());
+      b = scope.define(name, conditional == 0);
+    }
+    ls.setSlot(b.slot);
+    return cost;
+  }
+
+  private long resolveExpression(Expression e, boolean tail) {
+    if (e == null) {
+      return 0;
+    }
+    nodes++;
+    long cost = 1;
+    if (e instanceof Identifier) {
+      Identifier id = (Identifier)e;
+      id.setAddresses(lookup(id.getValue()));
+    } else if (e instanceof PrefixExpression) {
+      cost += resolveOperand(((PrefixExpression)e).getRight());
+    } else if (e instanceof InfixExpression) {
+      InfixExpression ie = (InfixExpression)e;
+      long left = resolveOperand(ie.getLeft());
+      long right = resolveOperand(ie.getRight());
+      ie.setCost(split(Math.min(left, right)));
+      cost += left + right;
+    } else if (e instanceof IfExpression) {
+      IfExpression ie = (IfExpression)e;
+      cost += resolveOperand(ie.getCondition());
+      conditional++;
+      long branch = resolveStatements(ie.getConsequence().getStatements(), tail);
+      if (ie.getAlternative() != null) {
+        branch = Math.max(branch, resolveStatements(ie.getAlternative().getStatements(), tail));
+      }
+      cost += branch;
+      conditional--;
+    } else if (e instanceof FunctionLiteral) {
+      literals++;
+      resolveFunctionLiteral((FunctionLiteral)e);
+    } else if (e instanceof CallExpression) {
+      CallExpression ce = (CallExpression)e;
+      calls++;
+      ce.setTail(tail);
+      cost += CALL_COST + resolveOperand(ce.getFunction());
+      // Splitting arguments only pays if at least two of them are dear, so a call is marked
+      // with the second highest cost among them
+      long highest = 0;
+      long second = 0;
+      if (ce.getArguments() != null) {
+        for (Expression arg : ce.getArguments()) {
+          long c = resolveOperand(arg);
+          if (c > highest) {
+            second = highest;
+            highest = c;
+          } else if (c > second) {
+            second = c;
+          }
+          cost += c;
+        }
+      }
+      ce.setCost(split(second));
+    }
+    return cost;
+  }
+
+  // Resolves e, whose value is used by the node around it.
+  private long resolveOperand(Expression e) {
+    operands++;
+    long cost = resolveExpression(e, false);
+    operands--;
+    return cost;
+  }
+
+  // Cost of operands as it's kept in nodes, which also counts them if they're worth splitting.
+  private int split(long cost) {
+    if (cost >= CALL_COST) {
+      splits++;
+    }
+    return (int)Math.min(cost, Integer.MAX_VALUE);
+  }
+
+  private void resolveFunctionLiteral(FunctionLiteral fl) {
+    Scope enclosing = scope;
+    int enclosingConditional = conditional;
+    int enclosingOperands = operands;
+    int enclosingNodes = nodes;
+    int enclosingLiterals = literals;
+    int enclosingCalls = calls;
+    int enclosingSplits = splits;
+    scope = new Scope(enclosing);
+    conditional = 0;
+    operands = 0;
+    functions++;
+    nodes = 0;
+    literals = 0;
+    calls = 0;
+    splits = 0;
+
+    if (fl.getParameters() != null) {
+      for (Identifier param : fl.getParameters()) {
+        scope.define(param.getValue(), true);
+      }
+    }
+    resolveStatements(fl.getBody().getStatements(), true);
+    fl.setFrameSize(scope.size());
+    fl.setSize(nodes);
+    fl.setFunctions(literals);
+    fl.setMemoizable(fl.getParameters() != null && !fl.getParameters().isEmpty() && calls > 0);
+    fl.setSplittable(splits > 0);
+
+    scope = enclosing;
+    conditional = enclosingConditional;
+    operands = enclosingOperands;
+    functions--;
+    nodes = enclosingNodes;
+    literals = enclosingLiterals;
+    calls = enclosingCalls;
+    splits = enclosingSplits;
+  }
+
+  private int[] lookup(String name) {
+    int[] addresses = new int[0];
+    int depth = 0;
+    for (Scope s = scope; s != null; s = s.getParent(), depth++) {
+      for (Scope.Binding b = s.lookup(name); b != null; b = b.previous) {
+        addresses = Arrays.copyOf(addresses, addresses.length + 2);
+        addresses[addresses.length - 2] = depth;
+        addresses[addresses.length - 1] = b.slot;
+        if (b.definite) {
+          return addresses;
+        }
+      }
+    }
+    return addresses;
+  }
+}
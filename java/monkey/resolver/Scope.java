@@ -0,0 +1,54 @@
+package monkey.resolver;
+
+import java.util.Map;
+import java.util.HashMap;
+
+public class Scope {
+  private Scope parent;
+  private Map<String, Binding> bindings; // Latest binding of each name
+  private int size;
+
+  public Scope(Scope parent) {
+    this.parent = parent;
+    this.bindings = new HashMap<>();
+  }
+
+  public Scope() {
+    this(null);
+  }
+
+  public Scope getParent() {
+    return parent;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  // Binds name ahead of the program resolved in this scope, like its inputs.
+  public int declare(String name) {
+    return define(name, true).slot;
+  }
+
+  Binding lookup(String name) {
+    return bindings.get(name);
+  }
+
+  Binding define(String name, boolean definite) {
+    Binding b = new Binding(size++, definite, bindings.get(name));
+    bindings.put(name, b);
+    return b;
+  }
+
+  static class Binding {
+    final int slot;
+    final boolean definite; // Bound on every path that reaches a later use
+    final Binding previous; // Earlier binding of the same name in this scope
+
+    Binding(int slot, boolean definite, Binding previous) {
+      this.slot = slot;
+      this.definite = definite;
+      this.previous = previous;
+    }
+  }
+}
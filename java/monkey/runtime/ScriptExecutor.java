@@ -0,0 +1,204 @@
+package monkey.runtime;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.evaluator.Globals;
+import monkey.evaluator.Budget;
+
+/*
+ * Runs many independent evaluations at once, each on a thread of its own. On a JVM with virtual
+ * threads every evaluation gets a virtual one, so tens of thousands of them can be in flight;
+ * older JVMs fall back to a pool of platform threads.
+ *
+ * Evaluations share the bindings of globals and get inputs of their own, see Globals for what
+ * makes that safe. The future of an evaluation completes with its result, which may be an
+ * Except, or exceptionally with TimeoutException once its deadline passes. A timed out
+ * evaluation is interrupted, and stops at its next function call. Given a budget, each
+ * evaluation gets a fresh one with the same caps.
+ *
+ * Latency is measured from submission to completion, in microseconds. Throughput is sampled
+ * every second, in completed evaluations per second.
+ */
+public class ScriptExecutor implements AutoCloseable {
+  private final Globals globals;
+  private final Budget limits; // Null if evaluations are unlimited
+  private final ExecutorService workers;
+  private final boolean virtual;
+  private final ScheduledExecutorService timer;
+
+  private final AtomicLong submitted = new AtomicLong();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong timedOut = new AtomicLong();
+  private final Histogram latency = new Histogram();
+  private final Histogram throughput = new Histogram();
+  private long lastCompleted; // Used by timer thread only
+
+  public ScriptExecutor(Globals globals) {
+    this(globals, null);
+  }
+
+  public ScriptExecutor(Globals globals, Budget limits) {
+    ExecutorService virtualWorkers = newVirtualThreadPerTaskExecutor();
+    this.globals = globals;
+    this.limits = limits;
+    this.virtual = virtualWorkers != null;
+    this.workers = virtual ? virtualWorkers
+        : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "monkey-executor-timer");
+      t.setDaemon(true);
+      return t;
+    });
+    timer.scheduleAtFixedRate(this::sampleThroughput, 1, 1, TimeUnit.SECONDS);
+  }
+
+  // Executors.newVirtualThreadPerTaskExecutor if this JVM has it, null otherwise.
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  public CompletableFuture<Obj> submit(Program program, Map<String, Obj> inputs) {
+    return submit(program, inputs, 0, TimeUnit.NANOSECONDS);
+  }
+
+  // Runs program with inputs, giving up after timeout unless it's zero.
+  public CompletableFuture<Obj> submit(Program program, Map<String, Obj> inputs, long timeout,
+      TimeUnit unit) {
+    submitted.incrementAndGet();
+    Task task = new Task(program, inputs);
+    task.future = workers.submit(task);
+    if (timeout > 0) {
+      ScheduledFuture<?> deadline = timer.schedule(task::timeOut, timeout, unit);
+      task.result.whenComplete((value, e) -> deadline.cancel(false));
+    }
+    return task.result;
+  }
+
+  private class Task implements Runnable {
+    final Program program;
+    final Map<String, Obj> inputs;
+    final long start = System.nanoTime();
+    final CompletableFuture<Obj> result = new CompletableFuture<>();
+    final AtomicBoolean finished = new AtomicBoolean();
+    volatile Future<?> future;
+
+    Task(Program program, Map<String, Obj> inputs) {
+      this.program = program;
+      this.inputs = inputs;
+    }
+
+    @Override
+    public void run() {
+      if (finished.get()) {
+        return; // Timed out while waiting for a thread
+      }
+      Obj value;
+      try {
+        value = limits != null ? limits.fresh().run(() -> globals.eval(program, inputs))
+            : globals.eval(program, inputs);
+      } catch (RuntimeException | StackOverflowError e) {
+        finish(failed, null, e);
+        return;
+      }
+      finish(completed, value, null);
+    }
+
+    void timeOut() {
+      if (finish(timedOut, null, new TimeoutException())) {
+        future.cancel(true);
+      }
+    }
+
+    // Counts and completes the task, unless it's finished already. Counters are updated first,
+    // so they include every task whose future is done.
+    boolean finish(AtomicLong counter, Obj value, Throwable e) {
+      if (!finished.compareAndSet(false, true)) {
+        return false;
+      }
+      latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+      counter.incrementAndGet();
+      if (e != null) {
+        result.completeExceptionally(e);
+      } else {
+        result.complete(value);
+      }
+      return true;
+    }
+  }
+
+  public boolean usesVirtualThreads() {
+    return virtual;
+  }
+
+  public long getSubmitted() {
+    return submitted.get();
+  }
+
+  public long getCompleted() {
+    return completed.get();
+  }
+
+  public long getFailed() {
+    return failed.get();
+  }
+
+  public long getTimedOut() {
+    return timedOut.get();
+  }
+
+  // Microseconds from submission to completion of each evaluation.
+  public Histogram getLatency() {
+    return latency;
+  }
+
+  // Evaluations completed in each second.
+  public Histogram getThroughput() {
+    return throughput;
+  }
+
+  private void sampleThroughput() {
+    long c = completed.get();
+    throughput.record(c - lastCompleted);
+    lastCompleted = c;
+  }
+
+  // Waits for submitted evaluations to finish. If the waiting thread is interrupted, it stops
+  // waiting and keeps its interrupt flag set. Deadlines of evaluations still running fire anyway,
+  // and closing again waits for them.
+  @Override
+  public void close() {
+    workers.shutdown();
+    try {
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    timer.shutdownNow();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("submitted=%d completed=%d failed=%d timedOut=%d\nlatency(us): %s\n"
+        + "throughput(/s): %s", getSubmitted(), getCompleted(), getFailed(), getTimedOut(),
+        latency, throughput);
+  }
+}
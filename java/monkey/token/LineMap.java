@@ -0,0 +1,21 @@
+package monkey.token;
+
+// Lines of one source. A position is a single int offset, shared by token and node alike, and
+// only becomes a line and column when something gets reported. LineStarts is what the lexer
+// fills in, the others look positions up in one.
+public interface LineMap {
+  // Number of lines seen so far.
+  int size();
+
+  // Offset where line starts, from 1.
+  int start(int line);
+
+  // Line of position, from 1.
+  int line(int position);
+
+  // Column of position in its line, from 1.
+  int column(int position);
+
+  // Like 3:11.
+  String format(int position);
+}
@@ -0,0 +1,52 @@
+package monkey.token;
+
+import java.util.Arrays;
+
+// Offsets where the lines of one source start. The lexer fills it in as it skips newlines, which
+// costs an int per line of the source.
+public class LineStarts implements LineMap {
+  private int[] starts = new int[16];
+  private int size = 1;
+
+  public LineStarts() {
+    this(0);
+  }
+
+  // Lines of a source whose first char is at position first.
+  public LineStarts(int first) {
+    starts[0] = first;
+  }
+
+  public void addLineStart(int offset) {
+    if (size == starts.length) {
+      starts = Arrays.copyOf(starts, size * 2);
+    }
+    starts[size++] = offset;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int start(int line) {
+    return starts[line - 1];
+  }
+
+  @Override
+  public int line(int offset) {
+    int i = Arrays.binarySearch(starts, 0, size, offset);
+    return i >= 0 ? i + 1 : -i - 1;
+  }
+
+  @Override
+  public int column(int offset) {
+    return offset - starts[line(offset) - 1] + 1;
+  }
+
+  @Override
+  public String format(int offset) {
+    return line(offset) + ":" + column(offset);
+  }
+}
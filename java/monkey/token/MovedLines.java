@@ -0,0 +1,73 @@
+package monkey.token;
+
+import java.util.Arrays;
+
+// Lines of a source some parts of which were lexed at other positions than where they are now,
+// like statements reused from an earlier version of the source. Nodes of such a part keep the
+// positions they were given, and those are moved to where the part is only when looked up.
+// Positions outside of parts are positions of lines as they are. Parts must not overlap, except
+// that one may start where another one ends.
+public class MovedLines implements LineMap {
+  private final LineMap lines; // Of the source as it is
+  private final int[] origins; // Sorted
+  private final int[] starts;
+  private final int[] lengths;
+
+  // Part i of the source, lengths[i] chars long, was lexed at origins[i] and starts at starts[i]
+  // now.
+  public MovedLines(LineMap lines, int[] origins, int[] starts, int[] lengths) {
+    this.lines = lines;
+    long[] order = new long[origins.length];
+    for (int i = 0; i < origins.length; i++) {
+      order[i] = (long)origins[i] << 32 | i;
+    }
+    Arrays.sort(order);
+    this.origins = new int[order.length];
+    this.starts = new int[order.length];
+    this.lengths = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      int part = (int)order[i];
+      this.origins[i] = origins[part];
+      this.starts[i] = starts[part];
+      this.lengths[i] = lengths[part];
+    }
+  }
+
+  // Where position is in the source as it is. A part is taken to go on to where it ends, so
+  // that the token after it has a position too.
+  public int offset(int position) {
+    int i = Arrays.binarySearch(origins, position);
+    if (i < 0) {
+      i = -i - 2; // Last part that starts before it
+    }
+    if (i >= 0 && position <= origins[i] + lengths[i]) {
+      return position - origins[i] + starts[i];
+    }
+    return position;
+  }
+
+  @Override
+  public int size() {
+    return lines.size();
+  }
+
+  @Override
+  public int start(int line) {
+    return lines.start(line);
+  }
+
+  @Override
+  public int line(int position) {
+    return lines.line(offset(position));
+  }
+
+  @Override
+  public int column(int position) {
+    return lines.column(offset(position));
+  }
+
+  @Override
+  public String format(int position) {
+    return lines.format(offset(position));
+  }
+}
@@ -0,0 +1,15 @@
+package monkey.vm;
+
+import monkey.object.Closure;
+
+class Frame {
+  Closure closure;
+  int ip;
+  int basePointer;
+
+  void reset(Closure closure, int basePointer) {
+    this.closure = closure;
+    this.ip = 0;
+    this.basePointer = basePointer;
+  }
+}
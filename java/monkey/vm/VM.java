@@ -0,0 +1,373 @@
+package monkey.vm;
+
+import java.util.List;
+import java.util.Arrays;
+
+import monkey.ast.Operator;
+import monkey.compiler.Bytecode;
+import monkey.compiler.Opcode;
+import monkey.compiler.Symbol;
+import monkey.object.Obj;
+import monkey.object.Int;
+import monkey.object.Except;
+import monkey.object.ReturnValue;
+import monkey.object.Closure;
+import monkey.object.CompiledFunction;
+import monkey.evaluator.Evaluator;
+import monkey.evaluator.Budget;
+
+public class VM {
+  private static final int INITIAL_STACK_SIZE = 1024;
+  private static final int INITIAL_FRAMES = 64;
+  private static final Symbol.Scope[] SCOPES = Symbol.Scope.values();
+
+  private Obj[] constants;
+  private Obj[] globals;
+  private List<String> globalNames;
+
+  private Obj[] stack;
+  private int sp; // Points to the next free slot
+  private Frame[] frames;
+  private int framesIndex;
+  private Budget budget; // Null if runs are unlimited
+
+  public VM(Bytecode bytecode, Obj[] globals) {
+    this.constants = bytecode.getConstants().toArray(new Obj[0]);
+    this.globals = globals;
+    this.globalNames = bytecode.getGlobalNames();
+
+    this.stack = new Obj[INITIAL_STACK_SIZE];
+    this.frames = new Frame[INITIAL_FRAMES];
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] = new Frame();
+    }
+    CompiledFunction main = new CompiledFunction(bytecode.getInstructions(), 0, 0, new String[0],
+        new String[0], "main");
+    frames[0].reset(new Closure(main, new Obj[0]), 0);
+    framesIndex = 1;
+  }
+
+  public VM(Bytecode bytecode) {
+    this(bytecode, new Obj[bytecode.getGlobalNames().size()]);
+  }
+
+  public void setBudget(Budget budget) {
+    this.budget = budget;
+  }
+
+  public static Obj[] growGlobals(Obj[] globals, Bytecode bytecode) {
+    int size = bytecode.getGlobalNames().size();
+    if (globals.length >= size) {
+      return globals;
+    }
+    return Arrays.copyOf(globals, Math.max(size, globals.length * 2));
+  }
+
+  public Obj run() {
+    Frame frame = frames[framesIndex - 1];
+    Closure closure = frame.closure;
+    int[] ins = closure.getFn().getInstructions();
+    int ip = frame.ip;
+    int bp = frame.basePointer;
+
+    while (true) {
+      int op = ins[ip++];
+      switch (op) {
+        case Opcode.CONSTANT:
+          push(constants[ins[ip++]]);
+          break;
+        case Opcode.TRUE:
+          push(Evaluator.nativeBool(true));
+          break;
+        case Opcode.FALSE:
+          push(Evaluator.nativeBool(false));
+          break;
+        case Opcode.NIL:
+          push(Evaluator.NIL);
+          break;
+        case Opcode.POP:
+          sp--;
+          break;
+        case Opcode.ADD:
+        case Opcode.SUB:
+        case Opcode.MUL:
+        case Opcode.DIV:
+        case Opcode.EQ:
+        case Opcode.NOT_EQ:
+        case Opcode.LT:
+        case Opcode.GT: {
+          Obj right = stack[--sp];
+          Obj left = stack[--sp];
+          Obj result = executeBinaryOperation(op, left, right);
+          if (result instanceof Except) {
+            return result;
+          }
+          stack[sp++] = result;
+          break;
+        }
+        case Opcode.MINUS:
+        case Opcode.BANG: {
+          Obj result = Evaluator.evalPrefixExpression(
+              op == Opcode.MINUS ? Operator.MINUS : Operator.BANG, stack[sp - 1]);
+          if (result instanceof Except) {
+            return result;
+          }
+          stack[sp - 1] = result;
+          break;
+        }
+        case Opcode.JUMP:
+          ip = ins[ip];
+          break;
+        case Opcode.JUMP_IF_FALSE:
+          if (Evaluator.isTruthy(stack[--sp])) {
+            ip++;
+          } else {
+            ip = ins[ip];
+          }
+          break;
+        case Opcode.GET_GLOBAL: {
+          int index = ins[ip++];
+          Obj value = globals[index];
+          if (value == null) {
+            return notFound(globalNames.get(index));
+          }
+          push(value);
+          break;
+        }
+        case Opcode.SET_GLOBAL:
+          globals[ins[ip++]] = stack[--sp];
+          break;
+        case Opcode.GET_LOCAL: {
+          int index = ins[ip++];
+          Obj value = stack[bp + index];
+          if (value == null) {
+            return notFound(closure.getFn().getLocalNames()[index]);
+          }
+          push(value);
+          break;
+        }
+        case Opcode.SET_LOCAL:
+          stack[bp + ins[ip++]] = stack[--sp];
+          break;
+        case Opcode.GET_FREE: {
+          int index = ins[ip++];
+          Obj value = closure.getFree()[index];
+          if (value == null) {
+            return notFound(closure.getFn().getFreeNames()[index]);
+          }
+          push(value);
+          break;
+        }
+        case Opcode.CURRENT_CLOSURE:
+          push(closure);
+          break;
+        case Opcode.GET_CHAIN: {
+          int count = ins[ip];
+          Obj value = loadChain(ins, ip, closure, bp);
+          if (value == null) {
+            return notFound(nameOf(ins[ip + 1], ins[ip + 2], closure));
+          }
+          ip += 1 + 2 * count;
+          push(value);
+          break;
+        }
+        case Opcode.UNDEFINED:
+          return constants[ins[ip]];
+        case Opcode.CLOSURE: {
+          CompiledFunction fn = (CompiledFunction)constants[ins[ip++]];
+          Obj[] free = new Obj[ins[ip++]];
+          for (int i = 0; i < free.length; i++) {
+            free[i] = loadChain(ins, ip, closure, bp);
+            ip += 1 + 2 * ins[ip];
+          }
+          if (budget != null) {
+            Except except = budget.allocate(Budget.CLOSURE_BYTES + Budget.SLOT_BYTES * free.length);
+            if (except != null) {
+              return except;
+            }
+          }
+          push(new Closure(fn, free));
+          break;
+        }
+        case Opcode.CALL: {
+          int argc = ins[ip++];
+          Obj callee = stack[sp - 1 - argc];
+          if (!(callee instanceof Closure)) {
+            return new Except(String.format("not a function: %s", callee.typeName()));
+          }
+          Closure cl = (Closure)callee;
+          CompiledFunction fn = cl.getFn();
+          if (argc < fn.getNumParameters()) {
+            return new Except(String.format("wrong number of arguments: want=%d, got=%d",
+                  fn.getNumParameters(), argc));
+          }
+          if (budget != null) {
+            Except except = budget.call(framesIndex, fn.getInstructions().length,
+                Budget.FRAME_BYTES + Budget.SLOT_BYTES * fn.getNumLocals());
+            if (except != null) {
+              return except;
+            }
+          }
+          frame.ip = ip;
+          frame = pushFrame(cl, sp - argc);
+          closure = cl;
+          ins = fn.getInstructions();
+          ip = 0;
+          bp = frame.basePointer;
+          break;
+        }
+        case Opcode.RETURN_VALUE: {
+          Obj value = stack[--sp];
+          if (framesIndex == 1) {
+            return value;
+          }
+          framesIndex--;
+          sp = bp - 1;
+          stack[sp++] = value;
+          frame = frames[framesIndex - 1];
+          closure = frame.closure;
+          ins = closure.getFn().getInstructions();
+          ip = frame.ip;
+          bp = frame.basePointer;
+          break;
+        }
+        case Opcode.WRAP_RETURN:
+          stack[sp - 1] = new ReturnValue(stack[sp - 1]);
+          break;
+        case Opcode.UNWRAP_RETURN:
+          if (stack[sp - 1] instanceof ReturnValue) {
+            stack[sp - 1] = ((ReturnValue)stack[sp - 1]).getValue();
+          }
+          break;
+        case Opcode.JUMP_IF_RETURN:
+          if (stack[sp - 1] instanceof ReturnValue) {
+            ip = ins[ip];
+          } else {
+            ip++;
+          }
+          break;
+        default:
+          throw new IllegalStateException("unknown opcode: " + Opcode.name(op));
+      }
+    }
+  }
+
+  private Obj executeBinaryOperation(int op, Obj left, Obj right) {
+    if (left instanceof Int && right instanceof Int) {
+      long l = ((Int)left).getValue();
+      long r = ((Int)right).getValue();
+      switch (op) {
+        case Opcode.ADD:
+          return Int.valueOf(l + r);
+        case Opcode.SUB:
+          return Int.valueOf(l - r);
+        case Opcode.MUL:
+          return Int.valueOf(l * r);
+        case Opcode.DIV:
+          return Int.valueOf(l / r);
+        case Opcode.EQ:
+          return Evaluator.nativeBool(l == r);
+        case Opcode.NOT_EQ:
+          return Evaluator.nativeBool(l != r);
+        case Opcode.LT:
+          return Evaluator.nativeBool(l < r);
+        case Opcode.GT:
+          return Evaluator.nativeBool(l > r);
+      }
+    }
+    return Evaluator.evalInfixExpression(operator(op), left, right);
+  }
+
+  private static Operator operator(int op) {
+    switch (op) {
+      case Opcode.ADD:
+        return Operator.PLUS;
+      case Opcode.SUB:
+        return Operator.MINUS;
+      case Opcode.MUL:
+        return Operator.ASTERISK;
+      case Opcode.DIV:
+        return Operator.SLASH;
+      case Opcode.EQ:
+        return Operator.EQ;
+      case Opcode.NOT_EQ:
+        return Operator.NOT_EQ;
+      case Opcode.LT:
+        return Operator.LT;
+      default:
+        return Operator.GT;
+    }
+  }
+
+  private Obj loadChain(int[] ins, int ip, Closure closure, int bp) {
+    int count = ins[ip];
+    for (int i = 0; i < count; i++) {
+      int index = ins[ip + 2 + 2 * i];
+      Obj value;
+      switch (SCOPES[ins[ip + 1 + 2 * i]]) {
+        case GLOBAL:
+          value = globals[index];
+          break;
+        case LOCAL:
+          value = stack[bp + index];
+          break;
+        case FREE:
+          value = closure.getFree()[index];
+          break;
+        default:
+          value = closure;
+          break;
+      }
+      if (value != null) {
+        return value;
+      }
+    }
+    return null;
+  }
+
+  private String nameOf(int scope, int index, Closure closure) {
+    switch (SCOPES[scope]) {
+      case GLOBAL:
+        return globalNames.get(index);
+      case LOCAL:
+        return closure.getFn().getLocalNames()[index];
+      default:
+        return closure.getFn().getFreeNames()[index];
+    }
+  }
+
+  private Frame pushFrame(Closure cl, int basePointer) {
+    if (framesIndex == frames.length) {
+      frames = Arrays.copyOf(frames, frames.length * 2);
+      for (int i = framesIndex; i < frames.length; i++) {
+        frames[i] = new Frame();
+      }
+    }
+    CompiledFunction fn = cl.getFn();
+    int top = basePointer + fn.getNumLocals();
+    ensureStack(top);
+    // Unbound locals must read as null, and extra arguments are ignored.
+    Arrays.fill(stack, basePointer + fn.getNumParameters(), Math.max(top, sp), null);
+    sp = top;
+    Frame frame = frames[framesIndex++];
+    frame.reset(cl, basePointer);
+    return frame;
+  }
+
+  private void push(Obj o) {
+    if (sp == stack.length) {
+      ensureStack(sp + 1);
+    }
+    stack[sp++] = o;
+  }
+
+  private void ensureStack(int size) {
+    if (size > stack.length) {
+      stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+    }
+  }
+
+  private static Except notFound(String name) {
+    return new Except("identifier not found: " + name);
+  }
+}
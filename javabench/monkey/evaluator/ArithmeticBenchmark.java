@@ -0,0 +1,54 @@
+package monkey.evaluator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Environment;
+
+// Integer heavy programs, gc.alloc.rate.norm shows how many Ints are allocated per operation.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArithmeticBenchmark {
+  private Program fib;
+  private Program polynomial;
+
+  @Setup
+  public void setup() {
+    fib = parse("let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } }; fib(15)");
+    polynomial = parse("let poly = fn(x, n, acc) {"
+        + " if (n == 0) { acc } else { poly(x, n - 1, acc + (3 * x * x * x - 2 * x * x + 7 * x - 5) / 4) }"
+        + " }; poly(123456, 1000, 0)");
+  }
+
+  private static Program parse(String input) {
+    return new Parser(new Lexer(input)).parseProgram();
+  }
+
+  @Benchmark
+  public Obj fib() {
+    return Evaluator.eval(fib, new Environment());
+  }
+
+  @Benchmark
+  public Obj polynomial() {
+    return Evaluator.eval(polynomial, new Environment());
+  }
+}
@@ -0,0 +1,53 @@
+package monkey.evaluator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Environment;
+
+// Call heavy program run without a budget, and with one whose caps it never hits.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BudgetBenchmark {
+  @Param({"18", "22"})
+  public int n;
+
+  private Program program;
+
+  @Setup
+  public void setup() {
+    program = new Parser(new Lexer(
+        "let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } }; fib(" + n + ")"))
+        .parseProgram();
+  }
+
+  @Benchmark
+  public Obj unlimited() {
+    return Evaluator.eval(program, new Environment());
+  }
+
+  @Benchmark
+  public Obj budgeted() {
+    Budget budget = new Budget(Long.MAX_VALUE, 10000, Long.MAX_VALUE);
+    return budget.run(() -> Evaluator.eval(program, new Environment()));
+  }
+}
@@ -0,0 +1,56 @@
+package monkey.evaluator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Environment;
+import monkey.workload.Workloads;
+
+// Creates a closure in every call of a recursive function that has `bindings` names in scope.
+// Compare gc.alloc.rate.norm across values of `bindings`.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClosureBenchmark {
+  @Param({"1", "16", "256"})
+  public int bindings;
+
+  private Program program;
+
+  @Setup
+  public void setup() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("let loop = fn(n) {");
+    for (int i = 0; i < bindings; i++) {
+      sb.append(" let v").append(Workloads.name(i)).append(" = n;");
+    }
+    sb.append(" let inc = fn(x) { x + 1 };");
+    sb.append(" if (n == 0) { 0 } else { inc(loop(n - 1)) }");
+    sb.append(" };");
+    sb.append(" loop(200)");
+    program = new Parser(new Lexer(sb.toString())).parseProgram();
+  }
+
+  @Benchmark
+  public Obj closureInRecursion() {
+    return Evaluator.eval(program, new Environment());
+  }
+}
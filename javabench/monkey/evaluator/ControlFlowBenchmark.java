@@ -0,0 +1,68 @@
+package monkey.evaluator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Environment;
+
+// Programs that leave blocks early: returns out of nested ifs, returns out of an operand, and
+// an error thrown from `depth` calls deep.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xss16m")
+public class ControlFlowBenchmark {
+  @Param({"100", "1000"})
+  public int depth;
+
+  private Program returns;
+  private Program nestedReturns;
+  private Program error;
+
+  @Setup
+  public void setup() {
+    returns = parse("let f = fn(n) { if (n > 0) { if (n > 1) { return n * 2; } } 0 };"
+        + " let g = fn(k, acc) { if (k == 0) { return acc; } return g(k - 1, acc + f(k)); };"
+        + " g(" + depth + ", 0)");
+    nestedReturns = parse("let f = fn(n) { let r = if (n > 1) { return n; } else { 0 }; r };"
+        + " let g = fn(k, acc) { if (k == 0) { acc } else { g(k - 1, acc + f(k)) } };"
+        + " g(" + depth + ", 0)");
+    error = parse("let f = fn(n) { if (n == 0) { x } else { 1 + f(n - 1) } }; f(" + depth + ")");
+  }
+
+  private static Program parse(String input) {
+    return new Parser(new Lexer(input)).parseProgram();
+  }
+
+  @Benchmark
+  public Obj returns() {
+    return Evaluator.eval(returns, new Environment());
+  }
+
+  @Benchmark
+  public Obj nestedReturns() {
+    return Evaluator.eval(nestedReturns, new Environment());
+  }
+
+  @Benchmark
+  public Obj error() {
+    return Evaluator.eval(error, new Environment());
+  }
+}
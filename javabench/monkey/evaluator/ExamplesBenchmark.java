@@ -0,0 +1,46 @@
+package monkey.evaluator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Environment;
+import monkey.workload.Workloads;
+
+// Evaluates programs from examples directory, parsed once up front.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExamplesBenchmark {
+  @Param({"closure", "fact", "fib", "funcs", "gcd"})
+  public String example;
+
+  private Program program;
+
+  @Setup
+  public void setup() {
+    program = new Parser(new Lexer(Workloads.example(example))).parseProgram();
+  }
+
+  @Benchmark
+  public Obj eval() {
+    return Evaluator.eval(program, new Environment());
+  }
+}
@@ -0,0 +1,65 @@
+package monkey.evaluator;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Environment;
+import monkey.resolver.Resolver;
+
+// Naive fib, whose two recursive calls are independent, evaluated one after another and split
+// over a pool of `workers` threads.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelBenchmark {
+  @Param({"1", "4"})
+  public int workers;
+
+  private Program fib;
+  private ForkJoinPool pool;
+  private Parallel parallel;
+
+  @Setup
+  public void setup() {
+    fib = new Parser(new Lexer(
+        "let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } }; fib(24)"))
+      .parseProgram();
+    pool = new ForkJoinPool(workers);
+    parallel = new Parallel(pool, Resolver.CALL_COST);
+  }
+
+  @TearDown
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public Obj sequential() {
+    return Evaluator.eval(fib, new Environment());
+  }
+
+  @Benchmark
+  public Obj parallel() {
+    return parallel.run(() -> Evaluator.eval(fib, new Environment()));
+  }
+}
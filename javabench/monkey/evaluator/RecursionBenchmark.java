@@ -0,0 +1,57 @@
+package monkey.evaluator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Environment;
+
+// Recursion `depth` calls deep, both with and without calls in tail position.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xss16m") // Interpreted frames of deep recursion need more stack
+public class RecursionBenchmark {
+  @Param({"100", "1000"})
+  public int depth;
+
+  private Program deep;
+  private Program tail;
+
+  @Setup
+  public void setup() {
+    deep = parse("let sum = fn(n) { if (n == 0) { 0 } else { n + sum(n - 1) } }; sum(" + depth + ")");
+    tail = parse("let sum = fn(n, acc) { if (n == 0) { acc } else { sum(n - 1, acc + n) } };"
+        + " sum(" + depth + ", 0)");
+  }
+
+  private static Program parse(String input) {
+    return new Parser(new Lexer(input)).parseProgram();
+  }
+
+  @Benchmark
+  public Obj deepRecursion() {
+    return Evaluator.eval(deep, new Environment());
+  }
+
+  @Benchmark
+  public Obj tailRecursion() {
+    return Evaluator.eval(tail, new Environment());
+  }
+}
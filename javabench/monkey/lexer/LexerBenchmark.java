@@ -0,0 +1,48 @@
+package monkey.lexer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import monkey.token.Token;
+import monkey.workload.Workloads;
+
+// Tokenizes whole generated source. One operation is one pass over the source.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LexerBenchmark {
+  @Param({"10", "1000"})
+  public int functions;
+
+  private String source;
+
+  @Setup
+  public void setup() {
+    source = Workloads.generate(functions);
+  }
+
+  @Benchmark
+  public void nextToken(Blackhole bh) {
+    Lexer l = new Lexer(source);
+    Token t;
+    do {
+      t = l.nextToken();
+      bh.consume(t);
+    } while (t.getType() != Token.Type.EOF);
+  }
+}
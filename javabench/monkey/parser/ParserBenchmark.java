@@ -0,0 +1,50 @@
+package monkey.parser;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import monkey.lexer.Lexer;
+import monkey.ast.Program;
+import monkey.workload.Workloads;
+
+// Lexes and parses generated source with `functions` top-level functions, one statement after
+// another and split over the common pool.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParserBenchmark {
+  @Param({"10", "1000", "10000"})
+  public int functions;
+
+  private String source;
+
+  @Setup
+  public void setup() {
+    source = Workloads.generate(functions);
+  }
+
+  @Benchmark
+  public Program parseProgram() {
+    return new Parser(new Lexer(source)).parseProgram();
+  }
+
+  @Benchmark
+  public Program parseProgramInParallel() {
+    return new Parser(new Lexer(source)).parseProgram(ForkJoinPool.commonPool());
+  }
+}
@@ -0,0 +1,49 @@
+package monkey.workload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.io.ByteStreams;
+
+public class Workloads {
+  private Workloads() {}
+
+  // Returns source of examples/<name>.mon, which is bundled as a resource.
+  public static String example(String name) {
+    try (InputStream in = Workloads.class.getResourceAsStream("/examples/" + name + ".mon")) {
+      if (in == null) {
+        throw new IllegalArgumentException("no such example: " + name);
+      }
+      return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Generates program with given number of functions, each one called once at the top level.
+  // Uses every kind of token and statement, so it's good for both lexer and parser.
+  public static String generate(int functions) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < functions; i++) {
+      String f = "fun" + name(i);
+      sb.append("let ").append(f).append(" = fn(a, b) {\n");
+      sb.append("  let c = a * 2 + b / 3 - ").append(i).append(";\n");
+      sb.append("  if (c > 10 == !(a < b)) { return c - a; } else { c != -b }\n");
+      sb.append("};\n");
+      sb.append(f).append("(").append(i).append(", fn(x) { x }(7));\n");
+    }
+    return sb.toString();
+  }
+
+  // Identifiers can't contain digits, so numbers are spelled with letters.
+  public static String name(int i) {
+    StringBuilder sb = new StringBuilder();
+    do {
+      sb.append((char)('a' + i % 26));
+      i /= 26;
+    } while (i > 0);
+    return sb.toString();
+  }
+}
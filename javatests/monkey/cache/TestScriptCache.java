@@ -0,0 +1,172 @@
+package monkey.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import com.google.common.io.MoreFiles;
+import com.google.common.primitives.Ints;
+import com.google.common.io.RecursiveDeleteOption;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.ast.LetStatement;
+import monkey.ast.ExpressionStatement;
+import monkey.ast.FunctionLiteral;
+import monkey.object.Environment;
+import monkey.evaluator.Evaluator;
+import monkey.optimizer.Optimizer;
+import monkey.compiler.Bytecode;
+import monkey.compiler.Compiler;
+import monkey.vm.VM;
+
+public class TestScriptCache {
+  private static final String[] PROGRAMS = {
+    "",
+    "5; true; !false; -7",
+    "let x = -9223372036854775807 - 1; x / 3",
+    "let f = fn() { }; f()",
+    "let f = fn(x) { if (x > 1 + 2) { return x; } else { -x } }; f(5) + f(1)",
+    "let f = fn(x) { if (true) { x * (2 + 3) } }; f",
+    "let adder = fn(a) { fn(b) { a + b } }; let addTwo = adder(2); addTwo(3)",
+    "let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } }; fib(15)",
+    "let f = fn() { y }; f()",
+    "let f = fn(x) { x }; f(1, 2)",
+  };
+
+  private Path dir;
+  private Path script;
+
+  @Before
+  public void createDir() throws IOException {
+    dir = Files.createTempDirectory("cache");
+    script = dir.resolve("script.mon");
+  }
+
+  @After
+  public void deleteDir() throws IOException {
+    MoreFiles.deleteRecursively(dir, RecursiveDeleteOption.ALLOW_INSECURE);
+  }
+
+  @Test
+  public void testProgramRoundTrip() throws IOException {
+    for (String input : PROGRAMS) {
+      byte[] source = input.getBytes(StandardCharsets.UTF_8);
+      ScriptCache cache = new ScriptCache(dir.resolve("programs"));
+      assertThat(cache.loadProgram(script, source)).isNull();
+      Program program = parse(input);
+      cache.store(script, source, program, new Compiler().compile(program));
+
+      Program loaded = cache.loadProgram(script, source);
+      assertThat(loaded.toString()).isEqualTo(program.toString());
+      assertThat(eval(loaded)).isEqualTo(eval(parse(input)));
+      MoreFiles.deleteRecursively(dir.resolve("programs"), RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  @Test
+  public void testKeepsFunctionPositions() throws IOException {
+    String input = "let a = 1;\nlet f = fn(x) { x };";
+    byte[] source = input.getBytes(StandardCharsets.UTF_8);
+    ScriptCache cache = new ScriptCache(dir);
+    Program program = parse(input);
+    cache.store(script, source, program, new Compiler().compile(program));
+    LetStatement ls = (LetStatement)cache.loadProgram(script, source).getStatements().get(1);
+    assertThat(((FunctionLiteral)ls.getValue()).getPosition()).isEqualTo(19);
+  }
+
+  @Test
+  public void testKeepsPositions() throws IOException {
+    String input = "let a = 1;\nlet f = fn(x) {\n  x + a\n};\nf(a)";
+    byte[] source = input.getBytes(StandardCharsets.UTF_8);
+    ScriptCache cache = new ScriptCache(dir);
+    Program program = parse(input);
+    cache.store(script, source, program, new Compiler().compile(program));
+    Program loaded = cache.loadProgram(script, source);
+    assertThat(loaded.getLines().size()).isEqualTo(program.getLines().size());
+    assertThat(loaded.getLines().start(5)).isEqualTo(program.getLines().start(5));
+    LetStatement ls = (LetStatement)loaded.getStatements().get(1);
+    assertThat(ls.getPosition()).isEqualTo(11);
+    assertThat(ls.getName().getPosition()).isEqualTo(15);
+    ExpressionStatement es = (ExpressionStatement)
+        ((FunctionLiteral)ls.getValue()).getBody().getStatements().get(0);
+    assertThat(loaded.getLines().format(es.getExpression().getPosition())).isEqualTo("3:5");
+  }
+
+  @Test
+  public void testBytecodeRoundTrip() throws IOException {
+    for (String input : PROGRAMS) {
+      byte[] source = input.getBytes(StandardCharsets.UTF_8);
+      ScriptCache cache = new ScriptCache(dir);
+      Program program = parse(input);
+      Bytecode bytecode = new Compiler().compile(program);
+      cache.store(script, source, program, bytecode);
+
+      Bytecode loaded = cache.loadBytecode(script, source);
+      assertThat(Ints.asList(loaded.getInstructions()))
+        .isEqualTo(Ints.asList(bytecode.getInstructions()));
+      assertThat(loaded.getGlobalNames()).isEqualTo(bytecode.getGlobalNames());
+      assertThat(run(loaded)).isEqualTo(run(new Compiler().compile(parse(input))));
+    }
+  }
+
+  @Test
+  public void testMissesChangedSource() throws IOException {
+    ScriptCache cache = new ScriptCache(dir);
+    Program program = parse("1 + x");
+    cache.store(script, "1 + x".getBytes(StandardCharsets.UTF_8), program,
+        new Compiler().compile(program));
+    assertThat(cache.loadProgram(script, "2 + x".getBytes(StandardCharsets.UTF_8))).isNull();
+    assertThat(cache.loadBytecode(script, "2 + x".getBytes(StandardCharsets.UTF_8))).isNull();
+    Path other = dir.resolve("other.mon");
+    assertThat(cache.loadProgram(other, "1 + x".getBytes(StandardCharsets.UTF_8))).isNull();
+  }
+
+  @Test
+  public void testMissesOtherVersionAndCorruptFiles() throws IOException {
+    byte[] source = "let x = 5; x * x".getBytes(StandardCharsets.UTF_8);
+    ScriptCache cache = new ScriptCache(dir);
+    Program program = parse("let x = 5; x * x");
+    cache.store(script, source, program, new Compiler().compile(program));
+    Path file = null;
+    for (Path p : MoreFiles.listFiles(dir)) {
+      file = p;
+    }
+
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[7]++; // Version
+    Files.write(file, bytes);
+    assertThat(cache.loadProgram(script, source)).isNull();
+
+    bytes[7]--;
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+    assertThat(cache.loadProgram(script, source)).isNull();
+    assertThat(cache.loadBytecode(script, source)).isNull();
+
+    Files.write(file, bytes);
+    assertThat(cache.loadProgram(script, source).toString()).isEqualTo(program.toString());
+  }
+
+  private static Program parse(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = Optimizer.optimize(p.parseProgram());
+    assertThat(p.getErrors()).isEmpty();
+    return program;
+  }
+
+  private static String eval(Program program) {
+    return String.valueOf(Evaluator.eval(program, new Environment()));
+  }
+
+  private static String run(Bytecode bytecode) {
+    return String.valueOf(new VM(bytecode).run());
+  }
+}
@@ -0,0 +1,97 @@
+package monkey.evaluator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.After;
+import org.junit.Test;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Environment;
+
+public class TestBudget {
+  private static final String LOOP = "let f = fn(n) { f(n + 1) }; f(0)";
+  private static final String DEEP = "let f = fn(n) { 1 + f(n + 1) }; f(0)";
+  private static final String CLOSURES = "let f = fn(n) { let g = fn() { n }; f(n + 1) }; f(0)";
+  private static final String FIB =
+      "let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } }; fib(15)";
+
+  private static final int THRESHOLD = Jit.threshold;
+
+  @After
+  public void restoreThreshold() {
+    Jit.threshold = THRESHOLD;
+  }
+
+  @Test
+  public void testStepLimit() {
+    assertThat(run(LOOP, new Budget(10000, 0, 0))).isEqualTo("Error! step limit exceeded: 10000");
+  }
+
+  @Test
+  public void testDepthLimit() {
+    assertThat(run(DEEP, new Budget(0, 100, 0))).isEqualTo("Error! call depth limit exceeded: 100");
+  }
+
+  @Test
+  public void testTailCallsDontNest() {
+    String count = "let f = fn(n) { if (n == 0) { 0 } else { f(n - 1) } }; f(10000)";
+    assertThat(run(count, new Budget(0, 10, 0))).isEqualTo("0");
+  }
+
+  @Test
+  public void testMemoryLimit() {
+    assertThat(run(CLOSURES, new Budget(0, 0, 100000)))
+        .isEqualTo("Error! memory limit exceeded: 100000 bytes");
+  }
+
+  @Test
+  public void testStackOverflow() {
+    assertThat(run(DEEP, new Budget(0, 0, 0))).startsWith("Error! stack overflow at depth ");
+  }
+
+  @Test
+  public void testWithinBudget() {
+    Budget budget = new Budget(1000000, 100, 1000000);
+    assertThat(run(FIB, budget)).isEqualTo("610");
+    assertThat(budget.getSteps()).isAtLeast(1973L); // Calls of fib(15)
+    assertThat(budget.getBytes()).isAtLeast(1973L * Budget.FRAME_BYTES);
+  }
+
+  @Test
+  public void testCompiledBodiesAreCharged() {
+    Jit.threshold = 1;
+    assertThat(run(LOOP, new Budget(10000, 0, 0))).isEqualTo("Error! step limit exceeded: 10000");
+    assertThat(run(DEEP, new Budget(0, 100, 0))).isEqualTo("Error! call depth limit exceeded: 100");
+  }
+
+  @Test
+  public void testBudgetEndsWithRun() {
+    Budget budget = new Budget(100, 0, 0);
+    run(LOOP, budget);
+    assertThat(Budget.current()).isNull();
+    assertThat(Evaluator.eval(parse(FIB), new Environment()).toString()).isEqualTo("610");
+  }
+
+  @Test
+  public void testFreshBudget() {
+    Budget budget = new Budget(100000, 0, 0);
+    assertThat(run(FIB, budget)).isEqualTo("610");
+    assertThat(budget.fresh().getSteps()).isEqualTo(0L);
+  }
+
+  private static String run(String input, Budget budget) {
+    Program program = parse(input);
+    Obj result = budget.run(() -> Evaluator.eval(program, new Environment()));
+    return result.toString();
+  }
+
+  private static Program parse(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    return program;
+  }
+}
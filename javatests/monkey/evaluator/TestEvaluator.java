@@ -0,0 +1,171 @@
+package monkey.evaluator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Except;
+import monkey.object.Environment;
+
+public class TestEvaluator {
+  @Test
+  public void testTailCallsUseConstantStack() {
+    assertThat(eval("let count = fn(n, acc) { if (n == 0) { acc } else { count(n - 1, acc + 1) } };"
+          + " count(1000000, 0)")).isEqualTo("1000000");
+    assertThat(eval("let gcd = fn(x, y) { if (x == 0) { y } else { if (y == 0) { x } else {"
+          + " if (x > y) { gcd(x - y, y) } else { gcd(x, y - x) } } } }; gcd(1000000, 1)"))
+      .isEqualTo("1");
+    assertThat(eval("let down = fn(n) { if (n == 0) { return 0; } return down(n - 1); };"
+          + " down(1000000)")).isEqualTo("0");
+  }
+
+  @Test
+  public void testMutualTailCalls() {
+    assertThat(eval("let run = fn(n) {"
+          + " let even = fn(n, odd) { if (n == 0) { true } else { odd(n - 1, even) } };"
+          + " let odd = fn(n, even) { if (n == 0) { false } else { even(n - 1, odd) } };"
+          + " even(n, odd) }; run(1000001)")).isEqualTo("false");
+  }
+
+  @Test
+  public void testReturnsNestedInOperandsAreNotTailCalls() {
+    String g = "let g = fn(x) { x + true }; ";
+    assertThat(eval(g + "let f = fn() { let t = if (true) { return g(1); }; 5 }; f()"))
+      .isEqualTo("Error! type mistmatch: INT + BOOL");
+    assertThat(eval(g + "let f = fn() { 2 * if (true) { return g(1); } }; f()"))
+      .isEqualTo("Error! type mistmatch: INT + BOOL");
+  }
+
+  @Test
+  public void testTailCallsUnwrapReturnsLikeCalls() {
+    // w gives a return that gets out of it, which ends the program unless a function unwraps it
+    String w = "let w = fn() { let x = if (true) { return 4; }; return x; }; ";
+    assertThat(eval(w + "let t = fn() { w() }; t(); 7")).isEqualTo("7");
+    assertThat(eval(w + "let t = fn(c) { if (c) { w() } else { 1 } }; t(true); 7"))
+      .isEqualTo("7");
+    assertThat(eval(w + "let t = fn() { return w(); }; t(); 7")).isEqualTo("4");
+  }
+
+  @Test
+  public void testTailCallOfNonFunction() {
+    assertThat(eval("let f = fn() { 5() }; f()")).isEqualTo("Error! not a function: INT");
+  }
+
+  @Test
+  public void testNestedArithmetic() {
+    assertThat(eval("let x = 7; (x + 3) * (x - 2) / 5 - -x")).isEqualTo("17");
+    assertThat(eval("let big = 4611686018427387904; big * 2 + big * 2")).isEqualTo("0");
+    assertThat(eval("(1 + 2) * fn() { 4 }()")).isEqualTo("12");
+  }
+
+  @Test
+  public void testNestedArithmeticErrors() {
+    assertThat(eval("(true + 1) * y")).isEqualTo("Error! type mistmatch: BOOL + INT");
+    assertThat(eval("1 + 2 * (true - false)")).isEqualTo("Error! unknown operator: BOOL - BOOL");
+    assertThat(eval("(1 + 2) * x + true")).isEqualTo("Error! identifier not found: x");
+    assertThat(eval("(1 + 2) * fn() { 4 } + 1"))
+      .isEqualTo("Error! type mistmatch: INT * FUNCTION");
+    assertThat(eval("1 + 2 * fn() { true }()")).isEqualTo("Error! type mistmatch: INT * BOOL");
+  }
+
+  @Test
+  public void testInfixSpecializationFallsBack() {
+    assertThat(eval("let eq = fn(a, b) { a == b }; let x = eq(1, 1); eq(true, true)"))
+      .isEqualTo("true");
+    assertThat(eval("let add = fn(a, b) { a + b }; let x = add(1, 2); add(true, 1)"))
+      .isEqualTo("Error! type mistmatch: BOOL + INT");
+    assertThat(eval("let eq = fn(a, b) { a == b }; let x = eq(true, false); eq(2, 2)"))
+      .isEqualTo("true");
+  }
+
+  @Test
+  public void testCallSiteCache() {
+    assertThat(eval("let apply = fn(g, x) { g(x) };"
+          + " apply(fn(x) { x + 1 }, 1) + apply(fn(x) { x * 10 }, 2)")).isEqualTo("22");
+    assertThat(eval("let adder = fn(n) { fn(x) { x + n } }; let call = fn(g) { g(1) };"
+          + " call(adder(1)) + call(adder(10))")).isEqualTo("13");
+    assertThat(eval("let call = fn(g) { g() }; let x = call(fn() { 1 }); call(5)"))
+      .isEqualTo("Error! not a function: INT");
+    assertThat(eval("let f = fn(a) { let b = a; b }; f(1, 2) + f(3, 4)")).isEqualTo("4");
+    assertThat(eval("let f = fn(a) { a }; let x = f(1); f(1, y)"))
+      .isEqualTo("Error! identifier not found: y");
+  }
+
+  @Test
+  public void testReturns() {
+    assertThat(eval("let f = fn(n) { if (n < 2) { return n; } n * 10 }; f(1) + f(5)"))
+      .isEqualTo("51");
+    assertThat(eval("let f = fn() { if (true) { if (true) { return 1; } 2 } 3 }; f()"))
+      .isEqualTo("1");
+    assertThat(eval("let f = fn(c) { let x = if (c) { return 1; } else { 2 }; x * 5 };"
+          + " f(false)")).isEqualTo("10");
+    assertThat(eval("return 5; 6")).isEqualTo("5");
+    assertThat(eval("if (true) { return 1; } 2")).isEqualTo("1");
+  }
+
+  @Test
+  public void testNestedReturns() {
+    // The value of a return in an operand goes to the operand, as a RETURN
+    assertThat(eval("let f = fn(c) { 1 + if (c) { return 10; } else { 2 } }; f(false)"))
+      .isEqualTo("3");
+    assertThat(eval("let f = fn(c) { 1 + if (c) { return 10; } else { 2 } }; f(true)"))
+      .isEqualTo("Error! type mistmatch: INT + RETURN");
+    assertThat(eval("let f = fn(c) { -if (c) { return 10; } else { 2 } }; f(true)"))
+      .isEqualTo("Error! unknown operator: -RETURN");
+    assertThat(eval("1 + if (true) { return 2; } else { 3 }"))
+      .isEqualTo("Error! type mistmatch: INT + RETURN");
+    // A function that gets it returns it unwrapped
+    assertThat(eval("let id = fn(x) { x }; let f = fn() { id(if (true) { return 1; } else { 2 })"
+          + " + 100 }; f()")).isEqualTo("101");
+    assertThat(eval("let g = fn(x) { x }; g(if (true) { return 3; } else { 4 }) + 10"))
+      .isEqualTo("13");
+    // And so does a block that ends with it
+    assertThat(eval("let f = fn() { let a = if (true) { return 5; } else { 1 }; a }; f() + 1"))
+      .isEqualTo("6");
+    assertThat(eval("let f = fn() { let a = if (true) { return 5; } else { 1 }; a + 100 }; f()"))
+      .isEqualTo("Error! type mistmatch: RETURN + INT");
+    // Returning it wraps it again, so it gets out of its function and ends the program
+    assertThat(eval("let f = fn() { return (if (true) { return 5; }); }; f(); 7"))
+      .isEqualTo("5");
+  }
+
+  @Test
+  public void testReturnEndsOnlyItsProgram() {
+    Environment env = new Environment();
+    assertThat(Evaluator.eval(parse("return 1; 2"), env).toString()).isEqualTo("1");
+    assertThat(Evaluator.eval(parse("3; 4"), env).toString()).isEqualTo("4");
+  }
+
+  @Test
+  public void testErrorPositions() {
+    assertThat(errorPosition("let x = 1;\nx + true")).isEqualTo("2:3");
+    assertThat(errorPosition("let f = fn(a) {\n  -a\n};\nf(true)")).isEqualTo("2:3");
+    assertThat(errorPosition("1 + 2 * (3 + y)")).isEqualTo("1:14");
+    assertThat(errorPosition("let x = 5;\n  x(1)")).isEqualTo("2:4");
+  }
+
+  private static String errorPosition(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    Except e = (Except)Evaluator.eval(program, new Environment());
+    return program.getLines().format(e.getPosition());
+  }
+
+  private static Program parse(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    return program;
+  }
+
+  private static String eval(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    return Evaluator.eval(program, new Environment()).toString();
+  }
+}
@@ -0,0 +1,118 @@
+package monkey.evaluator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Environment;
+
+public class TestGlobals {
+  private static final String PRELUDE =
+    "let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } };"
+      + "let adder = fn(a) { fn(b) { a + b } };"
+      + "let apply = fn(f, x) { f(x) };"
+      + "let base = 100;";
+
+  // Programs with their results, run concurrently on top of PRELUDE.
+  private static final String[][] PROGRAMS = {
+    {"fib(15)", "610"},
+    {"let addTwo = adder(2); addTwo(base)", "102"},
+    {"apply(adder(1), 1) + apply(adder(2), 2) + apply(fn(x) { x * x }, 3)", "15"},
+    {"let base = 5; let f = fn() { base }; f() + base", "10"},
+    {"let count = fn(n, acc) { if (n == 0) { acc } else { count(n - 1, acc + 1) } };"
+      + " count(1000, base)", "1100"},
+    {"if (base > 10) { return fib(10); } 0", "55"},
+    {"base + missing", "Error! identifier not found: missing"},
+  };
+
+  private static final int THRESHOLD = Jit.threshold;
+
+  @After
+  public void restoreThreshold() {
+    Jit.threshold = THRESHOLD;
+  }
+
+  @Test
+  public void testProgramsSeeGlobals() {
+    Globals globals = Globals.of(parse(PRELUDE));
+    for (String[] c : PROGRAMS) {
+      assertThat(globals.eval(parse(c[0])).toString()).isEqualTo(c[1]);
+    }
+  }
+
+  @Test
+  public void testBindingsStayInTheirRun() {
+    Globals globals = Globals.of(parse(PRELUDE));
+    Program program = parse("let base = base + 1; base");
+    assertThat(globals.eval(program).toString()).isEqualTo("101");
+    assertThat(globals.eval(program).toString()).isEqualTo("101");
+    assertThat(globals.eval(parse("base")).toString()).isEqualTo("100");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFailingPrelude() {
+    Globals.of(parse("let x = y;"));
+  }
+
+  @Test
+  public void testConcurrentRuns() throws Exception {
+    Jit.threshold = 50; // Some functions get compiled while other threads interpret them
+    Globals globals = Globals.of(parse(PRELUDE));
+    Program[] programs = new Program[PROGRAMS.length];
+    for (int i = 0; i < programs.length; i++) {
+      programs[i] = parse(PROGRAMS[i][0]);
+    }
+
+    List<Callable<String>> tasks = new ArrayList<>();
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      Program program = programs[i % programs.length];
+      tasks.add(() -> globals.eval(program).toString());
+      expected.add(PROGRAMS[i % programs.length][1]);
+    }
+    assertThat(runAll(tasks)).isEqualTo(expected);
+  }
+
+  @Test
+  public void testConcurrentRunsOfUnresolvedProgram() throws Exception {
+    Program program = parse(PRELUDE + "let f = fn(x) { adder(x)(fib(x)) }; f(12) + f(5)");
+    List<Callable<String>> tasks = new ArrayList<>();
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      tasks.add(() -> Evaluator.eval(program, new Environment()).toString());
+      expected.add("166");
+    }
+    assertThat(runAll(tasks)).isEqualTo(expected);
+  }
+
+  private static List<String> runAll(List<Callable<String>> tasks) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(16);
+    try {
+      List<String> results = new ArrayList<>();
+      for (Future<String> f : pool.invokeAll(tasks)) {
+        results.add(f.get());
+      }
+      return results;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static Program parse(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    return program;
+  }
+}
@@ -0,0 +1,138 @@
+package monkey.evaluator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.After;
+import org.junit.Test;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.ast.ExpressionStatement;
+import monkey.ast.LetStatement;
+import monkey.ast.FunctionLiteral;
+import monkey.object.Except;
+import monkey.object.Environment;
+
+public class TestJit {
+  private static final String[] PROGRAMS = {
+    "let f = fn() { }; f()",
+    "let f = fn() { let x = 1; }; f()",
+    "let f = fn(x) { -x * 2 + 1 - 10 / 3 }; f(7)",
+    "let f = fn(a, b) { (a < b) == (a > b) != (a == b) != (a != b) }; f(1, 2)",
+    "let f = fn(a, b) { if (a < b == true) { !a } else { !!b } }; f(1, 2) == f(2, 1)",
+    "let f = fn(x) { return x * 2; 100 }; f(3)",
+    "let f = fn(x) { if (x) { return 1; } 2 }; f(true) + f(false) * 10",
+    "let f = fn(x) { if (x) { if (x) { return 1; } } 2 }; f(true)",
+    "let f = fn(x) { let y = if (x) { return 1; } else { 2 }; y }; f(true)",
+    "let f = fn(x) { 1 + if (x) { return 1; } else { 2 } }; f(false)",
+    "let f = fn(x) { 1 + if (x) { return 1; } else { 2 } }; f(true)",
+    "let w = fn() { let x = if (true) { return 4; }; return x; }; let f = fn(x) { x }; f(w()); 7",
+    "let w = fn() { let x = if (true) { return 4; }; return x; }; let f = fn(x) { return x; };"
+      + " f(w()); 7",
+    "let f = fn(x) { x + 1 }; f(true)",
+    "let f = fn(x) { -x }; f(fn() { 1 })",
+    "let f = fn(x) { !x }; f(fn() { 1 })",
+    "let f = fn(x) { x == x }; f(fn() { 1 })",
+    "let f = fn() { y }; f()",
+    "let f = fn() { 5() }; f()",
+    "let f = fn() { 5(y) }; f()",
+    "let f = fn(g) { g(y) }; f(5)",
+    "let f = fn(x) { x }; f(1, 2)",
+    "let f = fn(x) { let g = fn(y) { x + y }; g(1) }; f(2)",
+    "let adder = fn(a) { fn(b) { a + b } }; let addTwo = adder(2); addTwo(3)",
+    "let s = 1234; let enc = fn(x) { x + s; }; let s = 4321; enc(17)",
+    "let x = 1; let f = fn(c) { if (c) { let x = 2; } x }; f(true) + f(false) * 10",
+    "let x = 1; let f = fn() { let y = x; let x = 2; y + x }; f()",
+    "let f = fn() { let h = fn() { f }; h() }; f() == f",
+    "let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } }; fib(15)",
+    "let gcd = fn(x, y) { if (x == 0) { y } else { if (y == 0) { x } else {"
+      + " if (x > y) { gcd(x - y, y) } else { gcd(x, y - x) } } } }; gcd(21, 14)",
+    "let count = fn(n, acc) { if (n == 0) { acc } else { count(n - 1, acc + 1) } };"
+      + " count(100000, 0)",
+    "let down = fn(n) { if (n == 0) { return 0; } return down(n - 1); }; down(100000)",
+    "let f = fn(n) { if (n == 0) { y } else { f(n - 1) } }; f(10)",
+    "let f = fn(a, b) { a / b }; f(7, 2) + f(-7, 2)",
+  };
+
+  private static final int THRESHOLD = Jit.threshold;
+
+  @After
+  public void restoreThreshold() {
+    Jit.threshold = THRESHOLD;
+  }
+
+  @Test
+  public void testSameAsInterpreter() {
+    for (String input : PROGRAMS) {
+      Jit.threshold = -1;
+      String interpreted = eval(parse(input));
+      Jit.threshold = 1;
+      assertThat(eval(parse(input))).isEqualTo(interpreted);
+    }
+  }
+
+  @Test
+  public void testCompilesAfterThreshold() {
+    Jit.threshold = 3;
+    Program program = parse("let f = fn(x) { x + 1 }; f(1); f(2);");
+    FunctionLiteral fl = (FunctionLiteral)((LetStatement)program.getStatements().get(0)).getValue();
+    eval(program);
+    assertThat(fl.getCompiled()).isNull();
+    eval(program);
+    assertThat(fl.getCompiled()).isInstanceOf(CompiledBody.class);
+  }
+
+  @Test
+  public void testUnsupportedFunctionIsInterpreted() {
+    Jit.threshold = 1;
+    Program program = parse("let f = fn(x) { 1 + if (x) { return 1; } else { 2 } }; f(false)");
+    FunctionLiteral fl = (FunctionLiteral)((LetStatement)program.getStatements().get(0)).getValue();
+    assertThat(eval(program)).isEqualTo("3");
+    assertThat(fl.getCompiled()).isNotNull();
+    assertThat(fl.getCompiled()).isNotInstanceOf(CompiledBody.class);
+  }
+
+  @Test
+  public void testTooLargeFunctionIsInterpreted() {
+    Jit.threshold = 1;
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      body.append("x * 2 + x;\n");
+    }
+    Program program = parse("let f = fn(x) { " + body + "x }; f(1) + f(2)");
+    FunctionLiteral fl = (FunctionLiteral)((LetStatement)program.getStatements().get(0)).getValue();
+    assertThat(eval(program)).isEqualTo("3");
+    assertThat(fl.getCompiled()).isNotNull();
+    assertThat(fl.getCompiled()).isNotInstanceOf(CompiledBody.class);
+  }
+
+  @Test
+  public void testErrorPositions() {
+    Jit.threshold = 1;
+    assertThat(errorPosition("let f = fn(a, b) {\n  a + b\n};\nlet x = f(1, 2);\nf(1, true)"))
+      .isEqualTo("2:5");
+    assertThat(errorPosition("let f = fn(a) {\n  -a\n};\nlet x = f(1);\nf(true)"))
+      .isEqualTo("2:3");
+    assertThat(errorPosition("let f = fn(g) {\n  g(1)\n};\nlet x = f(fn(y) { y });\nf(2)"))
+      .isEqualTo("2:4");
+  }
+
+  private static String errorPosition(String input) {
+    Program program = parse(input);
+    Except e = (Except)Evaluator.eval(program, new Environment());
+    assertThat(program.getLines()).isNotNull();
+    return program.getLines().format(e.getPosition());
+  }
+
+  private static Program parse(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    return program;
+  }
+
+  private static String eval(Program program) {
+    return Evaluator.eval(program, new Environment()).toString();
+  }
+}
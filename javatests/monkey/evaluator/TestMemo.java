@@ -0,0 +1,119 @@
+package monkey.evaluator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.After;
+import org.junit.Test;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Environment;
+
+public class TestMemo {
+  private static final String FIB =
+      "let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } }; fib(60)";
+
+  private static final int THRESHOLD = Jit.threshold;
+
+  @After
+  public void restoreThreshold() {
+    Jit.threshold = THRESHOLD;
+  }
+
+  @Test
+  public void testExponentialBecomesLinear() {
+    Memo memo = new Memo();
+    assertThat(run(FIB, memo)).isEqualTo("1548008755920");
+    assertThat(memo.getMisses()).isEqualTo(61L);
+    assertThat(memo.getHits()).isEqualTo(58L);
+  }
+
+  @Test
+  public void testCompiledCallsAreRemembered() {
+    Jit.threshold = 1;
+    Memo memo = new Memo();
+    assertThat(run(FIB, memo)).isEqualTo("1548008755920");
+    assertThat(memo.getMisses()).isEqualTo(61L);
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    Memo memo = new Memo(2);
+    assertThat(run(FIB, memo)).isEqualTo("1548008755920");
+    assertThat(memo.size()).isEqualTo(2);
+
+    memo = new Memo(2);
+    assertThat(run("let sq = fn(x) { x * fn() { x }() }; sq(1) + sq(2) + sq(3) + sq(1)", memo))
+      .isEqualTo("15");
+    assertThat(memo.getHits()).isEqualTo(0L);
+    assertThat(memo.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testSameArgumentsOfOtherClosure() {
+    Memo memo = new Memo();
+    assertThat(run("let add = fn(a) { fn(b) { a + fn() { b }() } }; let one = add(1);"
+          + " let two = add(2); one(5) + two(5) + one(5)", memo)).isEqualTo("19");
+    assertThat(memo.getHits()).isEqualTo(1L);
+  }
+
+  @Test
+  public void testOnlyValuesAreRemembered() {
+    Memo memo = new Memo();
+    assertThat(run("let make = fn(x) { let g = fn() { x }; g }; make(1) == make(1)", memo))
+      .isEqualTo("false");
+    assertThat(run("let apply = fn(g, x) { g(x) }; let inc = fn(x) { x + 1 };"
+          + " apply(inc, 1) + apply(inc, 1)", memo)).isEqualTo("4");
+    assertThat(memo.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testErrorsAreNotRemembered() {
+    Memo memo = new Memo();
+    Budget budget = new Budget(0, 20, 0);
+    String deep = "let f = fn(n) { if (n == 0) { 0 } else { 1 + f(n - 1) } }; f(30)";
+    assertThat(budget.run(() -> run(parse(deep), memo)).toString())
+      .isEqualTo("Error! call depth limit exceeded: 20");
+    assertThat(memo.size()).isEqualTo(0);
+    assertThat(run(deep, memo)).isEqualTo("30");
+  }
+
+  @Test
+  public void testSameResultsWithoutMemo() {
+    String[] programs = {
+      "let f = fn(x) { if (x) { return g(1); } 2 }; let g = fn(x) { x }; f(true)",
+      "let g = fn(x) { x * 2 }; let f = fn(x) { if (x > 0) { return g(x); } g(0) }; f(3) + f(3)",
+      "let g = fn(x) { x }; let f = fn(a, b) { g(a) == g(b) }; f(true, true) == f(1, 1)",
+      "let g = fn(x) { x }; let f = fn(a) { g(a) + y }; f(1)",
+      "let count = fn(n, acc) { if (n == 0) { acc } else { count(n - 1, acc + 1) } };"
+        + " count(1000, 0) + count(1000, 0)",
+    };
+    for (String input : programs) {
+      assertThat(run(input, new Memo()))
+        .isEqualTo(Evaluator.eval(parse(input), new Environment()).toString());
+    }
+  }
+
+  @Test
+  public void testMemoEndsWithRun() {
+    run(FIB, new Memo());
+    assertThat(Memo.current()).isNull();
+  }
+
+  private static String run(String input, Memo memo) {
+    return run(parse(input), memo).toString();
+  }
+
+  private static Obj run(Program program, Memo memo) {
+    return memo.run(() -> Evaluator.eval(program, new Environment()));
+  }
+
+  private static Program parse(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    return program;
+  }
+}
@@ -0,0 +1,149 @@
+package monkey.evaluator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Test;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Environment;
+import monkey.resolver.Resolver;
+
+public class TestParallel {
+  private static final String FIB =
+      "let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } };";
+
+  // Fails after n calls, f on x and g on y
+  private static final String FAILING =
+      "let f = fn(n) { if (n == 0) { x } else { f(n - 1) } };"
+      + " let g = fn(n) { if (n == 0) { y } else { g(n - 1) } };";
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+  private static final int THRESHOLD = Jit.threshold;
+
+  @After
+  public void restoreThreshold() {
+    Jit.threshold = THRESHOLD;
+  }
+
+  @Test
+  public void testSameResultsAsSequential() {
+    String[] programs = {
+      FIB + " fib(18)",
+      FIB + " let add = fn(a, b, c) { a + b + c }; add(fib(10), fib(11), fib(12))",
+      FIB + " let f = fn(n) { if (n < 2) { fib(n) } else { f(n - 1) * fib(n) } }; f(10)",
+      FIB + " let f = fn(g) { g(fib(5)) + g(fib(6)) }; f(fn(x) { x * 2 })",
+      FIB + " let f = fn(n) { if (fib(n) > 5) { fib(n) } else { fib(n) - 1 } }; f(3) + f(6)",
+      FIB + " let f = fn(n) { (if (n > 0) { let a = fib(n); a } else { 0 }) + fib(n) }; f(9)",
+      FIB + " fib(true) + fib(2)",
+      FIB + " fib(5) + fib(5)(1)",
+    };
+    for (String input : programs) {
+      assertThat(run(input, new Parallel(POOL, Resolver.CALL_COST)))
+        .isEqualTo(Evaluator.eval(parse(input), new Environment()).toString());
+    }
+  }
+
+  @Test
+  public void testLeftmostErrorWins() {
+    for (int i = 0; i < 20; i++) {
+      assertThat(run(FAILING + " f(200) + g(0)", new Parallel(POOL, Resolver.CALL_COST)))
+        .isEqualTo("Error! identifier not found: x");
+      assertThat(run(FAILING + " let h = fn(a, b, c) { a }; h(g(0) + 1, f(200), g(300))",
+            new Parallel(POOL, Resolver.CALL_COST)))
+        .isEqualTo("Error! identifier not found: y");
+      assertThat(run(FAILING + " let h = fn(a, b, c) { a }; h(1 + 1, f(200), g(0))",
+            new Parallel(POOL, Resolver.CALL_COST)))
+        .isEqualTo("Error! identifier not found: x");
+    }
+  }
+
+  @Test
+  public void testAbandonsOperandsRightOfAFailure() {
+    String loop = FAILING + " let loop = fn(n) { loop(n) };";
+    assertThat(run(loop + " f(10) + loop(1)", new Parallel(POOL, Resolver.CALL_COST)))
+      .isEqualTo("Error! identifier not found: x");
+    assertThat(run(loop + " let h = fn(a, b) { a }; h(f(10) + g(1), loop(1) + loop(2))",
+          new Parallel(POOL, Resolver.CALL_COST)))
+      .isEqualTo("Error! identifier not found: x");
+  }
+
+  @Test
+  public void testReturnsNestedInForkedOperands() {
+    String input = FIB + " let id = fn(x) { x };"
+        + " let f = fn(c) { fib(3) + id(if (c) { return fib(6); } else { fib(4) }) };"
+        + " f(true) * 10 + f(false)";
+    assertThat(run(input, new Parallel(POOL, Resolver.CALL_COST))).isEqualTo("105");
+    input = FIB + " let f = fn(c) { fib(3) + if (c) { return fib(6); } else { fib(4) } }; f(true)";
+    assertThat(run(input, new Parallel(POOL, Resolver.CALL_COST)))
+        .isEqualTo("Error! type mistmatch: INT + RETURN");
+  }
+
+  @Test
+  public void testCompiledFunctions() {
+    Jit.threshold = 1;
+    String input = FIB + " let sq = fn(x) { x * x }; sq(fib(15)) + sq(fib(16))";
+    assertThat(run(input, new Parallel(POOL, Resolver.CALL_COST))).isEqualTo("1346269");
+  }
+
+  @Test
+  public void testHighThresholdDoesNotSplit() {
+    assertThat(run(FIB + " fib(15)", new Parallel(POOL, Integer.MAX_VALUE))).isEqualTo("610");
+  }
+
+  @Test
+  public void testRunWithBudgetIsNotSplit() {
+    Budget budget = new Budget(0, 20, 0);
+    Program program =
+      parse("let d = fn(n) { if (n == 0) { 0 } else { 1 + d(n - 1) } }; d(30) + d(30)");
+    Obj result = budget.run(() -> new Parallel(POOL, Resolver.CALL_COST)
+        .run(() -> Evaluator.eval(program, new Environment())));
+    assertThat(result.toString()).isEqualTo("Error! call depth limit exceeded: 20");
+  }
+
+  @Test
+  public void testOperandsOutOfStackOnWorkersAreEvaluatedAgain() throws InterruptedException {
+    // Too deep for the stacks of workers, not for the thread that runs the program
+    String input = "let d = fn(n) { if (n == 0) { 0 } else { 1 + d(n - 1) } }; d(50000) + d(50000)";
+    assertThat(runOnStack(input, 1L << 30)).isEqualTo("100000");
+  }
+
+  @Test
+  public void testOutOfStackIsAnError() throws InterruptedException {
+    String input = "let d = fn(n) { if (n == 0) { 0 } else { 1 + d(n - 1) } }; d(1000000) + d(1)";
+    assertThat(runOnStack(input, 1L << 20)).isEqualTo("Error! stack overflow");
+  }
+
+  @Test
+  public void testBranchEndsWithRun() {
+    run(FIB + " fib(10)", new Parallel(POOL, Resolver.CALL_COST));
+    assertThat(Parallel.current()).isNull();
+  }
+
+  private static String run(String input, Parallel parallel) {
+    Program program = parse(input);
+    return parallel.run(() -> Evaluator.eval(program, new Environment())).toString();
+  }
+
+  // Runs input on a thread of its own with stackSize bytes of stack.
+  private static String runOnStack(String input, long stackSize) throws InterruptedException {
+    String[] result = new String[1];
+    Thread t = new Thread(null,
+        () -> result[0] = run(input, new Parallel(POOL, Resolver.CALL_COST)), "run", stackSize);
+    t.start();
+    t.join();
+    return result[0];
+  }
+
+  private static Program parse(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    return program;
+  }
+}
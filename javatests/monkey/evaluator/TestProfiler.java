@@ -0,0 +1,120 @@
+package monkey.evaluator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Environment;
+
+public class TestProfiler {
+  private static final String PROGRAM = "let fib = fn(n) {\n"
+      + "  if (n < 2) { n } else { fib(n - 1) + fib(n - 2) }\n"
+      + "};\n"
+      + "let big = fn(n) { n * 100000 };\n"
+      + "let loop = fn(n, acc) { if (n == 0) { acc } else { loop(n - 1, acc + big(n)) } };\n"
+      + "fib(10) + loop(10, 0) + fn() { 1 }()";
+
+  @Test
+  public void testEntries() {
+    Profiler profiler = new Profiler(parse(PROGRAM).getLines());
+    Obj result = run(profiler, PROGRAM);
+    assertThat(result.toString()).isEqualTo("5500056");
+
+    Map<String, Profiler.Entry> entries = entries(profiler);
+    assertThat(entries.keySet()).containsExactly("<program>", "fib@1:11", "big@4:11",
+        "loop@5:12", "fn@6:25");
+    assertThat(entries.get("<program>").getCalls()).isEqualTo(1L);
+    assertThat(entries.get("fib@1:11").getCalls()).isEqualTo(177L);
+    assertThat(entries.get("big@4:11").getCalls()).isEqualTo(10L);
+    assertThat(entries.get("loop@5:12").getCalls()).isEqualTo(11L); // Tail calls count too
+    assertThat(entries.get("fn@6:25").getCalls()).isEqualTo(1L);
+  }
+
+  @Test
+  public void testTimes() {
+    Profiler profiler = new Profiler(parse(PROGRAM).getLines());
+    run(profiler, PROGRAM);
+    Map<String, Profiler.Entry> entries = entries(profiler);
+    Profiler.Entry program = entries.get("<program>");
+    long self = 0;
+    for (Profiler.Entry e : entries.values()) {
+      assertThat(e.getSelfNanos()).isAtLeast(0L);
+      assertThat(e.getSelfNanos()).isAtMost(e.getTotalNanos());
+      self += e.getSelfNanos();
+    }
+    assertThat(self).isEqualTo(program.getTotalNanos());
+    // Recursive calls don't add up to more than the whole run
+    assertThat(entries.get("fib@1:11").getTotalNanos()).isAtMost(program.getTotalNanos());
+  }
+
+  @Test
+  public void testAllocations() {
+    Profiler profiler = new Profiler(parse(PROGRAM).getLines());
+    run(profiler, PROGRAM);
+    Map<String, Profiler.Entry> entries = entries(profiler);
+    assertThat(entries.get("fib@1:11").getAllocations()).isEqualTo(0L); // Small Ints are shared
+    assertThat(entries.get("big@4:11").getAllocations()).isEqualTo(20L); // 100000 and product
+    assertThat(entries.get("loop@5:12").getAllocations()).isAtLeast(10L);
+  }
+
+  @Test
+  public void testCollapsedStacks() {
+    Profiler profiler = new Profiler(parse(PROGRAM).getLines());
+    run(profiler, "let f = fn(n) { if (n == 0) { 0 } else { 1 + f(n - 1) } }; f(3)");
+    for (String line : profiler.collapsedStacks().split("\n")) {
+      assertThat(line).matches("<program>(;f@1:9)* [0-9]+");
+    }
+  }
+
+  @Test
+  public void testTable() {
+    Profiler profiler = new Profiler(parse(PROGRAM).getLines());
+    run(profiler, PROGRAM);
+    String[] lines = profiler.table().split("\n");
+    assertThat(lines[0]).contains("calls");
+    assertThat(lines.length).isEqualTo(6);
+    assertThat(profiler.table()).contains("fib@1:11");
+  }
+
+  @Test
+  public void testWithoutSource() {
+    Profiler profiler = new Profiler();
+    run(profiler, "let f = fn() { 1 }; f()");
+    assertThat(entries(profiler).keySet()).containsExactly("<program>", "f@8");
+  }
+
+  @Test
+  public void testProfilerEndsWithRun() {
+    run(new Profiler(), "let f = fn() { 1 }; f()");
+    assertThat(Profiler.current()).isNull();
+  }
+
+  private static Obj run(Profiler profiler, String input) {
+    Program program = parse(input);
+    return profiler.run(() -> Evaluator.eval(program, new Environment()));
+  }
+
+  private static Map<String, Profiler.Entry> entries(Profiler profiler) {
+    Map<String, Profiler.Entry> result = new HashMap<>();
+    List<Profiler.Entry> entries = profiler.getEntries();
+    for (Profiler.Entry e : entries) {
+      result.put(profiler.label(e.getLiteral()), e);
+    }
+    return result;
+  }
+
+  private static Program parse(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    return program;
+  }
+}
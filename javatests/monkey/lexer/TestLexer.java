@@ -1,9 +1,21 @@
 package monkey.lexer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 import monkey.token.Token;
+import monkey.token.LineMap;
 import monkey.lexer.Lexer;
 
 public class TestLexer {
@@ -98,4 +110,146 @@ public class TestLexer {
       assertEquals(t.getLiteral(), nt.getLiteral());
     }
   }
+
+  private static final String STREAM_INPUT = String.join("\n",
+      "let fibonacci = fn(number) {",
+      "  if (number < 2) { number } else { fibonacci(number - 1) + fibonacci(number - 2) }",
+      "};",
+      "let tr\u00e8s_long_nom_de_variable_qui_ne_tient_pas_dans_le_tampon = 1234567890123;",
+      "fibonacci(20) != tr\u00e8s_long_nom_de_variable_qui_ne_tient_pas_dans_le_tampon == !false"
+  );
+
+  @Test
+  public void testReaderWithSmallBuffer() {
+    for (int size = 1; size <= 16; size++) {
+      assertSameTokens(new Lexer(STREAM_INPUT), new Lexer(new StringReader(STREAM_INPUT), size));
+    }
+  }
+
+  @Test
+  public void testChannel() {
+    byte[] bytes = STREAM_INPUT.getBytes(StandardCharsets.UTF_8);
+    Lexer l = new Lexer(Channels.newChannel(new ByteArrayInputStream(bytes)),
+        StandardCharsets.UTF_8);
+    assertSameTokens(new Lexer(STREAM_INPUT), l);
+  }
+
+  @Test
+  public void testByteBuffer() {
+    ByteBuffer buffer = ByteBuffer.wrap(STREAM_INPUT.getBytes(StandardCharsets.UTF_8));
+    assertSameTokens(new Lexer(STREAM_INPUT), new Lexer(buffer, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testEmptyInput() {
+    assertEquals(Token.Type.EOF, new Lexer(new StringReader("")).nextToken().getType());
+    assertEquals(Token.Type.EOF,
+        new Lexer(ByteBuffer.allocate(0), StandardCharsets.UTF_8).nextToken().getType());
+  }
+
+  @Test
+  public void testCursor() {
+    Lexer l = new Lexer("let  x =\n 12 == x;");
+    String[] expected = {"LET 0 3", "IDENT 5 6", "ASSIGN 7 8", "INT 10 12", "EQ 13 15",
+      "IDENT 16 17", "SEMICOLON 17 18", "EOF 18 18"};
+    for (String e : expected) {
+      Token.Type type = l.advance();
+      assertEquals(e, type + " " + l.getStart() + " " + l.getEnd());
+    }
+  }
+
+  @Test
+  public void testLines() {
+    Lexer l = new Lexer("let x = 1;\n\n  x +\ny");
+    while (l.advance() != Token.Type.EOF) {
+    }
+    LineMap lines = l.getLines();
+    assertEquals(4, lines.size());
+    assertEquals(11, lines.start(2));
+    assertEquals(12, lines.start(3));
+    assertEquals("1:1", lines.format(0));
+    assertEquals("1:5", lines.format(4));
+    assertEquals("2:1", lines.format(11));
+    assertEquals("3:3", lines.format(14));
+    assertEquals("4:1", lines.format(18));
+  }
+
+  @Test
+  public void testLinesWithSmallBuffer() {
+    Lexer l = new Lexer(new StringReader(STREAM_INPUT), 3);
+    while (l.advance() != Token.Type.EOF) {
+    }
+    assertEquals(STREAM_INPUT.split("\n").length, l.getLines().size());
+    assertEquals(STREAM_INPUT.indexOf('\n') + 1, l.getLines().start(2));
+  }
+
+  @Test
+  public void testWithoutLines() {
+    Lexer l = new Lexer(new StringReader(STREAM_INPUT), 3);
+    l.setTrackLines(false);
+    assertSameTokens(new Lexer(STREAM_INPUT), l);
+    assertNull(l.getLines());
+  }
+
+  @Test
+  public void testFromOffset() {
+    StringBuilder input = new StringBuilder("let x = 1;\nfoo + 23");
+    Lexer l = new Lexer(input, 11);
+    assertEquals(Token.Type.IDENT, l.advance());
+    assertEquals("foo", l.getToken().getLiteral());
+    assertEquals(11, l.getStart());
+    assertEquals(Token.Type.PLUS, l.advance());
+    assertEquals(15, l.getStart());
+    assertEquals(Token.Type.INT, l.advance());
+    assertEquals(19, l.getEnd());
+    assertEquals(Token.Type.EOF, l.advance());
+  }
+
+  @Test
+  public void testTokensAreShared() {
+    Lexer l = new Lexer("x + y + x + 10 + 10");
+    Token[] tokens = new Token[9];
+    for (int i = 0; i < tokens.length; i++) {
+      tokens[i] = l.nextToken();
+    }
+    assertSame(tokens[0], tokens[4]);
+    assertSame(tokens[1], tokens[3]);
+    assertSame(tokens[1], new Lexer("+").nextToken());
+  }
+
+  @Test
+  public void testInternerIsBounded() {
+    StringBuilder sb = new StringBuilder();
+    int names = 20 * Interner.SIZE;
+    for (int i = 0; i < names; i++) {
+      sb.append("let ");
+      for (int n = i; n > 0; n /= 26) {
+        sb.append((char)('a' + n % 26));
+      }
+      sb.append("_ = ").append(i).append(";\n");
+    }
+    Lexer l = new Lexer(new StringReader(sb.toString()), 64);
+    int idents = 0;
+    for (Token t = l.nextToken(); t.getType() != Token.Type.EOF; t = l.nextToken()) {
+      if (t.getType() == Token.Type.IDENT) {
+        idents++;
+      }
+    }
+    assertEquals(names, idents);
+    assertTrue(l.getInterner().size() <= Interner.SIZE);
+  }
+
+  private static void assertSameTokens(Lexer expected, Lexer actual) {
+    assertEquals(tokens(expected), tokens(actual));
+  }
+
+  private static List<String> tokens(Lexer l) {
+    List<String> tokens = new ArrayList<>();
+    Token.Type type;
+    do {
+      type = l.advance();
+      tokens.add(type + " " + l.getToken().getLiteral() + " " + l.getStart() + " " + l.getEnd());
+    } while (type != Token.Type.EOF);
+    return tokens;
+  }
 }
@@ -0,0 +1,99 @@
+package monkey.optimizer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Environment;
+import monkey.evaluator.Evaluator;
+
+public class TestOptimizer {
+  private static final String[][] FOLDED = {
+    {"1 + 2 * 3", "7"},
+    {"-(5 - 10) / 2", "2"},
+    {"x + 2 * 3", "(x + 6)"},
+    {"1 < 2 == true", "true"},
+    {"!true != !!false", "false"},
+    {"1 == true", "false"},
+    {"!5", "false"},
+    {"if (1 > 2) { x } else { y }", "y"},
+    {"if (true) { x }", "x"},
+    {"if (false) { x }", "iffalse "},
+    {"if (x) { 2 * 2 } else { 3 * 3 }", "ifx 4else 9"},
+    {"if (true) { let y = x; y }", "let y = x;y"},
+    {"let f = fn(a) { if (1 < 2) { return a; } a * (4 / 2) };", "let f = fn (a)return a;(a * 2);"},
+    {"f(1 + 1, if (true) { 3 })", "f(2, 3)"},
+  };
+
+  // Left as they are, so the engine reports the error at run time.
+  private static final String[][] UNFOLDED = {
+    {"1 / 0", "(1 / 0)"},
+    {"-true", "(-true)"},
+    {"true + false", "(true + false)"},
+    {"1 + true", "(1 + true)"},
+    {"if (true) { }", "iftrue "},
+  };
+
+  private static final String[] PROGRAMS = {
+    "1 + 2 * 3 - 4 / 2",
+    "-true",
+    "true + 1",
+    "!(1 < 2) == false",
+    "if (1 > 2) { 10 }",
+    "5; if (true) { }",
+    "if (true) { return 1; } 2",
+    "let f = fn(x) { if (true) { return x; } 0 }; f(3)",
+    "if (true) { let x = 2; } x",
+    "let x = 1; let f = fn() { if (false) { let x = 2; } x }; f()",
+    "let f = fn(x) { if (1 < 2) { x * (2 + 3) } else { y } }; f(4)",
+    "let f = fn(n) { if (n < 1 + 1) { n } else { f(n - 1) + f(n - 2) } }; f(15)",
+    "let f = fn(x) { if (true) { f(x - 1) } }; if (false) { f(1) } else { 0 }",
+  };
+
+  @Test
+  public void testFolds() {
+    for (String[] c : FOLDED) {
+      assertThat(Optimizer.optimize(parse(c[0])).toString()).isEqualTo(c[1]);
+    }
+  }
+
+  @Test
+  public void testKeepsErrors() {
+    for (String[] c : UNFOLDED) {
+      assertThat(Optimizer.optimize(parse(c[0])).toString()).isEqualTo(c[1]);
+    }
+  }
+
+  @Test
+  public void testReusesUnchangedProgram() {
+    Program program = parse("let f = fn(x) { x + 1 }; f(2)");
+    assertThat(Optimizer.optimize(program)).isSameAs(program);
+  }
+
+  @Test
+  public void testSameResult() {
+    for (String input : PROGRAMS) {
+      assertThat(eval(Optimizer.optimize(parse(input)))).isEqualTo(eval(parse(input)));
+    }
+  }
+
+  @Test
+  public void testPrintsSourceBody() {
+    String input = "fn(x) { if (true) { x + 2 * 3 } }";
+    assertThat(eval(Optimizer.optimize(parse(input)))).isEqualTo(eval(parse(input)));
+  }
+
+  private static Program parse(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    return program;
+  }
+
+  private static String eval(Program program) {
+    return Evaluator.eval(program, new Environment()).toString();
+  }
+}
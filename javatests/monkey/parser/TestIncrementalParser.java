@@ -0,0 +1,180 @@
+package monkey.parser;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import monkey.token.LineMap;
+import monkey.lexer.Lexer;
+import monkey.ast.Program;
+import monkey.ast.Statement;
+import monkey.ast.Expression;
+import monkey.ast.LetStatement;
+import monkey.ast.ReturnStatement;
+import monkey.ast.ExpressionStatement;
+import monkey.ast.Identifier;
+import monkey.ast.PrefixExpression;
+import monkey.ast.InfixExpression;
+import monkey.ast.IfExpression;
+import monkey.ast.BlockStatement;
+import monkey.ast.FunctionLiteral;
+import monkey.ast.CallExpression;
+
+public class TestIncrementalParser {
+  private static final String SOURCE = "let add = fn(a, b) {\n  return a + b;\n};\n"
+      + "let twice = fn(f, x) { f(f(x)) };\n"
+      + "if (add(1, 2) > 2) { twice(fn(x) { x * 2 }, 3) } else { -1 }\n"
+      + "let result = add(twice(fn(x) { x + 1 }, 0), 40);\n"
+      + "result\n";
+
+  @Test
+  public void testEditInOneStatement() {
+    IncrementalParser ip = new IncrementalParser(SOURCE);
+    int offset = SOURCE.indexOf("40");
+    assertSameAsFullParse(ip, ip.edit(offset, 2, "1000"));
+    assertThat(ip.getReparsed()).isAtMost(3);
+    assertThat(ip.getReused()).isAtLeast(2);
+    assertThat(ip.getProgram().getLines().format(
+          ip.getProgram().getStatements().get(4).getPosition())).isEqualTo("7:1");
+  }
+
+  @Test
+  public void testEditJoiningStatements() {
+    IncrementalParser ip = new IncrementalParser("let a = 1; let b = 2; a\n(b)");
+    assertSameAsFullParse(ip, ip.edit(22, 1, "add"));
+    assertSameAsFullParse(ip, ip.edit(9, 1, ""));
+    assertSameAsFullParse(ip, ip.edit(0, 0, "}"));
+    assertSameAsFullParse(ip, ip.edit(0, 1, ""));
+  }
+
+  @Test
+  public void testEditsWithErrors() {
+    IncrementalParser ip = new IncrementalParser(SOURCE);
+    assertSameAsFullParse(ip, ip.edit(SOURCE.indexOf("twice"), 0, "let = "));
+    assertThat(ip.getErrors()).isNotEmpty();
+    assertSameAsFullParse(ip, ip.edit(0, 0, "\n\n"));
+    assertSameAsFullParse(ip, ip.edit(SOURCE.length() + 2, 0, "fn(x) { x"));
+    assertSameAsFullParse(ip, ip.edit(SOURCE.length() + 2, 0, "let y = "));
+  }
+
+  @Test
+  public void testRandomEdits() {
+    String[] pieces = {"let", " ", "\n", "x", "fn(a) {", "}", ";", "(", ")", "1", "+", "if",
+      "else", "{", "return", ",", "=", "add(1, 2)", "let z = 3;"};
+    Random random = new Random(42);
+    IncrementalParser ip = new IncrementalParser(SOURCE);
+    for (int i = 0; i < 2000; i++) {
+      int length = ip.getSource().length();
+      int offset = random.nextInt(length + 1);
+      int removed = random.nextInt(Math.min(4, length - offset) + 1);
+      String inserted = random.nextInt(3) == 0 ? "" : pieces[random.nextInt(pieces.length)];
+      assertSameAsFullParse(ip, ip.edit(offset, removed, inserted));
+    }
+  }
+
+  @Test
+  public void testOnlyEditedStatementsAreReparsed() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      sb.append("let f = fn(x) { x * 2 };\n");
+    }
+    IncrementalParser ip = new IncrementalParser(sb.toString());
+    assertSameAsFullParse(ip, ip.edit(500 * 25 + 20, 1, "3"));
+    assertThat(ip.getReparsed()).isAtMost(3);
+    assertThat(ip.getReused()).isEqualTo(1000 - ip.getReparsed());
+  }
+
+  @Test
+  public void testEarlierProgramsStayAsTheyWere() {
+    IncrementalParser ip = new IncrementalParser(SOURCE);
+    Program before = ip.getProgram();
+    String positions = positions(before);
+    Program after = ip.edit(0, 0, "let x = 1;\n");
+    assertSameAsFullParse(ip, ip.edit(SOURCE.indexOf("40") + 11, 2, "1"));
+    assertThat(ip.getReused()).isAtLeast(4);
+    assertThat(positions(before)).isEqualTo(positions);
+    // Reused statements are shared, and each program has them where they are in its source
+    Statement result = before.getStatements().get(4);
+    assertThat(after.getStatements().get(5)).isSameAs(result);
+    assertThat(before.getLines().format(result.getPosition())).isEqualTo("7:1");
+    assertThat(after.getLines().format(result.getPosition())).isEqualTo("8:1");
+  }
+
+  private static void assertSameAsFullParse(IncrementalParser ip, Program program) {
+    Parser p = new Parser(new Lexer(ip.getSource()));
+    Program expected = p.parseProgram();
+    assertThat(ip.getErrors()).isEqualTo(p.getErrors());
+    assertThat(positions(program)).isEqualTo(positions(expected));
+    for (int i = 0; i < program.getLines().size(); i++) {
+      assertThat(program.getLines().start(i + 1)).isEqualTo(expected.getLines().start(i + 1));
+    }
+    assertThat(program.getLines().size()).isEqualTo(expected.getLines().size());
+  }
+
+  // Program as text, with line and column of every node
+  private static String positions(Program program) {
+    StringBuilder sb = new StringBuilder();
+    for (Statement st : program.getStatements()) {
+      append(sb, program.getLines(), st);
+    }
+    return sb.toString();
+  }
+
+  private static void append(StringBuilder sb, LineMap lines, Statement st) {
+    sb.append('[').append(lines.format(st.getPosition())).append(' ');
+    if (st instanceof LetStatement) {
+      append(sb, lines, ((LetStatement)st).getName());
+      append(sb, lines, ((LetStatement)st).getValue());
+    } else if (st instanceof ReturnStatement) {
+      append(sb, lines, ((ReturnStatement)st).getValue());
+    } else if (st instanceof ExpressionStatement) {
+      append(sb, lines, ((ExpressionStatement)st).getExpression());
+    }
+    sb.append(']');
+  }
+
+  private static void append(StringBuilder sb, LineMap lines, BlockStatement bs) {
+    if (bs != null) {
+      sb.append('{').append(lines.format(bs.getPosition())).append(' ');
+      for (Statement st : bs.getStatements()) {
+        append(sb, lines, st);
+      }
+      sb.append('}');
+    }
+  }
+
+  private static void append(StringBuilder sb, LineMap lines, Expression e) {
+    if (e == null) {
+      sb.append("null ");
+      return;
+    }
+    sb.append('(').append(lines.format(e.getPosition())).append(' ').append(e.tokenLiteral()).append(' ');
+    if (e instanceof PrefixExpression) {
+      append(sb, lines, ((PrefixExpression)e).getRight());
+    } else if (e instanceof InfixExpression) {
+      append(sb, lines, ((InfixExpression)e).getLeft());
+      append(sb, lines, ((InfixExpression)e).getRight());
+    } else if (e instanceof IfExpression) {
+      append(sb, lines, ((IfExpression)e).getCondition());
+      append(sb, lines, ((IfExpression)e).getConsequence());
+      append(sb, lines, ((IfExpression)e).getAlternative());
+    } else if (e instanceof FunctionLiteral) {
+      if (((FunctionLiteral)e).getParameters() != null) {
+        for (Identifier param : ((FunctionLiteral)e).getParameters()) {
+          append(sb, lines, param);
+        }
+      }
+      append(sb, lines, ((FunctionLiteral)e).getBody());
+    } else if (e instanceof CallExpression) {
+      append(sb, lines, ((CallExpression)e).getFunction());
+      if (((CallExpression)e).getArguments() != null) {
+        for (Expression arg : ((CallExpression)e).getArguments()) {
+          append(sb, lines, arg);
+        }
+      }
+    }
+    sb.append(')');
+  }
+}
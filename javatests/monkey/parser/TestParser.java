@@ -2,6 +2,8 @@ package monkey.parser;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -165,7 +167,7 @@ public class TestParser {
     assertThat(es.getExpression()).isInstanceOf(PrefixExpression.class);
     PrefixExpression pe = (PrefixExpression)es.getExpression();
 
-    assertThat(pe.getOperator()).isEqualTo(operator);
+    assertThat(pe.getOperator().toString()).isEqualTo(operator);
     assertIntegerLiteral(pe.getRight(), right);
   }
 
@@ -186,7 +188,7 @@ public class TestParser {
     assertThat(es.getExpression()).isInstanceOf(PrefixExpression.class);
     PrefixExpression pe = (PrefixExpression)es.getExpression();
 
-    assertThat(pe.getOperator()).isEqualTo(operator);
+    assertThat(pe.getOperator().toString()).isEqualTo(operator);
     assertBoolLiteral(pe.getRight(), right);
   }
 
@@ -290,7 +292,7 @@ public class TestParser {
     assertThat(exp).isInstanceOf(InfixExpression.class);
     InfixExpression ie = (InfixExpression)exp;
 
-    assertThat(ie.getOperator()).isEqualTo(operator);
+    assertThat(ie.getOperator().toString()).isEqualTo(operator);
     assertLiteralExpression(ie.getLeft(), left);
     assertLiteralExpression(ie.getRight(), right);
   }
@@ -305,6 +307,55 @@ public class TestParser {
     }
   }
 
+  @Test
+  public void testPositions() {
+    Parser p = new Parser(new Lexer("let x = 1 +\n  -y;\nreturn f(x);"));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+
+    LetStatement let = (LetStatement)program.getStatements().get(0);
+    assertThat(let.getPosition()).isEqualTo(0);
+    assertThat(let.getName().getPosition()).isEqualTo(4);
+    InfixExpression infix = (InfixExpression)let.getValue();
+    assertThat(infix.getPosition()).isEqualTo(10); // Its operator
+    assertThat(infix.getRight().getPosition()).isEqualTo(14);
+    assertThat(((PrefixExpression)infix.getRight()).getRight().getPosition()).isEqualTo(15);
+
+    ReturnStatement ret = (ReturnStatement)program.getStatements().get(1);
+    assertThat(ret.getPosition()).isEqualTo(18);
+    assertThat(ret.getValue().getPosition()).isEqualTo(26); // Its (
+    assertThat(program.getLines().format(ret.getValue().getPosition())).isEqualTo("3:9");
+  }
+
+  @Test
+  public void testErrorPositions() {
+    Parser p = new Parser(new Lexer("let x = 1;\nlet = 2;"));
+    p.parseProgram();
+    assertThat(p.getErrors()).contains("2:5: expected next token to be IDENT, got ASSIGN instead");
+  }
+
+  @Test
+  public void testUnfinishedInput() {
+    Parser p = new Parser(new Lexer("let x = 1"));
+    assertThat(p.parseProgram().getStatements()).hasSize(1);
+    assertThat(p.getErrors()).isEmpty();
+
+    p = new Parser(new Lexer("let f = fn(x) {\n  return x"));
+    p.parseProgram();
+    assertThat(p.getErrors())
+      .containsExactly("2:11: expected next token to be RBRACE, got EOF instead");
+  }
+
+  @Test
+  public void testErrorsWithoutLines() {
+    Lexer l = new Lexer("let f = fn(x) {\n  return x");
+    l.setTrackLines(false);
+    Parser p = new Parser(l);
+    assertThat(p.parseProgram().getLines()).isNull();
+    assertThat(p.getErrors())
+      .containsExactly("@26: expected next token to be RBRACE, got EOF instead");
+  }
+
   @Test
   public void testFunctionLiteral() { // Not a real test
     String input = "fn(x, y) { x + y; }";
@@ -322,4 +373,69 @@ public class TestParser {
     Program program = p.parseProgram();
     assertThat(p.getErrors()).isEmpty();
   }
+
+  // Statements of about 30 tokens each, enough of them for several chunks
+  private static String bundle(int statements) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < statements; i++) {
+      StringBuilder name = new StringBuilder();
+      for (char digit : Integer.toString(i).toCharArray()) {
+        name.append((char)('a' + digit - '0')); // Names can't have digits
+      }
+      sb.append("let g").append(name).append(" = fn(n) {\n  if (n < 2) { return n; }\n")
+        .append("  let m = n - 1; g").append(name).append("(m) + 1\n};\n");
+    }
+    return sb.toString();
+  }
+
+  private static void assertParsesInParallel(String input) {
+    Parser sequential = new Parser(new Lexer(input));
+    Program expected = sequential.parseProgram();
+    Parser parallel = new Parser(new Lexer(input));
+    Program program = parallel.parseProgram(new ForkJoinPool(4));
+
+    assertThat(parallel.getErrors()).isEqualTo(sequential.getErrors());
+    assertThat(program.toString()).isEqualTo(expected.toString());
+    assertThat(program.getStatements().size()).isEqualTo(expected.getStatements().size());
+    for (int i = 0; i < program.getStatements().size(); i++) {
+      Statement st = program.getStatements().get(i);
+      Statement e = expected.getStatements().get(i);
+      assertThat(st.getPosition()).isEqualTo(e.getPosition());
+      assertThat(program.getLines().format(st.getPosition()))
+        .isEqualTo(expected.getLines().format(e.getPosition()));
+    }
+  }
+
+  @Test
+  public void testParallelParse() {
+    assertParsesInParallel("let x = 1; x + 2;");
+    assertParsesInParallel(bundle(3000));
+  }
+
+  @Test
+  public void testParallelParseErrors() {
+    String input = "let = 1;\n" + bundle(1000) + "let x 2;\n" + bundle(1000) + "let = 3;\n";
+    Parser p = new Parser(new Lexer(input));
+    p.parseProgram(new ForkJoinPool(4));
+    assertThat(p.getErrors()).hasSize(5);
+    assertParsesInParallel(input);
+  }
+
+  @Test
+  public void testParallelParseOfBlockClosedPastSplit() {
+    // The let skips the first }, so the ; after it, which is outside of braces as counted, is
+    // inside the block as parsed
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < (Parser.CHUNK_TOKENS - 5) / 5; i++) {
+      sb.append("let a = 1;");
+    }
+    for (int i = 0; i < 5; i++) {
+      sb.append("if (x) { let a = 1 } ; 2 };");
+    }
+    sb.append("let b = 2;");
+    Parser p = new Parser(new Lexer(sb.toString()));
+    p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    assertParsesInParallel(sb.toString());
+  }
 }
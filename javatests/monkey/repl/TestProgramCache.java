@@ -0,0 +1,103 @@
+package monkey.repl;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import monkey.object.Obj;
+
+public class TestProgramCache {
+  private static final String FIB =
+    "let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } }; fib(15)";
+
+  @Test
+  public void testHitsAndMisses() {
+    ProgramCache cache = new ProgramCache(10, 1000);
+    ProgramCache.Entry first = cache.get(FIB);
+    ProgramCache.Entry second = cache.get(FIB);
+    assertThat(second).isSameAs(first);
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(1);
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.weight()).isEqualTo((long)FIB.length());
+  }
+
+  @Test
+  public void testRunsOnBothEngines() {
+    ProgramCache cache = new ProgramCache(10, 1000);
+    for (int i = 0; i < 3; i++) {
+      assertThat(Repl.execute(cache.get(FIB), Repl.Engine.EVALUATOR).toString()).isEqualTo("610");
+      assertThat(Repl.execute(cache.get(FIB), Repl.Engine.VM).toString()).isEqualTo("610");
+    }
+    assertThat(cache.getMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void testKeepsParseErrors() {
+    ProgramCache cache = new ProgramCache(10, 1000);
+    assertThat(cache.get("let = 5;").getErrors()).isNotEmpty();
+    assertThat(cache.get("let x = 5;").getErrors()).isEmpty();
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    ProgramCache cache = new ProgramCache(2, 1000);
+    ProgramCache.Entry one = cache.get("1");
+    cache.get("2");
+    cache.get("1");
+    cache.get("3"); // Evicts "2"
+    assertThat(cache.getEvictions()).isEqualTo(1);
+    assertThat(cache.get("1")).isSameAs(one);
+    cache.get("2");
+    assertThat(cache.getMisses()).isEqualTo(4);
+  }
+
+  @Test
+  public void testEvictsByWeight() {
+    ProgramCache cache = new ProgramCache(10, 10);
+    cache.get("1 + 1");
+    cache.get("2 + 2");
+    assertThat(cache.size()).isEqualTo(2);
+    cache.get("3 + 3");
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.weight()).isEqualTo(10L);
+    assertThat(cache.getEvictions()).isEqualTo(1);
+  }
+
+  @Test
+  public void testDoesNotKeepOversizedPrograms() {
+    ProgramCache cache = new ProgramCache(10, 10);
+    cache.get("1");
+    assertThat(Repl.execute(cache.get(FIB), Repl.Engine.EVALUATOR).toString()).isEqualTo("610");
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.getEvictions()).isEqualTo(0);
+  }
+
+  @Test
+  public void testConcurrentRuns() throws Exception {
+    ProgramCache cache = new ProgramCache(4, 1000);
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Obj>> results = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        String source = FIB.replace("15", Integer.toString(10 + i % 6));
+        Repl.Engine engine = i % 2 == 0 ? Repl.Engine.EVALUATOR : Repl.Engine.VM;
+        results.add(pool.submit(() -> Repl.execute(cache.get(source), engine)));
+      }
+      long[] fib = {55, 89, 144, 233, 377, 610};
+      for (int i = 0; i < results.size(); i++) {
+        assertThat(results.get(i).get().toString()).isEqualTo(Long.toString(fib[i % 6]));
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertThat(cache.getHits() + cache.getMisses()).isEqualTo(200);
+    assertThat(cache.size()).isAtMost(4);
+  }
+}
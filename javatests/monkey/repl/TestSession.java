@@ -0,0 +1,147 @@
+package monkey.repl;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import monkey.ast.Program;
+import monkey.object.Obj;
+
+public class TestSession {
+  private static final String SCRIPT = "let a = 1;\n"
+      + "let b = 2;\n"
+      + "let f = fn(x) { x + a };\n"
+      + "let c = f(b);\n"
+      + "let d = b * 10;\n"
+      + "c + d\n";
+
+  @Test
+  public void testFirstLoadEvaluatesEverything() {
+    Session session = new Session();
+    assertThat(session.load(SCRIPT).toString()).isEqualTo("23");
+    assertThat(session.getReused()).isEqualTo(0);
+    assertThat(session.getRecomputed()).isEqualTo(6);
+  }
+
+  @Test
+  public void testUnchangedScriptIsReused() {
+    Session session = new Session();
+    session.load(SCRIPT);
+    assertThat(session.load(SCRIPT).toString()).isEqualTo("23");
+    assertThat(session.getReused()).isEqualTo(6);
+    assertThat(session.getRecomputed()).isEqualTo(0);
+  }
+
+  @Test
+  public void testEditRecomputesDependents() {
+    Session session = new Session();
+    session.load(SCRIPT);
+    // f reads a, c reads f, the result reads c, while b and d are left as they were
+    assertThat(session.load(SCRIPT.replace("a = 1", "a = 5")).toString()).isEqualTo("27");
+    assertThat(session.getReused()).isEqualTo(2);
+    assertThat(session.getRecomputed()).isEqualTo(4);
+
+    assertThat(session.load(SCRIPT.replace("b * 10", "b * 100")).toString()).isEqualTo("203");
+    assertThat(session.getRecomputed()).isEqualTo(5); // a was changed back too
+    assertThat(session.load(SCRIPT.replace("b * 10", "b * 100")).toString()).isEqualTo("203");
+    assertThat(session.getRecomputed()).isEqualTo(0);
+  }
+
+  @Test
+  public void testReusedValuesAreTheSame() {
+    Session session = new Session();
+    String script = "let g = fn() { 1 };\ng";
+    Obj first = session.load(script);
+    Obj second = session.load("let unrelated = 3;\n" + script + "\n");
+    assertThat(second).isSameAs(first);
+    assertThat(session.getReused()).isEqualTo(2);
+  }
+
+  @Test
+  public void testLocalNamesAreNotDependencies() {
+    Session session = new Session();
+    String script = "let x = 1; let f = fn(x) { let y = x * 2; y }; let y = 4; f(3) + y";
+    assertThat(session.load(script).toString()).isEqualTo("10");
+    assertThat(session.load(script.replace("x = 1", "x = 7")).toString()).isEqualTo("10");
+    assertThat(session.getRecomputed()).isEqualTo(1);
+    assertThat(session.load(script.replace("y = 4", "y = 5")).toString()).isEqualTo("11");
+    assertThat(session.getRecomputed()).isEqualTo(3); // x changed back, y, and the result
+  }
+
+  @Test
+  public void testRebindingReadsLatestBinding() {
+    Session session = new Session();
+    String script = "let x = 1; let x = x + 1; let y = x * 3; y";
+    assertThat(session.load(script).toString()).isEqualTo("6");
+    assertThat(session.load(script.replace("x = 1", "x = 2")).toString()).isEqualTo("9");
+    assertThat(session.getReused()).isEqualTo(0);
+    // A new binding in front of a reader is a change of what it reads
+    assertThat(session.load("let z = 0; let y = 1; " + script).toString()).isEqualTo("6");
+    assertThat(session.getReused()).isEqualTo(0);
+  }
+
+  @Test
+  public void testUnboundNameBecomingBound() {
+    Session session = new Session();
+    String script = "let f = fn() { k }; f()";
+    assertThat(session.load(script).toString()).isEqualTo("Error! identifier not found: k");
+    assertThat(session.load("let k = 1; " + script).toString()).isEqualTo("1");
+    assertThat(session.getRecomputed()).isEqualTo(3);
+  }
+
+  @Test
+  public void testErrorsOfReusedFunctionsHaveMovedPositions() {
+    Session session = new Session();
+    String script = "let f = fn(x) {\n  x + y\n};\nf(1)\n";
+    Obj result = session.load(script);
+    Program first = session.getProgram();
+    assertThat(Repl.describe(result, first)).isEqualTo("Error! 2:7: identifier not found: y");
+    Obj moved = session.load("let z = 1;\n\n" + script);
+    assertThat(session.getReused()).isEqualTo(1);
+    assertThat(Repl.describe(moved, session.getProgram()))
+        .isEqualTo("Error! 4:7: identifier not found: y");
+    assertThat(Repl.describe(moved, first)).isEqualTo("Error! 2:7: identifier not found: y");
+  }
+
+  @Test
+  public void testTopLevelReturnRunsTheRestAsOneProgram() {
+    Session session = new Session();
+    String script = "let a = 1; if (a > 0) { return 10; }; 20";
+    assertThat(session.load(script).toString()).isEqualTo("10");
+    assertThat(session.load(script).toString()).isEqualTo("10");
+    assertThat(session.getReused()).isEqualTo(1);
+    assertThat(session.getRecomputed()).isEqualTo(2);
+
+    script = "let a = 0; if (a > 0) { let b = 5; }; let c = 2; c";
+    assertThat(session.load(script).toString()).isEqualTo("2");
+  }
+
+  @Test
+  public void testLoadInRepl() throws Exception {
+    Path script = Files.createTempFile("session", ".mon");
+    try {
+      Files.write(script, SCRIPT.getBytes(StandardCharsets.UTF_8));
+      String input = ":load " + script + "\n:reload\nc * 2\n";
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      OutputStreamWriter out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+      Repl.start(new InputStreamReader(
+          new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+          StandardCharsets.UTF_8), out);
+      out.flush();
+      String output = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+      assertThat(output).contains("23\n" + script + ": 0 statements reused, 6 recomputed\n");
+      assertThat(output).contains("23\n" + script + ": 6 statements reused, 0 recomputed\n");
+      assertThat(output).contains(">> 6\n");
+    } finally {
+      Files.delete(script);
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package monkey.resolver;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.ast.Statement;
+import monkey.ast.Expression;
+import monkey.ast.ExpressionStatement;
+import monkey.ast.LetStatement;
+import monkey.ast.ReturnStatement;
+import monkey.ast.InfixExpression;
+import monkey.ast.Identifier;
+import monkey.ast.IfExpression;
+import monkey.ast.FunctionLiteral;
+import monkey.ast.CallExpression;
+
+public class TestResolver {
+  @Test
+  public void testGlobals() {
+    Program program = resolve("let x = 1; let y = 2; x + y");
+    assertThat(program.getFrameSize()).isEqualTo(2);
+    assertThat(((LetStatement)program.getStatements().get(1)).getSlot()).isEqualTo(1);
+
+    InfixExpression ie = (InfixExpression)expressionAt(program, 2);
+    assertAddresses(ie.getLeft(), 0, 0);
+    assertAddresses(ie.getRight(), 0, 1);
+  }
+
+  @Test
+  public void testRebindingGetsItsOwnSlot() {
+    Program program = resolve("let x = 1; let f = fn() { x }; let x = 2; x");
+    assertThat(program.getFrameSize()).isEqualTo(3);
+    FunctionLiteral fl = (FunctionLiteral)((LetStatement)program.getStatements().get(1)).getValue();
+    assertAddresses(((ExpressionStatement)fl.getBody().getStatements().get(0)).getExpression(),
+        1, 0);
+    assertAddresses(expressionAt(program, 3), 0, 2);
+  }
+
+  @Test
+  public void testParametersAndOuterBindings() {
+    Program program = resolve("let x = 1; let f = fn(a, b) { let c = a; c + x };");
+    FunctionLiteral fl = (FunctionLiteral)((LetStatement)program.getStatements().get(1)).getValue();
+    assertThat(fl.getFrameSize()).isEqualTo(3);
+
+    LetStatement ls = (LetStatement)fl.getBody().getStatements().get(0);
+    assertThat(ls.getSlot()).isEqualTo(2);
+    assertAddresses(ls.getValue(), 0, 0);
+
+    InfixExpression ie =
+      (InfixExpression)((ExpressionStatement)fl.getBody().getStatements().get(1)).getExpression();
+    assertAddresses(ie.getLeft(), 0, 2);
+    assertAddresses(ie.getRight(), 1, 0);
+  }
+
+  @Test
+  public void testOnlyEarlierBindingsAreVisible() {
+    Program program = resolve("let f = fn() { g }; let g = 1;");
+    FunctionLiteral fl = (FunctionLiteral)((LetStatement)program.getStatements().get(0)).getValue();
+    assertAddresses(((ExpressionStatement)fl.getBody().getStatements().get(0)).getExpression());
+  }
+
+  @Test
+  public void testRecursiveFunctionSeesItsOwnName() {
+    Program program = resolve("let f = fn() { f };");
+    FunctionLiteral fl = (FunctionLiteral)((LetStatement)program.getStatements().get(0)).getValue();
+    assertAddresses(((ExpressionStatement)fl.getBody().getStatements().get(0)).getExpression(),
+        1, 0);
+  }
+
+  @Test
+  public void testConditionalBindingFallsBackOutwards() {
+    Program program = resolve("let x = 1; let f = fn(c) { if (c) { let x = 2; } x };");
+    FunctionLiteral fl = (FunctionLiteral)((LetStatement)program.getStatements().get(1)).getValue();
+    assertAddresses(((ExpressionStatement)fl.getBody().getStatements().get(1)).getExpression(),
+        0, 1, 1, 0);
+  }
+
+  @Test
+  public void testMarksTailCalls() {
+    Program program = resolve("let f = fn(n) { g(n); if (n) { return g(h(n)); } if (n) { g(n) } };"
+        + " f(1)");
+    FunctionLiteral fl = (FunctionLiteral)((LetStatement)program.getStatements().get(0)).getValue();
+    List<Statement> body = fl.getBody().getStatements();
+    assertThat(((CallExpression)((ExpressionStatement)body.get(0)).getExpression()).isTail())
+      .isFalse();
+
+    IfExpression ie = (IfExpression)((ExpressionStatement)body.get(1)).getExpression();
+    CallExpression ce =
+      (CallExpression)((ReturnStatement)ie.getConsequence().getStatements().get(0)).getValue();
+    assertThat(ce.isTail()).isTrue();
+    assertThat(((CallExpression)ce.getArguments().get(0)).isTail()).isFalse();
+
+    ie = (IfExpression)((ExpressionStatement)body.get(2)).getExpression();
+    ce = (CallExpression)((ExpressionStatement)ie.getConsequence().getStatements().get(0))
+      .getExpression();
+    assertThat(ce.isTail()).isTrue();
+
+    assertThat(((CallExpression)expressionAt(program, 1)).isTail()).isFalse();
+
+    program = resolve("let f = fn(n) { 2 * if (n) { return g(n); } };");
+    fl = (FunctionLiteral)((LetStatement)program.getStatements().get(0)).getValue();
+    ie = (IfExpression)((InfixExpression)((ExpressionStatement)fl.getBody().getStatements()
+          .get(0)).getExpression()).getRight();
+    ce = (CallExpression)((ReturnStatement)ie.getConsequence().getStatements().get(0)).getValue();
+    assertThat(ce.isTail()).isFalse();
+  }
+
+  @Test
+  public void testMarksNestedReturns() {
+    Program program = resolve("let f = fn(c) { if (c) { return 1; } 2 + if (c) { return 3; } };"
+        + " let g = fn(c) { let x = if (c) { return 4; } else { 5 }; x };");
+    FunctionLiteral fl = (FunctionLiteral)((LetStatement)program.getStatements().get(0)).getValue();
+    List<Statement> body = fl.getBody().getStatements();
+    IfExpression ie = (IfExpression)((ExpressionStatement)body.get(0)).getExpression();
+    assertThat(((ReturnStatement)ie.getConsequence().getStatements().get(0)).isNested()).isFalse();
+    ie = (IfExpression)((InfixExpression)((ExpressionStatement)body.get(1)).getExpression())
+      .getRight();
+    assertThat(((ReturnStatement)ie.getConsequence().getStatements().get(0)).isNested()).isTrue();
+
+    fl = (FunctionLiteral)((LetStatement)program.getStatements().get(1)).getValue();
+    ie = (IfExpression)((LetStatement)fl.getBody().getStatements().get(0)).getValue();
+    assertThat(((ReturnStatement)ie.getConsequence().getStatements().get(0)).isNested()).isTrue();
+
+    program = resolve("let h = fn(c) { return if (c) { return 6; }; };");
+    fl = (FunctionLiteral)((LetStatement)program.getStatements().get(0)).getValue();
+    ReturnStatement rs = (ReturnStatement)fl.getBody().getStatements().get(0);
+    assertThat(rs.isNested()).isFalse();
+    ie = (IfExpression)rs.getValue();
+    assertThat(((ReturnStatement)ie.getConsequence().getStatements().get(0)).isNested()).isTrue();
+  }
+
+  @Test
+  public void testMarksMemoizableFunctions() {
+    Program program = resolve("let f = fn(n) { f(n) }; let g = fn(n) { n + 1 };"
+        + " let h = fn() { f(1) }; let k = fn(n) { fn() { f(n) } };");
+    boolean[] expected = {true, false, false, false};
+    for (int i = 0; i < expected.length; i++) {
+      FunctionLiteral fl =
+        (FunctionLiteral)((LetStatement)program.getStatements().get(i)).getValue();
+      assertThat(fl.isMemoizable()).isEqualTo(expected[i]);
+    }
+  }
+
+  @Test
+  public void testEstimatesCostOfOperands() {
+    Program program = resolve("let f = fn(n) { f(n - 1) + f(n - 2) }; let g = fn(n) { n + f(n) };"
+        + " let h = fn(n) { f(f(n), 1) + g(f(n), f(1)) };");
+    boolean[] expected = {true, false, true};
+    for (int i = 0; i < expected.length; i++) {
+      FunctionLiteral fl =
+        (FunctionLiteral)((LetStatement)program.getStatements().get(i)).getValue();
+      assertThat(fl.isSplittable()).isEqualTo(expected[i]);
+    }
+
+    FunctionLiteral h = (FunctionLiteral)((LetStatement)program.getStatements().get(2)).getValue();
+    InfixExpression ie =
+      (InfixExpression)((ExpressionStatement)h.getBody().getStatements().get(0)).getExpression();
+    assertThat(ie.getCost()).isAtLeast(2 * Resolver.CALL_COST);
+    assertThat(((CallExpression)ie.getLeft()).getCost()).isEqualTo(1);
+    assertThat(((CallExpression)ie.getRight()).getCost()).isAtLeast(Resolver.CALL_COST);
+  }
+
+  private static Program resolve(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    Resolver.resolve(program, new Scope());
+    return program;
+  }
+
+  private static Expression expressionAt(Program program, int i) {
+    Statement st = program.getStatements().get(i);
+    return ((ExpressionStatement)st).getExpression();
+  }
+
+  private static void assertAddresses(Expression e, int... addresses) {
+    assertThat(e).isInstanceOf(Identifier.class);
+    assertThat(Arrays.toString(((Identifier)e).getAddresses())).isEqualTo(Arrays.toString(addresses));
+  }
+}
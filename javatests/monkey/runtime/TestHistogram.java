@@ -0,0 +1,50 @@
+package monkey.runtime;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+public class TestHistogram {
+  @Test
+  public void testEmpty() {
+    Histogram h = new Histogram();
+    assertThat(h.count()).isEqualTo(0);
+    assertThat(h.percentile(0.5)).isEqualTo(0);
+    assertThat(h.mean()).isEqualTo(0.0);
+  }
+
+  @Test
+  public void testSmallValuesAreExact() {
+    Histogram h = new Histogram();
+    for (int i = 0; i < 8; i++) {
+      h.record(i);
+    }
+    assertThat(h.percentile(0.5)).isEqualTo(3);
+    assertThat(h.percentile(1)).isEqualTo(7);
+    assertThat(h.mean()).isEqualTo(3.5);
+  }
+
+  @Test
+  public void testPercentilesWithinBucketWidth() {
+    Histogram h = new Histogram();
+    for (int i = 1; i <= 100000; i++) {
+      h.record(i);
+    }
+    assertThat(h.count()).isEqualTo(100000);
+    assertThat(h.max()).isEqualTo(100000);
+    assertThat(h.percentile(0.5)).isAtLeast(50000L);
+    assertThat(h.percentile(0.5)).isAtMost(50000L + 50000 / 8);
+    assertThat(h.percentile(0.99)).isAtLeast(99000L);
+    assertThat(h.percentile(0.99)).isAtMost(99000L + 99000 / 8);
+    assertThat(h.percentile(1)).isEqualTo(100000);
+  }
+
+  @Test
+  public void testLargeAndNegativeValues() {
+    Histogram h = new Histogram();
+    h.record(Long.MAX_VALUE);
+    h.record(-5);
+    assertThat(h.percentile(0.5)).isEqualTo(0);
+    assertThat(h.percentile(1)).isEqualTo(Long.MAX_VALUE);
+  }
+}
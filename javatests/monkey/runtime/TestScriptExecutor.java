@@ -0,0 +1,102 @@
+package monkey.runtime;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Int;
+import monkey.evaluator.Globals;
+
+public class TestScriptExecutor {
+  private static final Globals GLOBALS = Globals.of(parse(
+      "let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } };"
+        + "let loop = fn(n) { loop(n + 1) };"));
+
+  @Test
+  public void testManyEvaluations() throws Exception {
+    long[] fib = {0, 1, 1, 2, 3, 5, 8, 13, 21, 34, 55, 89, 144};
+    Program program = parse("fib(n) + offset");
+    try (ScriptExecutor executor = new ScriptExecutor(GLOBALS)) {
+      List<CompletableFuture<Obj>> results = new ArrayList<>();
+      for (int i = 0; i < 10000; i++) {
+        Map<String, Obj> inputs =
+          ImmutableMap.<String, Obj>of("n", Int.valueOf(i % fib.length), "offset", Int.valueOf(i));
+        results.add(executor.submit(program, inputs, 1, TimeUnit.MINUTES));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        long expected = fib[i % fib.length] + i;
+        assertThat(results.get(i).get().toString()).isEqualTo(Long.toString(expected));
+      }
+      assertThat(executor.getCompleted()).isEqualTo(10000);
+      assertThat(executor.getLatency().count()).isEqualTo(10000);
+    }
+  }
+
+  @Test
+  public void testDeadline() throws Exception {
+    ScriptExecutor executor = new ScriptExecutor(GLOBALS);
+    CompletableFuture<Obj> result =
+      executor.submit(parse("loop(0)"), Collections.<String, Obj>emptyMap(), 50,
+          TimeUnit.MILLISECONDS);
+    try {
+      result.get();
+      throw new AssertionError("expected timeout");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+    }
+    executor.close(); // Returns only once the interrupted evaluation has stopped
+    assertThat(executor.getTimedOut()).isEqualTo(1);
+  }
+
+  @Test
+  public void testCloseWhenInterrupted() throws Exception {
+    ScriptExecutor executor = new ScriptExecutor(GLOBALS);
+    CompletableFuture<Obj> result =
+      executor.submit(parse("loop(0)"), Collections.<String, Obj>emptyMap(), 200,
+          TimeUnit.MILLISECONDS);
+    Thread.currentThread().interrupt();
+    executor.close(); // Stops waiting at once
+    assertThat(Thread.interrupted()).isTrue();
+    assertThat(result.isDone()).isFalse();
+    executor.close();
+    assertThat(result.isCompletedExceptionally()).isTrue();
+  }
+
+  @Test
+  public void testExceptAndFailure() throws Exception {
+    try (ScriptExecutor executor = new ScriptExecutor(GLOBALS)) {
+      Map<String, Obj> inputs = ImmutableMap.<String, Obj>of("x", Int.valueOf(0));
+      assertThat(executor.submit(parse("y"), inputs).get().toString())
+        .isEqualTo("Error! identifier not found: y");
+      try {
+        executor.submit(parse("1 / x"), inputs).get();
+        throw new AssertionError("expected failure");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause()).isInstanceOf(ArithmeticException.class);
+      }
+      assertThat(executor.getCompleted()).isEqualTo(1);
+      assertThat(executor.getFailed()).isEqualTo(1);
+    }
+  }
+
+  private static Program parse(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    return program;
+  }
+}
@@ -0,0 +1,153 @@
+package monkey.vm;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import monkey.lexer.Lexer;
+import monkey.parser.Parser;
+import monkey.ast.Program;
+import monkey.object.Obj;
+import monkey.object.Environment;
+import monkey.evaluator.Evaluator;
+import monkey.evaluator.Budget;
+import monkey.compiler.Compiler;
+import monkey.compiler.Bytecode;
+import monkey.compiler.SymbolTable;
+
+public class TestVm {
+  private static final String[] PROGRAMS = {
+    "",
+    "5",
+    "1 + 2 * 3 - 4 / 2",
+    "-(5 + 5) * 2",
+    "!true; !!false; !5",
+    "1 < 2 == true",
+    "1 > 2 != false",
+    "true == true",
+    "let a = 5; let b = a * 2; b + a",
+    "let a = 5;",
+    "if (1 < 2) { 10 }",
+    "if (1 > 2) { 10 }",
+    "if (false) { 10 } else { 20 }",
+    "if (1) { 10 } else { 20 }",
+    "5 + true",
+    "true + false",
+    "-true",
+    "foobar",
+    "5(1)",
+    "if (10 > 1) { if (true) { return 10; } return 1; }",
+    "return 2; 3",
+    "let f = fn(x) { return x * 2; 100 }; f(3)",
+    "let f = fn() { }; f()",
+    "let f = fn() { let x = 1; }; f()",
+    "let add = fn(a, b) { a + b }; add(1, add(2, 3))",
+    "fn(x) { x }(7)",
+    "let f = fn(x) { x }; f(1, 2)",
+    "let f = fn(x, y) { x + y }; f",
+    "let f = fn(x) { x }; f == f",
+    "let fact = fn(n) { if (n == 0) { 1 } else { n * fact(n - 1) } }; fact(10)",
+    "let fib = fn(n) { if (n < 2) { n } else { fib(n - 1) + fib(n - 2) } }; fib(15)",
+    "let gcd = fn(x, y) { if (x == 0) { y } else { if (y == 0) { x } else {"
+      + " if (x > y) { gcd(x - y, y) } else { gcd(x, y - x) } } } }; gcd(21, 14)",
+    "let s = 1234; let enc = fn(x) { x + s; }; let s = 4321; enc(17)",
+    "let adder = fn(a) { fn(b) { a + b } }; let addTwo = adder(2); addTwo(3)",
+    "let f = fn() { g() }; let g = fn() { 1 }; f()",
+    "let f = fn() { let h = fn() { f }; h() }; f() == f",
+    "let x = 1; let f = fn() { let y = x; let x = 2; y + x }; f()",
+    "let x = 1; let f = fn(c) { if (c) { let x = 2; } x }; f(true) + f(false) * 10",
+    "let f = fn(c) { if (c) { let x = 2; } x }; f(false)",
+    "if (false) { let q = 1; } q",
+    "let x = 1; let f = fn() { fn() { x } }; let x = 2; f()()",
+    "let x = 1; let f = fn() { x }; let x = 2; f() * 10 + x",
+    "let a = 1; let f = fn() { let g = fn() { a }; g }; let a = 2; f()()",
+    "let mk = fn(a) { let g = fn() { a + b }; let b = 1; g }; mk(1)()",
+    "let mk = fn(a) { let b = 1; let g = fn() { a + b }; let b = 5; g() + b }; mk(1)",
+    "let f = fn(a) { let a = a + 1; a }; f(1)",
+    "let apply = fn(a, b, func) { func(a, b); }; apply(5, 10, fn(a, b) { a * b })",
+    "let genSub = fn() { return fn(a, b) { a - b }; }; genSub()(3, 10)",
+    "let f = fn() { 1 + true }; let g = fn() { f() + 2 }; g()",
+    "let f = fn(x) { x }; f(1 + true)",
+    "1 + (if (true) { 2 })",
+    "(if (3) { return 5; 3; } != (3 > 8))",
+    "let f = fn(c) { 2 * if (c) { return 3; } }; f(true)",
+    "let f = fn(c) { let t = if (c) { if (c) { return 4; } 5 }; t == t }; f(true)",
+    "let g = fn(x) { x + true }; let f = fn() { let t = if (true) { return g(1); }; 5 }; f()",
+    "let g = fn(x) { x + true }; let f = fn() { 2 * if (true) { return g(1); } }; f()",
+    "let f = fn() { return (if (true) { return 5; }); }; f(); 7",
+    "let f = fn() { return (if (true) { return 5; }); }; let x = f(); 7",
+    "let f = fn() { return (if (true) { return 5; }); }; let g = fn() { f(); 6 }; g(); 7",
+    "let f = fn() { return (if (true) { return 5; }); }; let g = fn() { f() }; g(); 7",
+    "let f = fn() { return (if (true) { return 5; }); }; let g = fn() { return f(); }; g(); 7",
+    "let w = fn() { let x = if (true) { return 4; }; return x; }; let f = fn(x) { x }; f(w()); 7",
+  };
+
+  @Test
+  public void testMatchesEvaluator() {
+    for (String input : PROGRAMS) {
+      Program program = parse(input);
+      String expected = String.valueOf(Evaluator.eval(program, new Environment()));
+      Obj actual = new VM(new Compiler().compile(program)).run();
+      assertThat(input + " => " + actual).isEqualTo(input + " => " + expected);
+    }
+  }
+
+  @Test
+  public void testDeepRecursion() {
+    Program program = parse("let sum = fn(n) { if (n == 0) { 0 } else { n + sum(n - 1) } };"
+        + " sum(100000)");
+    assertThat(new VM(new Compiler().compile(program)).run().toString()).isEqualTo("5000050000");
+  }
+
+  @Test
+  public void testBudget() {
+    String exponential = "let f = fn(n) { if (n == 0) { 0 } else { f(n - 1) + f(n - 1) } }; f(20)";
+    assertThat(runWithBudget(exponential, new Budget(10000, 0, 0)))
+        .isEqualTo("Error! step limit exceeded: 10000");
+    assertThat(runWithBudget("let f = fn(n) { 1 + f(n + 1) }; f(0)", new Budget(0, 100, 0)))
+        .isEqualTo("Error! call depth limit exceeded: 100");
+    assertThat(runWithBudget("let f = fn(n) { let g = fn() { n }; 1 + f(n + 1) }; f(0)",
+          new Budget(0, 0, 5000)))
+        .isEqualTo("Error! memory limit exceeded: 5000 bytes");
+    Budget budget = new Budget(10000, 100, 5000);
+    assertThat(runWithBudget("let sum = fn(n) { if (n == 0) { 0 } else { n + sum(n - 1) } };"
+          + " sum(50)", budget)).isEqualTo("1275");
+    assertThat(budget.getSteps()).isAtLeast(51L);
+  }
+
+  @Test
+  public void testGlobalsAcrossRuns() {
+    SymbolTable symbolTable = new SymbolTable();
+    List<Obj> constants = new ArrayList<>();
+    Obj[] globals = new Obj[0];
+    String[] lines = {
+      "let x = 10;",
+      "let f = fn(y) { x + y };",
+      "let x = 20;",
+      "f(1) + x",
+    };
+    Obj result = null;
+    for (String line : lines) {
+      Bytecode bytecode = new Compiler(symbolTable, constants).compile(parse(line));
+      globals = VM.growGlobals(globals, bytecode);
+      result = new VM(bytecode, globals).run();
+    }
+    assertThat(result.toString()).isEqualTo("31");
+  }
+
+  private static String runWithBudget(String input, Budget budget) {
+    VM vm = new VM(new Compiler().compile(parse(input)));
+    vm.setBudget(budget);
+    return vm.run().toString();
+  }
+
+  private static Program parse(String input) {
+    Parser p = new Parser(new Lexer(input));
+    Program program = p.parseProgram();
+    assertThat(p.getErrors()).isEmpty();
+    return program;
+  }
+}